@@ -0,0 +1,57 @@
+import java.lang.management.ManagementFactory;
+
+// A minimal benchmark harness for the benchmarks in this directory.  JMH
+// requires benchmark classes to be in a named package, which can't see the
+// (default package) classes being measured, so this does the essentials:
+// a warm up period, then several timed iterations, reporting the average
+// time and the heap allocated per operation.
+class Bench {
+
+    // the work being measured.  Each call performs 'ops' operations and
+    // returns a value derived from them, so that the work can't be
+    // eliminated as dead code.
+    interface Body {
+        long run();
+    }
+
+    private static final long WARMUP_NANOS = 2000000000L;
+    private static final long ITERATION_NANOS = 1000000000L;
+    private static final int ITERATIONS = 5;
+
+    // accumulates results so the JIT can't discard them
+    private static long sink;
+
+    static void run(String name, int ops, Body body) {
+        iterate(body, WARMUP_NANOS);
+        double nanos = 0;
+        double bytes = 0;
+        long total = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long calls = iterate(body, ITERATION_NANOS);
+            nanos += System.nanoTime() - start;
+            bytes += allocatedBytes() - allocatedBefore;
+            total += calls * ops;
+        }
+        System.out.printf("%-40s %10.2f ns/op %10.2f B/op%n", name,
+                nanos / total, bytes / total);
+    }
+
+    private static long iterate(Body body, long duration) {
+        long calls = 0;
+        long end = System.nanoTime() + duration;
+        while (System.nanoTime() < end) {
+            sink += body.run();
+            calls++;
+        }
+        return calls;
+    }
+
+    // the bytes allocated so far by the current thread
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean()).getThreadAllocatedBytes(Thread
+                .currentThread().getId());
+    }
+}
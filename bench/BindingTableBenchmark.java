@@ -0,0 +1,100 @@
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL40;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Compares looking up binding state and OpenGL enumerants through hash maps
+// and switch statements (as GLContext used to) with ordinal-indexed arrays
+// and precomputed constant tables (as it does now).  The last benchmark
+// measures the whole bind path of a GLContext with state filtering on,
+// against a RecordingBackend that isn't recording.
+public class BindingTableBenchmark {
+
+    private static final int[] GL_BUFFER_TARGETS =
+            new int[BufferTarget.values().length];
+
+    static {
+        for (BufferTarget t : BufferTarget.values()) {
+            GL_BUFFER_TARGETS[t.ordinal()] = switchToGL(t);
+        }
+    }
+
+    public static void main(String[] args) {
+        BufferTarget[] targets = BufferTarget.values();
+        // a repeating sequence of targets to look up
+        final BufferTarget[] sequence = new BufferTarget[1024];
+        for (int i = 0; i < sequence.length; i++) {
+            sequence[i] = targets[(i * 7) % targets.length];
+        }
+        final Buffer buffer = new Buffer(1);
+        final Map<BufferTarget, Buffer> map =
+                new HashMap<BufferTarget, Buffer>();
+        final Buffer[] table = new Buffer[targets.length];
+        for (BufferTarget t : targets) {
+            map.put(t, buffer);
+            table[t.ordinal()] = buffer;
+        }
+
+        Bench.run("hashMapAndSwitch", sequence.length, new Bench.Body() {
+            public long run() {
+                long sum = 0;
+                for (BufferTarget t : sequence) {
+                    if (map.get(t) == buffer) sum += switchToGL(t);
+                }
+                return sum;
+            }
+        });
+
+        Bench.run("arrayAndTable", sequence.length, new Bench.Body() {
+            public long run() {
+                long sum = 0;
+                for (BufferTarget t : sequence) {
+                    if (table[t.ordinal()] == buffer) {
+                        sum += GL_BUFFER_TARGETS[t.ordinal()];
+                    }
+                }
+                return sum;
+            }
+        });
+
+        RecordingBackend gl = new RecordingBackend();
+        gl.setRecording(false);
+        final GLContext c = new GLContext(gl);
+        c.setStateFiltering(true);
+        c.setValidationLevel(ValidationLevel.OFF);
+        final Buffer[] buffers = {c.glGenBuffers(), c.glGenBuffers()};
+
+        // alternate between binding, rebinding and unbinding two buffers
+        Bench.run("contextBind", sequence.length * 3, new Bench.Body() {
+            public long run() {
+                for (int i = 0; i < sequence.length; i++) {
+                    Buffer b = buffers[i & 1];
+                    c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+                    c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+                    c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, null);
+                }
+                return c.getFrameStats().getElidedCalls();
+            }
+        });
+    }
+
+    private static int switchToGL(BufferTarget t) {
+        switch (t) {
+            case GL_ARRAY_BUFFER:
+                return GL15.GL_ARRAY_BUFFER;
+            case GL_COPY_READ_BUFFER:
+                return GL31.GL_COPY_READ_BUFFER;
+            case GL_COPY_WRITE_BUFFER:
+                return GL31.GL_COPY_WRITE_BUFFER;
+            case GL_ELEMENT_ARRAY_BUFFER:
+                return GL15.GL_ELEMENT_ARRAY_BUFFER;
+            case GL_UNIFORM_BUFFER:
+                return GL31.GL_UNIFORM_BUFFER;
+            case GL_DRAW_INDIRECT_BUFFER:
+                return GL40.GL_DRAW_INDIRECT_BUFFER;
+        }
+        throw new IllegalArgumentException();
+    }
+}
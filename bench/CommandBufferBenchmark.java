@@ -0,0 +1,31 @@
+// Measures replaying a static command stream against a GLContext backed by
+// a RecordingBackend that isn't recording: the time and heap allocated per
+// replayed command.  The allocation should be zero.
+public class CommandBufferBenchmark {
+
+    private static final int DRAWS = 1000;
+
+    public static void main(String[] args) {
+        RecordingBackend gl = new RecordingBackend();
+        gl.setRecording(false);
+        final GLContext c = new GLContext(gl);
+        c.setValidationLevel(ValidationLevel.OFF);
+        VertexArray[] vaos = {c.glGenVertexArrays(), c.glGenVertexArrays()};
+        Buffer vbo = c.glGenBuffers();
+
+        final CommandBuffer cb = new CommandBuffer();
+        for (int i = 0; i < DRAWS; i++) {
+            cb.glBindVertexArray(vaos[i & 1]);
+            cb.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, vbo);
+            cb.glVertexAttribPointer(0, 4, GLType.GL_FLOAT, false, 16, 0);
+            cb.glDrawArrays(DrawMode.GL_TRIANGLES, 0, 3);
+        }
+
+        Bench.run("replay", cb.getCount(), new Bench.Body() {
+            public long run() {
+                cb.replay(c);
+                return cb.getSize();
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.HashMap;
+
+// Compares the ObjectRegistry used by GLContext to track its objects with
+// the HashMap<Integer, ...> it replaced, with a million live buffers: the
+// time and heap allocated per lookup, the time per insert and remove, and
+// the heap retained by each structure.
+public class ObjectRegistryBenchmark {
+
+    private static final int LIVE = 1000000;
+
+    public static void main(String[] args) {
+        final Buffer[] objects = new Buffer[LIVE];
+        for (int i = 0; i < LIVE; i++) {
+            objects[i] = new Buffer(i + 1);
+        }
+        // a scattered sequence of names to look up
+        final int[] names = new int[4096];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = 1 + (int) ((i * 2654435761L) % LIVE);
+        }
+
+        long before = retainedBytes();
+        final HashMap<Integer, Buffer> map = new HashMap<Integer, Buffer>();
+        for (Buffer b : objects) map.put(b.getId(), b);
+        long mapBytes = retainedBytes() - before;
+
+        before = retainedBytes();
+        final ObjectRegistry<Buffer> registry = new ObjectRegistry<Buffer>();
+        for (Buffer b : objects) registry.put(b);
+        long registryBytes = retainedBytes() - before;
+
+        System.out.printf("%-40s %10d bytes%n", "hashMap retained", mapBytes);
+        System.out.printf("%-40s %10d bytes%n", "registry retained",
+                registryBytes);
+
+        // names above 127 aren't in the Integer cache, so every lookup
+        // boxes
+        Bench.run("hashMap get", names.length, new Bench.Body() {
+            public long run() {
+                long sum = 0;
+                for (int name : names) sum += map.get(name).getId();
+                return sum;
+            }
+        });
+        Bench.run("registry get", names.length, new Bench.Body() {
+            public long run() {
+                long sum = 0;
+                for (int name : names) sum += registry.get(name).getId();
+                return sum;
+            }
+        });
+        Bench.run("hashMap remove and put", names.length, new Bench.Body() {
+            public long run() {
+                for (int name : names) {
+                    map.remove(name);
+                    map.put(name, objects[name - 1]);
+                }
+                return map.size();
+            }
+        });
+        Bench.run("registry remove and put", names.length, new Bench.Body() {
+            public long run() {
+                for (int name : names) {
+                    registry.remove(name);
+                    registry.put(objects[name - 1]);
+                }
+                return registry.size();
+            }
+        });
+    }
+
+    private static long retainedBytes() {
+        Runtime r = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return r.totalMemory() - r.freeMemory();
+    }
+}
@@ -0,0 +1,731 @@
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+// A backend that merges consecutive draws into multi-draw calls.
+//
+// glDrawArrays and glDrawElements calls are not passed on straight away
+// but held back, for as long as each draw has the same mode (and for
+// indexed draws, the same index type) as the one before.  Any other call
+// first flushes the draws held back, as one glMultiDrawArrays or
+// glMultiDrawElements call if there is more than one, and is then passed
+// on.  Draws are drawn in the order they were made.  State changed
+// through this backend flushes the draws made before it, but state the
+// caller changes by calling GL directly, such as glEnable(GL_BLEND) or
+// glViewport, which have no backend call, does not: the held draws
+// would be drawn with the new state.  flush() must be called before any
+// such direct call.
+//
+// Merging saves the driver's per-draw validation, which is most of the
+// cost of a small draw.  Polling glGetError after each draw flushes it,
+// so nothing merges at the FULL validation level unless errors are
+// reported through debug output.
+class BatchingBackend implements GLBackend {
+
+    private static final int NONE = 0;
+    private static final int ARRAYS = 1;
+    private static final int ELEMENTS = 2;
+
+    private GLBackend backend;
+    private FrameStats stats;
+
+    // the kind, mode and index type of the draws held back, and their
+    // firsts or offsets and counts
+    private int kind;
+    private int mode;
+    private int type;
+    private int draws;
+    private IntBuffer firsts;
+    private IntBuffer counts;
+    private long[] offsets;
+
+    // backend - the backend to pass calls on to
+    // stats - the counters to record merged draws in
+    BatchingBackend(GLBackend backend, FrameStats stats) {
+        this.backend = backend;
+        this.stats = stats;
+        kind = NONE;
+        grow(64);
+    }
+
+    // the backend calls are passed on to
+    GLBackend getBackend() {
+        return backend;
+    }
+
+    // Issue the draws held back, if any.
+    void flush() {
+        if (draws == 0) {
+            return;
+        }
+        int n = draws;
+        draws = 0;
+        stats.batchedDraws += n;
+        stats.drawBatches++;
+        if (kind == ARRAYS) {
+            if (n == 1) {
+                backend.glDrawArrays(mode, firsts.get(0), counts.get(0));
+                return;
+            }
+            firsts.limit(n).position(0);
+            counts.limit(n).position(0);
+            backend.glMultiDrawArrays(mode, firsts, counts);
+            firsts.clear();
+        } else {
+            if (n == 1) {
+                backend.glDrawElements(mode, counts.get(0), type,
+                        offsets[0]);
+                return;
+            }
+            counts.limit(n).position(0);
+            backend.glMultiDrawElements(mode, counts, type, offsets);
+        }
+        counts.clear();
+    }
+
+    public void glDrawArrays(int mode, int first, int count) {
+        if (kind != ARRAYS || mode != this.mode) {
+            flush();
+            kind = ARRAYS;
+            this.mode = mode;
+        }
+        int i = add();
+        firsts.put(i, first);
+        counts.put(i, count);
+    }
+
+    public void glDrawElements(int mode, int count, int type, long offset) {
+        if (kind != ELEMENTS || mode != this.mode || type != this.type) {
+            flush();
+            kind = ELEMENTS;
+            this.mode = mode;
+            this.type = type;
+        }
+        int i = add();
+        counts.put(i, count);
+        offsets[i] = offset;
+    }
+
+    // the index at which to hold back another draw
+    private int add() {
+        if (draws == counts.capacity()) {
+            grow(draws * 2);
+        }
+        return draws++;
+    }
+
+    private void grow(int capacity) {
+        IntBuffer f = BufferUtils.createIntBuffer(capacity);
+        IntBuffer c = BufferUtils.createIntBuffer(capacity);
+        long[] o = new long[capacity];
+        for (int i = 0; i < draws; i++) {
+            f.put(i, firsts.get(i));
+            c.put(i, counts.get(i));
+            o[i] = offsets[i];
+        }
+        firsts = f;
+        counts = c;
+        offsets = o;
+    }
+
+    public int glGetError() {
+        flush();
+        return backend.glGetError();
+    }
+
+    public int glGetInteger(int pname) {
+        flush();
+        return backend.glGetInteger(pname);
+    }
+
+    public String glGetString(int name) {
+        flush();
+        return backend.glGetString(name);
+    }
+
+    public boolean glDebugMessageCallback(DebugListener listener) {
+        flush();
+        return backend.glDebugMessageCallback(listener);
+    }
+
+    public boolean glMaxShaderCompilerThreads(int count) {
+        flush();
+        return backend.glMaxShaderCompilerThreads(count);
+    }
+
+    public int glGenBuffers() {
+        flush();
+        return backend.glGenBuffers();
+    }
+
+    public void glGenBuffers(IntBuffer buffers) {
+        flush();
+        backend.glGenBuffers(buffers);
+    }
+
+    public void glDeleteBuffers(int buffer) {
+        flush();
+        backend.glDeleteBuffers(buffer);
+    }
+
+    public void glDeleteBuffers(IntBuffer buffers) {
+        flush();
+        backend.glDeleteBuffers(buffers);
+    }
+
+    public void glBindBuffer(int target, int buffer) {
+        flush();
+        backend.glBindBuffer(target, buffer);
+    }
+
+    public void glBindBufferBase(int target, int index, int buffer) {
+        flush();
+        backend.glBindBufferBase(target, index, buffer);
+    }
+
+    public void glBindBufferRange(int target, int index, int buffer,
+                                  long offset, long size) {
+        flush();
+        backend.glBindBufferRange(target, index, buffer, offset, size);
+    }
+
+    public void glBufferData(int target, FloatBuffer data, int usage) {
+        flush();
+        backend.glBufferData(target, data, usage);
+    }
+
+    public void glBufferData(int target, IntBuffer data, int usage) {
+        flush();
+        backend.glBufferData(target, data, usage);
+    }
+
+    public void glBufferData(int target, ByteBuffer data, int usage) {
+        flush();
+        backend.glBufferData(target, data, usage);
+    }
+
+    public void glBufferData(int target, long size, int usage) {
+        flush();
+        backend.glBufferData(target, size, usage);
+    }
+
+    public void glBufferSubData(int target, long offset, ByteBuffer data) {
+        flush();
+        backend.glBufferSubData(target, offset, data);
+    }
+
+    public void glBufferStorage(int target, long size, int flags) {
+        flush();
+        backend.glBufferStorage(target, size, flags);
+    }
+
+    public void glCopyBufferSubData(int readTarget, int writeTarget,
+                                    long readOffset, long writeOffset,
+                                    long size) {
+        flush();
+        backend.glCopyBufferSubData(readTarget, writeTarget, readOffset,
+                writeOffset, size);
+    }
+
+    public void glClearBufferSubData(int target, int internalFormat,
+                                     long offset, long size, int format,
+                                     int type, IntBuffer data) {
+        flush();
+        backend.glClearBufferSubData(target, internalFormat, offset, size,
+                format, type, data);
+    }
+
+    public ByteBuffer glMapBufferRange(int target, long offset, long length,
+                                       int access) {
+        flush();
+        return backend.glMapBufferRange(target, offset, length, access);
+    }
+
+    public void glFlushMappedBufferRange(int target, long offset, long length) {
+        flush();
+        backend.glFlushMappedBufferRange(target, offset, length);
+    }
+
+    public boolean glUnmapBuffer(int target) {
+        flush();
+        return backend.glUnmapBuffer(target);
+    }
+
+    public long glFenceSync() {
+        flush();
+        return backend.glFenceSync();
+    }
+
+    public int glClientWaitSync(long sync, int flags, long timeout) {
+        flush();
+        return backend.glClientWaitSync(sync, flags, timeout);
+    }
+
+    public void glDeleteSync(long sync) {
+        flush();
+        backend.glDeleteSync(sync);
+    }
+
+    public int glCreateShader(int type) {
+        flush();
+        return backend.glCreateShader(type);
+    }
+
+    public void glShaderSource(int shader, CharSequence source) {
+        flush();
+        backend.glShaderSource(shader, source);
+    }
+
+    public void glCompileShader(int shader) {
+        flush();
+        backend.glCompileShader(shader);
+    }
+
+    public int glGetShaderi(int shader, int pname) {
+        flush();
+        return backend.glGetShaderi(shader, pname);
+    }
+
+    public String glGetShaderInfoLog(int shader) {
+        flush();
+        return backend.glGetShaderInfoLog(shader);
+    }
+
+    public void glDeleteShader(int shader) {
+        flush();
+        backend.glDeleteShader(shader);
+    }
+
+    public int glCreateProgram() {
+        flush();
+        return backend.glCreateProgram();
+    }
+
+    public void glAttachShader(int program, int shader) {
+        flush();
+        backend.glAttachShader(program, shader);
+    }
+
+    public void glLinkProgram(int program) {
+        flush();
+        backend.glLinkProgram(program);
+    }
+
+    public int glGetProgrami(int program, int pname) {
+        flush();
+        return backend.glGetProgrami(program, pname);
+    }
+
+    public String glGetProgramInfoLog(int program) {
+        flush();
+        return backend.glGetProgramInfoLog(program);
+    }
+
+    public void glUseProgram(int program) {
+        flush();
+        backend.glUseProgram(program);
+    }
+
+    public void glDeleteProgram(int program) {
+        flush();
+        backend.glDeleteProgram(program);
+    }
+
+    public void glProgramParameteri(int program, int pname, int value) {
+        flush();
+        backend.glProgramParameteri(program, pname, value);
+    }
+
+    public void glGetProgramBinary(int program, IntBuffer length,
+                                   IntBuffer format, ByteBuffer binary) {
+        flush();
+        backend.glGetProgramBinary(program, length, format, binary);
+    }
+
+    public void glProgramBinary(int program, int format, ByteBuffer binary) {
+        flush();
+        backend.glProgramBinary(program, format, binary);
+    }
+
+    public int glGetUniformLocation(int program, CharSequence name) {
+        flush();
+        return backend.glGetUniformLocation(program, name);
+    }
+
+    public int glGetAttribLocation(int program, CharSequence name) {
+        flush();
+        return backend.glGetAttribLocation(program, name);
+    }
+
+    public String glGetActiveUniform(int program, int index, IntBuffer size,
+                                     IntBuffer type) {
+        flush();
+        return backend.glGetActiveUniform(program, index, size, type);
+    }
+
+    public String glGetActiveAttrib(int program, int index, IntBuffer size,
+                                    IntBuffer type) {
+        flush();
+        return backend.glGetActiveAttrib(program, index, size, type);
+    }
+
+    public String glGetActiveUniformBlockName(int program, int index) {
+        flush();
+        return backend.glGetActiveUniformBlockName(program, index);
+    }
+
+    public int glGetActiveUniformBlocki(int program, int index, int pname) {
+        flush();
+        return backend.glGetActiveUniformBlocki(program, index, pname);
+    }
+
+    public void glUniformBlockBinding(int program, int index, int binding) {
+        flush();
+        backend.glUniformBlockBinding(program, index, binding);
+    }
+
+    public void glBindFragDataLocation(int program, int colorNumber,
+                                       CharSequence name) {
+        flush();
+        backend.glBindFragDataLocation(program, colorNumber, name);
+    }
+
+    public void glUniform1f(int location, float x) {
+        flush();
+        backend.glUniform1f(location, x);
+    }
+
+    public void glUniform2f(int location, float x, float y) {
+        flush();
+        backend.glUniform2f(location, x, y);
+    }
+
+    public void glUniform3f(int location, float x, float y, float z) {
+        flush();
+        backend.glUniform3f(location, x, y, z);
+    }
+
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        flush();
+        backend.glUniform4f(location, x, y, z, w);
+    }
+
+    public void glUniform1i(int location, int x) {
+        flush();
+        backend.glUniform1i(location, x);
+    }
+
+    public void glUniform2i(int location, int x, int y) {
+        flush();
+        backend.glUniform2i(location, x, y);
+    }
+
+    public void glUniform3i(int location, int x, int y, int z) {
+        flush();
+        backend.glUniform3i(location, x, y, z);
+    }
+
+    public void glUniform4i(int location, int x, int y, int z, int w) {
+        flush();
+        backend.glUniform4i(location, x, y, z, w);
+    }
+
+    public void glUniform1ui(int location, int x) {
+        flush();
+        backend.glUniform1ui(location, x);
+    }
+
+    public void glUniform1fv(int location, FloatBuffer values) {
+        flush();
+        backend.glUniform1fv(location, values);
+    }
+
+    public void glUniform2fv(int location, FloatBuffer values) {
+        flush();
+        backend.glUniform2fv(location, values);
+    }
+
+    public void glUniform3fv(int location, FloatBuffer values) {
+        flush();
+        backend.glUniform3fv(location, values);
+    }
+
+    public void glUniform4fv(int location, FloatBuffer values) {
+        flush();
+        backend.glUniform4fv(location, values);
+    }
+
+    public void glUniform1iv(int location, IntBuffer values) {
+        flush();
+        backend.glUniform1iv(location, values);
+    }
+
+    public void glUniform2iv(int location, IntBuffer values) {
+        flush();
+        backend.glUniform2iv(location, values);
+    }
+
+    public void glUniform3iv(int location, IntBuffer values) {
+        flush();
+        backend.glUniform3iv(location, values);
+    }
+
+    public void glUniform4iv(int location, IntBuffer values) {
+        flush();
+        backend.glUniform4iv(location, values);
+    }
+
+    public void glUniform1uiv(int location, IntBuffer values) {
+        flush();
+        backend.glUniform1uiv(location, values);
+    }
+
+    public void glUniformMatrix2fv(int location, boolean transpose,
+                                   FloatBuffer values) {
+        flush();
+        backend.glUniformMatrix2fv(location, transpose, values);
+    }
+
+    public void glUniformMatrix3fv(int location, boolean transpose,
+                                   FloatBuffer values) {
+        flush();
+        backend.glUniformMatrix3fv(location, transpose, values);
+    }
+
+    public void glUniformMatrix4fv(int location, boolean transpose,
+                                   FloatBuffer values) {
+        flush();
+        backend.glUniformMatrix4fv(location, transpose, values);
+    }
+
+    public int glGenVertexArrays() {
+        flush();
+        return backend.glGenVertexArrays();
+    }
+
+    public void glGenVertexArrays(IntBuffer arrays) {
+        flush();
+        backend.glGenVertexArrays(arrays);
+    }
+
+    public void glDeleteVertexArrays(int array) {
+        flush();
+        backend.glDeleteVertexArrays(array);
+    }
+
+    public void glDeleteVertexArrays(IntBuffer arrays) {
+        flush();
+        backend.glDeleteVertexArrays(arrays);
+    }
+
+    public void glBindVertexArray(int array) {
+        flush();
+        backend.glBindVertexArray(array);
+    }
+
+    public void glVertexAttribPointer(int index, int size, int type,
+                                      boolean normalized, int stride,
+                                      long offset) {
+        flush();
+        backend.glVertexAttribPointer(index, size, type, normalized, stride,
+                offset);
+    }
+
+    public void glVertexAttrib4fv(int index, FloatBuffer v) {
+        flush();
+        backend.glVertexAttrib4fv(index, v);
+    }
+
+    public void glEnableVertexAttribArray(int index) {
+        flush();
+        backend.glEnableVertexAttribArray(index);
+    }
+
+    public void glDisableVertexAttribArray(int index) {
+        flush();
+        backend.glDisableVertexAttribArray(index);
+    }
+
+    public void glVertexAttribDivisor(int index, int divisor) {
+        flush();
+        backend.glVertexAttribDivisor(index, divisor);
+    }
+
+    public void glVertexAttribFormat(int index, int size, int type,
+                                     boolean normalized, int relativeOffset) {
+        flush();
+        backend.glVertexAttribFormat(index, size, type, normalized,
+                relativeOffset);
+    }
+
+    public void glVertexAttribBinding(int index, int binding) {
+        flush();
+        backend.glVertexAttribBinding(index, binding);
+    }
+
+    public void glBindVertexBuffer(int binding, int buffer, long offset,
+                                   int stride) {
+        flush();
+        backend.glBindVertexBuffer(binding, buffer, offset, stride);
+    }
+
+    public int glGenTextures() {
+        flush();
+        return backend.glGenTextures();
+    }
+
+    public void glGenTextures(IntBuffer textures) {
+        flush();
+        backend.glGenTextures(textures);
+    }
+
+    public void glDeleteTextures(int texture) {
+        flush();
+        backend.glDeleteTextures(texture);
+    }
+
+    public void glDeleteTextures(IntBuffer textures) {
+        flush();
+        backend.glDeleteTextures(textures);
+    }
+
+    public void glBindTexture(int target, int texture) {
+        flush();
+        backend.glBindTexture(target, texture);
+    }
+
+    public void glTexImage2D(int target, int level, int internalFormat,
+                             int width, int height, int border, int format,
+                             int type, FloatBuffer pixels) {
+        flush();
+        backend.glTexImage2D(target, level, internalFormat, width, height,
+                border, format, type, pixels);
+    }
+
+    public void glTexStorage2D(int target, int levels, int internalFormat,
+                               int width, int height) {
+        flush();
+        backend.glTexStorage2D(target, levels, internalFormat, width, height);
+    }
+
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset,
+                                int width, int height, int format, int type,
+                                FloatBuffer pixels) {
+        flush();
+        backend.glTexSubImage2D(target, level, xoffset, yoffset, width, height,
+                format, type, pixels);
+    }
+
+    public int glGenFramebuffers() {
+        flush();
+        return backend.glGenFramebuffers();
+    }
+
+    public void glGenFramebuffers(IntBuffer framebuffers) {
+        flush();
+        backend.glGenFramebuffers(framebuffers);
+    }
+
+    public void glDeleteFramebuffers(int framebuffer) {
+        flush();
+        backend.glDeleteFramebuffers(framebuffer);
+    }
+
+    public void glDeleteFramebuffers(IntBuffer framebuffers) {
+        flush();
+        backend.glDeleteFramebuffers(framebuffers);
+    }
+
+    public void glBindFramebuffer(int target, int framebuffer) {
+        flush();
+        backend.glBindFramebuffer(target, framebuffer);
+    }
+
+    public void glClearBufferfv(int buffer, int drawbuffer, FloatBuffer value) {
+        flush();
+        backend.glClearBufferfv(buffer, drawbuffer, value);
+    }
+
+    public void glClearColor(float r, float g, float b, float a) {
+        flush();
+        backend.glClearColor(r, g, b, a);
+    }
+
+    public void glClearDepth(double depth) {
+        flush();
+        backend.glClearDepth(depth);
+    }
+
+    public void glClearStencil(int stencil) {
+        flush();
+        backend.glClearStencil(stencil);
+    }
+
+    public void glClear(int mask) {
+        flush();
+        backend.glClear(mask);
+    }
+
+    public void glPointSize(float size) {
+        flush();
+        backend.glPointSize(size);
+    }
+
+    public void glMultiDrawArrays(int mode, IntBuffer first, IntBuffer count) {
+        flush();
+        backend.glMultiDrawArrays(mode, first, count);
+    }
+
+    public void glMultiDrawElements(int mode, IntBuffer count, int type,
+                                    long[] offsets) {
+        flush();
+        backend.glMultiDrawElements(mode, count, type, offsets);
+    }
+
+    public void glDrawArraysInstanced(int mode, int first, int count,
+                                      int instances) {
+        flush();
+        backend.glDrawArraysInstanced(mode, first, count, instances);
+    }
+
+    public void glMultiDrawArraysIndirect(int mode, long offset, int drawCount,
+                                          int stride) {
+        flush();
+        backend.glMultiDrawArraysIndirect(mode, offset, drawCount, stride);
+    }
+
+    public void glMultiDrawElementsIndirect(int mode, int type, long offset,
+                                            int drawCount, int stride) {
+        flush();
+        backend.glMultiDrawElementsIndirect(mode, type, offset, drawCount,
+                stride);
+    }
+
+    public void glDrawElementsInstanced(int mode, int count, int type,
+                                        long offset, int instances) {
+        flush();
+        backend.glDrawElementsInstanced(mode, count, type, offset, instances);
+    }
+
+    public void glDrawElementsBaseVertex(int mode, int count, int type,
+                                         long offset, int baseVertex) {
+        flush();
+        backend.glDrawElementsBaseVertex(mode, count, type, offset, baseVertex);
+    }
+
+    public void glDrawRangeElements(int mode, int start, int end, int count,
+                                    int type, long offset) {
+        flush();
+        backend.glDrawRangeElements(mode, start, end, count, type, offset);
+    }
+
+    public void glDrawRangeElementsBaseVertex(int mode, int start, int end,
+                                              int count, int type, long offset,
+                                              int baseVertex) {
+        flush();
+        backend.glDrawRangeElementsBaseVertex(mode, start, end, count, type,
+                offset, baseVertex);
+    }
+}
@@ -1,4 +1,4 @@
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.Set;
 
 // A buffer is a linear allocation of memory that can be used for
@@ -14,18 +14,27 @@ import java.util.Set;
 // rendered directly by the video device.
 public class Buffer extends GLObject {
 
-    // targets to which this buffer is currently bound
-    private HashMap<BufferTarget, Buffer> bindings;
+    // targets to which this buffer is currently bound, one bit per target,
+    // indexed by the ordinal of the target
+    private int bindings;
     private boolean isDeleted;
     // the data associated with this buffer.  It is
     // populated by a calling glBufferData on a target
     // to which this buffer is bound.  It may be null.
     private BufferData data;
+    // the MapBit ordinals the buffer is mapped with, one bit each, or 0
+    // if it is not mapped
+    private int mapBits;
+    // the number of vertex array attributes and vertex buffer bindings
+    // that read from this buffer
+    private int attachments;
+    // whether the buffer is held free by a BufferPool
+    private boolean pooled;
 
     // this buffer
     Buffer(int id) {
         super(id);
-        bindings = new HashMap<BufferTarget, Buffer>();
+        bindings = 0;
         isDeleted = false;
         data = null;
     }
@@ -38,41 +47,148 @@ public class Buffer extends GLObject {
         return data != null;
     }
 
+    // the size of the data store in bytes; the buffer must have data
+    int getDataSize() {
+        return data.sizeInBytes;
+    }
+
+    BufferUsage getUsage() {
+        return data.usage;
+    }
+
+    // Give the buffer a data store.  This and the other changes of state
+    // below are checked by GLContext, at its validation level, before it
+    // makes them.
     void addData(int dataSize, BufferUsage u) {
-        // don't allow accidental overwriting of existing data
-        assert !this.hasData();
         this.data = new BufferData(dataSize, u);
     }
 
+    // whether the data store may be replaced by another with
+    // glBufferData, orphaning the old one
+    boolean canRespecify() {
+        return !data.immutable && isStreaming(data.usage);
+    }
+
+    // replace the data store, keeping count of how often it is done
+    void respecify(int dataSize, BufferUsage u) {
+        data.sizeInBytes = dataSize;
+        data.usage = u;
+        data.orphans++;
+    }
+
+    // the number of times the data store has been orphaned
+    int getOrphanCount() {
+        return data.orphans;
+    }
+
+    // whether the usage is one for data that is specified repeatedly
+    static boolean isStreaming(BufferUsage u) {
+        switch (u) {
+            case GL_STREAM_DRAW:
+            case GL_STREAM_READ:
+            case GL_STREAM_COPY:
+            case GL_DYNAMIC_DRAW:
+            case GL_DYNAMIC_READ:
+            case GL_DYNAMIC_COPY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // give the buffer an immutable data store, which may only be mapped
+    // with the given MapBit ordinals, and only updated by glBufferSubData
+    // if it is dynamic
+    void addStorage(int dataSize, int storageBits, boolean dynamic) {
+        this.data = new BufferData(dataSize, null);
+        data.immutable = true;
+        data.storageBits = storageBits;
+        data.dynamic = dynamic;
+    }
+
+    boolean isImmutable() {
+        return data.immutable;
+    }
+
+    int getStorageBits() {
+        return data.storageBits;
+    }
+
+    boolean isDynamicStorage() {
+        return data.dynamic;
+    }
+
+    void map(int bits) {
+        mapBits = bits;
+    }
+
+    void unmap() {
+        mapBits = 0;
+    }
+
+    boolean isMapped() {
+        return mapBits != 0;
+    }
+
+    int getMapBits() {
+        return mapBits;
+    }
+
+    // count a vertex array attribute or binding point reading from the
+    // buffer, or one that no longer does
+    void attach() {
+        attachments++;
+    }
+
+    void detach() {
+        attachments--;
+    }
+
+    // whether any vertex array still reads from the buffer
+    boolean isAttached() {
+        return attachments != 0;
+    }
+
+    boolean isPooled() {
+        return pooled;
+    }
+
+    void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
     void bind(BufferTarget t) {
-        // don't allow overwriting of an existing binding
-        assert bindings.get(t) == null;
-        bindings.put(t, this);
+        bindings |= 1 << t.ordinal();
     }
 
     void unbind(BufferTarget t) {
-        // verify this buffer is bound to the target in question
-        assert bindings.get(t) == this;
-        bindings.remove(t);
+        bindings &= ~(1 << t.ordinal());
+    }
+
+    boolean isBound() {
+        return bindings != 0;
     }
 
     void delete() {
-        // require that all existing bindings have
-        // been removed before deleting
-        assert bindings.size() == 0;
         isDeleted = true;
+        // deleting a buffer unmaps it
+        mapBits = 0;
     }
 
     Set<BufferTarget> getBindings() {
-        return bindings.keySet();
+        Set<BufferTarget> targets = EnumSet.noneOf(BufferTarget.class);
+        for (BufferTarget t : BufferTarget.values()) {
+            if ((bindings & (1 << t.ordinal())) != 0) targets.add(t);
+        }
+        return targets;
     }
 
     public String toString() {
         String s = "(id=" + getId() + ", ";
         String sb = "";
-        if (bindings.isEmpty()) sb = "None";
+        if (bindings == 0) sb = "None";
         else {
-            for (BufferTarget b : bindings.keySet()) {
+            for (BufferTarget b : getBindings()) {
                 sb = sb.concat(b.toString() + " ");
             }
         }
@@ -85,7 +201,15 @@ public class Buffer extends GLObject {
     // associated block of memory,
     private class BufferData {
         private int sizeInBytes;
+        // null for immutable storage
         private BufferUsage usage;
+        private boolean immutable;
+        // for immutable storage, the MapBit ordinals it may be mapped
+        // with, and whether glBufferSubData may update it
+        private int storageBits;
+        private boolean dynamic;
+        // the number of times the store has been respecified
+        private int orphans;
 
         public BufferData(int sizeInBytes, BufferUsage usage) {
             assert sizeInBytes >= 0;
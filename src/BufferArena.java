@@ -0,0 +1,302 @@
+// Sub-allocates ranges of one large buffer, so that many small meshes can
+// share a single buffer, and with it a single vertex array and binding,
+// rather than each having their own.
+//
+// Ranges are allocated from the first free range found that is large
+// enough, looking at the most recently freed first, and freed ranges are
+// merged with free neighbours.  Each range starts on a multiple of the
+// alignment it was allocated with.  Allocating vertex data aligned to the
+// vertex size means a mesh can be drawn with glDrawElementsBaseVertex,
+// passing getFirst(vertexSize) as the base vertex, and the offset of its
+// index data.
+//
+// Over time freed ranges can leave the free space split into pieces too
+// small to use.  defragment() packs the allocated ranges together at the
+// start of the buffer by copying them on the GPU, so the offsets of ranges
+// must be read again after it is called.
+public class BufferArena {
+
+    private GLContext context;
+    private Buffer buffer;
+    private int capacity;
+    private int usedBytes;
+    private int rangeCount;
+
+    // every range, allocated or free, in order of offset
+    private Range first;
+    // the free ranges, in no particular order
+    private Range firstFree;
+
+    // capacity - the size of the buffer in bytes
+    public BufferArena(GLContext c, int capacity, BufferUsage usage) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        context = c;
+        this.capacity = capacity;
+        buffer = c.createBuffer(capacity, usage);
+        first = new Range(this, 0, capacity, 1);
+        addFree(first);
+    }
+
+    // Allocate size bytes starting on a multiple of alignment.  Returns
+    // null if there is no free range large enough, in which case
+    // defragmenting may make room.
+    public Range allocate(int size, int alignment) {
+        if (size <= 0 || alignment <= 0) {
+            throw new IllegalArgumentException("size " + size +
+                    ", alignment " + alignment);
+        }
+        Range f = firstFree;
+        int start = 0;
+        while (f != null) {
+            start = align(f.offset, alignment);
+            if (start + size <= f.offset + f.size) break;
+            f = f.nextFree;
+        }
+        if (f == null) return null;
+        removeFree(f);
+        // leave any space before the aligned start free
+        if (start > f.offset) {
+            Range pad = new Range(this, f.offset, start - f.offset, 1);
+            insertBefore(f, pad);
+            addFree(pad);
+        }
+        // and any space after the end
+        int end = f.offset + f.size;
+        if (start + size < end) {
+            Range tail = new Range(this, start + size, end - start - size, 1);
+            insertAfter(f, tail);
+            addFree(tail);
+        }
+        Range r = new Range(this, start, size, alignment);
+        r.free = false;
+        replace(f, r);
+        usedBytes += size;
+        rangeCount++;
+        return r;
+    }
+
+    // Give a range back to the arena.  The range must not be used again.
+    public void free(Range r) {
+        if (r.arena != this || r.free) {
+            throw new IllegalArgumentException("Range " + r +
+                    " is not allocated from this arena");
+        }
+        usedBytes -= r.size;
+        rangeCount--;
+        r.arena = null;
+        Range f = new Range(this, r.offset, r.size, 1);
+        replace(r, f);
+        if (f.next != null && f.next.free) {
+            Range next = f.next;
+            removeFree(next);
+            f.size += next.size;
+            unlink(next);
+        }
+        if (f.previous != null && f.previous.free) {
+            f.previous.size += f.size;
+            unlink(f);
+        } else {
+            addFree(f);
+        }
+    }
+
+    // Move every allocated range as close to the start of the buffer as
+    // its alignment allows, leaving all the free space in one range at
+    // the end.  The data is copied within the buffer on the GPU, through
+    // a temporary buffer where a range would overlap its new position.
+    // Returns the number of bytes moved.
+    public int defragment() {
+        int moved = 0;
+        int cursor = 0;
+        Buffer staging = null;
+        Range r = first;
+        first = null;
+        firstFree = null;
+        Range last = null;
+        while (r != null) {
+            Range next = r.next;
+            if (r.free) {
+                r = next;
+                continue;
+            }
+            int target = align(cursor, r.alignment);
+            if (target > cursor) {
+                last = append(last, new Range(this, cursor, target - cursor,
+                        1));
+                addFree(last);
+            }
+            if (target < r.offset) {
+                if (target + r.size <= r.offset) {
+                    context.glCopyBufferSubData(buffer, buffer, r.offset,
+                            target, r.size);
+                } else {
+                    if (staging == null || staging.getDataSize() < r.size) {
+                        if (staging != null) context.glDeleteBuffers(staging);
+                        staging = context.createBuffer(r.size,
+                                BufferUsage.GL_STREAM_COPY);
+                    }
+                    context.glCopyBufferSubData(buffer, staging, r.offset, 0,
+                            r.size);
+                    context.glCopyBufferSubData(staging, buffer, 0, target,
+                            r.size);
+                }
+                moved += r.size;
+                r.offset = target;
+            }
+            last = append(last, r);
+            cursor = target + r.size;
+            r = next;
+        }
+        if (cursor < capacity) {
+            last = append(last, new Range(this, cursor, capacity - cursor,
+                    1));
+            addFree(last);
+        }
+        if (staging != null) context.glDeleteBuffers(staging);
+        return moved;
+    }
+
+    // Delete the buffer.  The arena must not be used afterwards.
+    public void delete() {
+        context.glDeleteBuffers(buffer);
+    }
+
+    // the buffer the ranges are allocated from
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // the bytes in allocated ranges
+    public int getUsedBytes() {
+        return usedBytes;
+    }
+
+    // the number of allocated ranges
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    // the size of the largest free range.  When this is much less than
+    // the free bytes, the free space is fragmented.
+    public int getLargestFree() {
+        int largest = 0;
+        for (Range f = firstFree; f != null; f = f.nextFree) {
+            largest = Math.max(largest, f.size);
+        }
+        return largest;
+    }
+
+    public String toString() {
+        return "(capacity=" + capacity + ", used=" + usedBytes +
+                ", ranges=" + rangeCount + ", largestFree=" +
+                getLargestFree() + ")";
+    }
+
+    private static int align(int offset, int alignment) {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+
+    // link r into the list of all ranges after last, returning r
+    private Range append(Range last, Range r) {
+        r.previous = last;
+        r.next = null;
+        if (last == null) first = r;
+        else last.next = r;
+        return r;
+    }
+
+    private void insertBefore(Range at, Range r) {
+        r.previous = at.previous;
+        r.next = at;
+        if (at.previous != null) at.previous.next = r;
+        else first = r;
+        at.previous = r;
+    }
+
+    private void insertAfter(Range at, Range r) {
+        r.previous = at;
+        r.next = at.next;
+        if (at.next != null) at.next.previous = r;
+        at.next = r;
+    }
+
+    // put r in place of old in the list of all ranges
+    private void replace(Range old, Range r) {
+        r.previous = old.previous;
+        r.next = old.next;
+        if (old.previous != null) old.previous.next = r;
+        else first = r;
+        if (old.next != null) old.next.previous = r;
+    }
+
+    private void unlink(Range r) {
+        if (r.previous != null) r.previous.next = r.next;
+        else first = r.next;
+        if (r.next != null) r.next.previous = r.previous;
+    }
+
+    private void addFree(Range r) {
+        r.previousFree = null;
+        r.nextFree = firstFree;
+        if (firstFree != null) firstFree.previousFree = r;
+        firstFree = r;
+    }
+
+    private void removeFree(Range r) {
+        if (r.previousFree != null) r.previousFree.nextFree = r.nextFree;
+        else firstFree = r.nextFree;
+        if (r.nextFree != null) r.nextFree.previousFree = r.previousFree;
+    }
+
+    // A range of bytes in an arena's buffer.
+    public static class Range {
+        private BufferArena arena;
+        private int offset;
+        private int size;
+        private int alignment;
+        private boolean free;
+        // neighbours in the list of all ranges, by offset
+        private Range previous;
+        private Range next;
+        // neighbours in the list of free ranges
+        private Range previousFree;
+        private Range nextFree;
+
+        private Range(BufferArena arena, int offset, int size,
+                      int alignment) {
+            this.arena = arena;
+            this.offset = offset;
+            this.size = size;
+            this.alignment = alignment;
+            this.free = true;
+        }
+
+        // the offset of the range in bytes, which changes if the arena is
+        // defragmented
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        // the index of the first element of the range, for elements of
+        // the given size; the range must have been allocated with an
+        // alignment that is a multiple of it
+        public int getFirst(int elementSize) {
+            assert alignment % elementSize == 0;
+            return offset / elementSize;
+        }
+
+        public String toString() {
+            return "(offset=" + offset + ", size=" + size + ")";
+        }
+    }
+}
@@ -0,0 +1,225 @@
+// Hands out buffers that already have a data store, and takes them back
+// for reuse, so that short-lived buffers don't cost a driver allocation
+// each time.
+//
+// Requested sizes are rounded up to a size class, a power of two of at
+// least MIN_SIZE bytes, and a buffer is only reused for a request of the
+// same size class and usage.  The contents of a buffer handed out are
+// undefined; fill it with glBufferSubData rather than glBufferData, since
+// its data store already exists.
+//
+// Buffers released to the pool stay resident until they are reused or
+// evicted.  When the resident bytes would exceed the pool's cap, the
+// buffers released longest ago are deleted first.  Buffers that are in
+// use don't count against the cap.
+public class BufferPool {
+
+    // the smallest size class, in bytes, as a power of two
+    private static final int MIN_SHIFT = 8;
+    public static final int MIN_SIZE = 1 << MIN_SHIFT;
+    // the largest size class is 2^30 bytes
+    private static final int CLASSES = 30 - MIN_SHIFT + 1;
+    private static final int USAGES = BufferUsage.values().length;
+
+    private GLContext context;
+    private long maxBytes;
+    private long residentBytes;
+
+    // the free buffers of each usage and size class, most recently
+    // released first, indexed by bucket()
+    private Entry[] buckets;
+    // all free buffers, most recently released at the head
+    private Entry newest;
+    private Entry oldest;
+    // entries not in use, so that releasing doesn't allocate
+    private Entry spare;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // maxBytes - the most bytes of data store kept for reuse
+    public BufferPool(GLContext c, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes " + maxBytes);
+        }
+        context = c;
+        this.maxBytes = maxBytes;
+        buckets = new Entry[USAGES * CLASSES];
+    }
+
+    // Get a buffer with a data store of at least the given size in bytes
+    // and the given usage.  The buffer is not bound to any target.
+    public Buffer acquire(int size, BufferUsage usage) {
+        int sizeClass = sizeClass(size);
+        int bucket = bucket(usage, sizeClass);
+        Entry e = buckets[bucket];
+        if (e != null) {
+            hits++;
+            remove(e);
+            Buffer b = e.buffer;
+            b.setPooled(false);
+            e.buffer = null;
+            e.newer = spare;
+            spare = e;
+            residentBytes -= b.getDataSize();
+            return b;
+        }
+        misses++;
+        return context.createBuffer(1 << (sizeClass + MIN_SHIFT), usage);
+    }
+
+    // Give a buffer back to the pool.  It must not be bound to any target,
+    // and must not be used again by the caller.  A buffer whose data store
+    // isn't the size of a size class, such as one handed out by acquire()
+    // and then grown with streamBufferData, is deleted rather than kept.
+    public void release(Buffer b) {
+        if (b.isBound()) {
+            throw new IllegalStateException("Released buffer " + b.getId() +
+                    " is still bound");
+        }
+        if (b.isPooled()) {
+            throw new IllegalStateException("Buffer " + b.getId() +
+                    " was already released");
+        }
+        int size = b.getDataSize();
+        if (size < MIN_SIZE || size > 1 << 30 || Integer.bitCount(size) != 1) {
+            context.glDeleteBuffers(b);
+            return;
+        }
+        int sizeClass = sizeClass(size);
+        if (size > maxBytes) {
+            context.glDeleteBuffers(b);
+            evictions++;
+            return;
+        }
+        while (residentBytes + size > maxBytes) {
+            evict(oldest);
+        }
+        Entry e = spare;
+        if (e != null) {
+            spare = e.newer;
+        } else {
+            e = new Entry();
+        }
+        e.buffer = b;
+        b.setPooled(true);
+        e.bucket = bucket(b.getUsage(), sizeClass);
+        add(e);
+        residentBytes += size;
+    }
+
+    // delete every buffer held for reuse
+    public void trim() {
+        while (oldest != null) {
+            evict(oldest);
+        }
+    }
+
+    // change the most bytes kept for reuse, evicting buffers if needed
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        while (residentBytes > maxBytes) {
+            evict(oldest);
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    // the bytes of data store held by free buffers
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    // requests served by a free buffer
+    public long getHits() {
+        return hits;
+    }
+
+    // requests that needed a new buffer
+    public long getMisses() {
+        return misses;
+    }
+
+    // free buffers deleted to stay within the cap, or by trim()
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public String toString() {
+        return "(hits=" + hits + ", misses=" + misses + ", evictions=" +
+                evictions + ", residentBytes=" + residentBytes + ")";
+    }
+
+    private void evict(Entry e) {
+        remove(e);
+        residentBytes -= e.buffer.getDataSize();
+        e.buffer.setPooled(false);
+        context.glDeleteBuffers(e.buffer);
+        evictions++;
+        e.buffer = null;
+        e.newer = spare;
+        spare = e;
+    }
+
+    // add the entry as the newest, and at the front of its bucket
+    private void add(Entry e) {
+        e.older = null;
+        e.newer = newest;
+        if (newest != null) newest.older = e;
+        else oldest = e;
+        newest = e;
+        e.previous = null;
+        e.next = buckets[e.bucket];
+        if (e.next != null) e.next.previous = e;
+        buckets[e.bucket] = e;
+    }
+
+    private void remove(Entry e) {
+        if (e.older != null) e.older.newer = e.newer;
+        else oldest = e.newer;
+        if (e.newer != null) e.newer.older = e.older;
+        else newest = e.older;
+        if (e.previous != null) e.previous.next = e.next;
+        else buckets[e.bucket] = e.next;
+        if (e.next != null) e.next.previous = e.previous;
+    }
+
+    // the size class of the given number of bytes: 0 for MIN_SIZE or
+    // less, 1 for twice that, and so on
+    private static int sizeClass(int size) {
+        if (size < 0 || size > 1 << 30) {
+            throw new IllegalArgumentException("Buffer size " + size);
+        }
+        if (size <= MIN_SIZE) return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static int bucket(BufferUsage usage, int sizeClass) {
+        return sizeClass * USAGES + usage.ordinal();
+    }
+
+    // A free buffer, linked into both the list of all free buffers, in the
+    // order they were released, and the list of its bucket.
+    private static class Entry {
+        private Buffer buffer;
+        private int bucket;
+        // towards the oldest and newest in the list of all free buffers
+        private Entry older;
+        private Entry newer;
+        // neighbours in the bucket's list
+        private Entry previous;
+        private Entry next;
+    }
+}
@@ -3,5 +3,9 @@ enum BufferTarget {
     GL_ARRAY_BUFFER,
     GL_COPY_READ_BUFFER,
     GL_COPY_WRITE_BUFFER,
-    GL_ELEMENT_ARRAY_BUFFER
+    GL_ELEMENT_ARRAY_BUFFER,
+    // uniform block data; also has indexed binding points
+    GL_UNIFORM_BUFFER,
+    // the commands of indirect draws
+    GL_DRAW_INDIRECT_BUFFER
 }
@@ -0,0 +1,43 @@
+// A fixed size ring holding the names of the most recent calls made through
+// a GLContext.  Once full, each new call overwrites the oldest one.
+class CallLog {
+
+    private String[] calls;
+    // the slot the next call will be written to
+    private int next;
+    // the number of calls held, at most calls.length
+    private int size;
+
+    CallLog(int capacity) {
+        assert capacity > 0;
+        calls = new String[capacity];
+        next = 0;
+        size = 0;
+    }
+
+    void add(String call) {
+        calls[next] = call;
+        next = (next + 1) % calls.length;
+        if (size < calls.length) size++;
+    }
+
+    void clear() {
+        next = 0;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // the calls held, oldest first, one per line
+    public String toString() {
+        if (size == 0) return "None\n";
+        String s = "";
+        int first = (next - size + calls.length) % calls.length;
+        for (int i = 0; i < size; i++) {
+            s = s.concat(calls[(first + i) % calls.length] + "\n");
+        }
+        return s;
+    }
+}
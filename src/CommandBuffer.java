@@ -0,0 +1,281 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// A command buffer records calls that mirror those of a GLContext, but
+// rather than executing them it encodes them into a compact byte stream
+// held off the Java heap.  The stream is executed later by replaying it
+// against a GLContext, on the thread that owns the OpenGL context.
+//
+// Objects are recorded by name and looked up in the context when the
+// stream is replayed, so recording does not touch the context at all and
+// can be done on any thread.  A command buffer is not itself thread safe;
+// each recording thread should use its own.
+//
+// Replaying does not allocate, so a stream of commands that doesn't
+// change from frame to frame can be recorded once and replayed every
+// frame.  Binds are replayed with replace semantics: a bind replaces
+// whatever the context has bound to the target, rather than requiring it
+// to be unbound first.
+public class CommandBuffer {
+
+    // opcodes
+    private static final int BIND_BUFFER = 1;
+    private static final int BIND_TEXTURE = 2;
+    private static final int BIND_VERTEX_ARRAY = 3;
+    private static final int USE_PROGRAM = 4;
+    private static final int BUFFER_SUB_DATA = 5;
+    private static final int VERTEX_ATTRIB_POINTER = 6;
+    private static final int ENABLE_VERTEX_ATTRIB_ARRAY = 7;
+    private static final int DRAW_ARRAYS = 8;
+    private static final int DRAW_ELEMENTS = 9;
+    private static final int CLEAR_COLOR = 10;
+    private static final int CLEAR = 11;
+
+    private static final int INITIAL_CAPACITY = 4096;
+    // the largest array the VM can allocate, which bounds direct buffers
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    // enum constants, indexed by ordinal, for decoding
+    private static final BufferTarget[] BUFFER_TARGETS =
+            BufferTarget.values();
+    private static final TextureTarget[] TEXTURE_TARGETS =
+            TextureTarget.values();
+    private static final DrawMode[] DRAW_MODES = DrawMode.values();
+    private static final GLType[] TYPES = GLType.values();
+
+    // the encoded commands, from 0 up to the position
+    private ByteBuffer commands;
+    // a second view of the commands, used to pass recorded data on to the
+    // context without allocating
+    private ByteBuffer data;
+    // the number of commands recorded
+    private int count;
+
+    public CommandBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    // capacity - the initial size of the stream, in bytes.  The stream
+    //            grows as needed.
+    public CommandBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        commands = ByteBuffer.allocateDirect(capacity)
+                .order(ByteOrder.nativeOrder());
+        data = commands.duplicate();
+        count = 0;
+    }
+
+    public void glBindBuffer(BufferTarget target, Buffer buffer) {
+        begin(BIND_BUFFER, 8);
+        commands.putInt(target.ordinal());
+        commands.putInt(name(buffer));
+    }
+
+    public void glBindTexture(TextureTarget target, Texture texture) {
+        begin(BIND_TEXTURE, 8);
+        commands.putInt(target.ordinal());
+        commands.putInt(name(texture));
+    }
+
+    public void glBindVertexArray(VertexArray o) {
+        begin(BIND_VERTEX_ARRAY, 4);
+        commands.putInt(name(o));
+    }
+
+    public void glUseProgram(Program p) {
+        begin(USE_PROGRAM, 4);
+        commands.putInt(name(p));
+    }
+
+    // The remaining bytes of the data are copied into the stream, so the
+    // data may be reused as soon as this returns.
+    public void glBufferSubData(BufferTarget target, long byteOffset,
+                                ByteBuffer data) {
+        int size = data.remaining();
+        begin(BUFFER_SUB_DATA, 16 + size);
+        commands.putInt(target.ordinal());
+        commands.putLong(byteOffset);
+        commands.putInt(size);
+        commands.put(data.duplicate());
+    }
+
+    public void glVertexAttribPointer(int index, int size, GLType type,
+                                      boolean normalized, int stride,
+                                      int offset) {
+        begin(VERTEX_ATTRIB_POINTER, 24);
+        commands.putInt(index);
+        commands.putInt(size);
+        commands.putInt(type.ordinal());
+        commands.putInt(normalized ? 1 : 0);
+        commands.putInt(stride);
+        commands.putInt(offset);
+    }
+
+    public void glEnableVertexAttribArray(int index) {
+        begin(ENABLE_VERTEX_ATTRIB_ARRAY, 4);
+        commands.putInt(index);
+    }
+
+    public void glDrawArrays(DrawMode mode, int first, int count) {
+        begin(DRAW_ARRAYS, 12);
+        commands.putInt(mode.ordinal());
+        commands.putInt(first);
+        commands.putInt(count);
+    }
+
+    public void glDrawElements(DrawMode mode, int count, GLType type,
+                               int offset) {
+        begin(DRAW_ELEMENTS, 16);
+        commands.putInt(mode.ordinal());
+        commands.putInt(count);
+        commands.putInt(type.ordinal());
+        commands.putInt(offset);
+    }
+
+    public void glClearColor(float r, float g, float b, float a) {
+        begin(CLEAR_COLOR, 16);
+        commands.putFloat(r);
+        commands.putFloat(g);
+        commands.putFloat(b);
+        commands.putFloat(a);
+    }
+
+    public void glClear(BufferBit b) {
+        begin(CLEAR, 4);
+        commands.putInt(1 << b.ordinal());
+    }
+
+    public void glClear(BufferBit[] bufferBits) {
+        int bits = 0;
+        for (BufferBit b : bufferBits) {
+            bits = bits | (1 << b.ordinal());
+        }
+        begin(CLEAR, 4);
+        commands.putInt(bits);
+    }
+
+    // the number of commands recorded
+    public int getCount() {
+        return count;
+    }
+
+    // the size of the recorded stream, in bytes
+    public int getSize() {
+        return commands.position();
+    }
+
+    // discard all recorded commands, keeping the memory for reuse
+    public void reset() {
+        commands.clear();
+        count = 0;
+    }
+
+    // Execute the recorded commands against the context, in the order in
+    // which they were recorded.  Must be called on the thread that owns
+    // the OpenGL context.  The commands are kept, and may be replayed
+    // again.
+    public void replay(GLContext c) {
+        ByteBuffer s = commands;
+        int end = s.position();
+        int p = 0;
+        while (p < end) {
+            int op = s.getInt(p);
+            p += 4;
+            switch (op) {
+                case BIND_BUFFER:
+                    c.replaceBuffer(BUFFER_TARGETS[s.getInt(p)],
+                            c.getBuffer(s.getInt(p + 4)));
+                    p += 8;
+                    break;
+                case BIND_TEXTURE:
+                    c.replaceTexture(TEXTURE_TARGETS[s.getInt(p)],
+                            c.getTexture(s.getInt(p + 4)));
+                    p += 8;
+                    break;
+                case BIND_VERTEX_ARRAY:
+                    c.replaceVertexArray(c.getVertexArray(s.getInt(p)));
+                    p += 4;
+                    break;
+                case USE_PROGRAM:
+                    c.glUseProgram(c.getProgram(s.getInt(p)));
+                    p += 4;
+                    break;
+                case BUFFER_SUB_DATA: {
+                    int size = s.getInt(p + 12);
+                    data.limit(p + 16 + size);
+                    data.position(p + 16);
+                    c.glBufferSubData(BUFFER_TARGETS[s.getInt(p)],
+                            s.getLong(p + 4), data);
+                    p += 16 + size;
+                    break;
+                }
+                case VERTEX_ATTRIB_POINTER:
+                    c.glVertexAttribPointer(s.getInt(p), s.getInt(p + 4),
+                            TYPES[s.getInt(p + 8)], s.getInt(p + 12) != 0,
+                            s.getInt(p + 16), s.getInt(p + 20));
+                    p += 24;
+                    break;
+                case ENABLE_VERTEX_ATTRIB_ARRAY:
+                    c.glEnableVertexAttribArray(s.getInt(p));
+                    p += 4;
+                    break;
+                case DRAW_ARRAYS:
+                    c.glDrawArrays(DRAW_MODES[s.getInt(p)], s.getInt(p + 4),
+                            s.getInt(p + 8));
+                    p += 12;
+                    break;
+                case DRAW_ELEMENTS:
+                    c.glDrawElements(DRAW_MODES[s.getInt(p)],
+                            s.getInt(p + 4), TYPES[s.getInt(p + 8)],
+                            s.getInt(p + 12));
+                    p += 16;
+                    break;
+                case CLEAR_COLOR:
+                    c.glClearColor(s.getFloat(p), s.getFloat(p + 4),
+                            s.getFloat(p + 8), s.getFloat(p + 12));
+                    p += 16;
+                    break;
+                case CLEAR:
+                    c.clear(s.getInt(p));
+                    p += 4;
+                    break;
+                default:
+                    throw new IllegalStateException("Corrupt command " +
+                            "stream: opcode " + op + " at " + (p - 4));
+            }
+        }
+    }
+
+    // start a command with the given opcode, followed by the given number
+    // of bytes of arguments
+    private void begin(int op, int argumentBytes) {
+        ensureRemaining(4 + argumentBytes);
+        commands.putInt(op);
+        count++;
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (commands.remaining() >= bytes) return;
+        // at least double, so that recording takes linear time overall,
+        // but no more than a direct buffer can hold
+        long needed = (long) commands.position() + bytes;
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalStateException("Command stream of " + needed +
+                    " bytes is too large");
+        }
+        int capacity = (int) Math.min(MAX_CAPACITY,
+                Math.max(2L * commands.capacity(), needed));
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity)
+                .order(ByteOrder.nativeOrder());
+        commands.flip();
+        grown.put(commands);
+        commands = grown;
+        data = commands.duplicate();
+    }
+
+    private static int name(GLObject o) {
+        return o == null ? 0 : o.getId();
+    }
+}
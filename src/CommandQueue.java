@@ -0,0 +1,114 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Collects command buffers recorded concurrently on worker threads and
+// replays them on the single thread that owns the OpenGL context.
+//
+// Each worker records into its own CommandBuffer and submits it with an
+// order key.  Submission is lock-free and may happen from any thread.  The
+// owner thread then calls flush(), which replays everything submitted so
+// far in ascending order of key, regardless of the order in which the
+// workers finished.  Keys must be unique within a flush, so that the order
+// is fully determined by the caller.
+//
+// Since every list is replayed through the same GLContext, the binding
+// state left by one list is the state the next one starts in.  Binds are
+// replayed with replace semantics, so a list may bind over whatever an
+// earlier list left bound, and binds already in place are skipped.
+public class CommandQueue {
+
+    private GLContext context;
+    // the thread that owns the OpenGL context
+    private Thread owner;
+    private ConcurrentLinkedQueue<Submission> pending;
+    // submissions drained from the queue, sorted by key before replay
+    private Submission[] batch;
+
+    // Create a queue feeding the given context.  Must be called on the
+    // thread that owns the OpenGL context.
+    public CommandQueue(GLContext c) {
+        context = c;
+        owner = Thread.currentThread();
+        pending = new ConcurrentLinkedQueue<Submission>();
+        batch = new Submission[16];
+    }
+
+    // Submit a recorded command buffer, to be replayed in the position
+    // given by its key.  The buffer must not be modified until it has been
+    // replayed by flush().  May be called from any thread.
+    public void submit(long key, CommandBuffer commands) {
+        pending.offer(new Submission(key, commands));
+    }
+
+    // Replay all submitted command buffers in ascending order of key.
+    // Must be called on the thread that owns the OpenGL context.  Returns
+    // the number of command buffers replayed.  If two buffers were
+    // submitted with the same key, only the first of them is replayed,
+    // along with every other buffer, and then an IllegalStateException
+    // is thrown.
+    public int flush() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("CommandQueue flushed from " +
+                    Thread.currentThread() + ", not the owner " + owner);
+        }
+        int n = 0;
+        Submission s;
+        while ((s = pending.poll()) != null) {
+            if (n == batch.length) {
+                Submission[] grown = new Submission[n * 2];
+                System.arraycopy(batch, 0, grown, 0, n);
+                batch = grown;
+            }
+            batch[n++] = s;
+        }
+        sort(batch, n);
+        int duplicates = 0;
+        long duplicate = 0;
+        try {
+            for (int i = 0; i < n; i++) {
+                if (i > 0 && batch[i].key == batch[i - 1].key) {
+                    if (duplicates++ == 0) duplicate = batch[i].key;
+                    continue;
+                }
+                batch[i].commands.replay(context);
+            }
+        } finally {
+            for (int i = 0; i < n; i++) {
+                batch[i] = null;
+            }
+        }
+        if (duplicates > 0) {
+            throw new IllegalStateException(duplicates + " duplicate " +
+                    "submission keys, the first " + duplicate);
+        }
+        return n;
+    }
+
+    // the number of command buffers submitted but not yet replayed
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    // An insertion sort by key.  The number of submissions per frame is
+    // small, and they often arrive nearly in order.
+    private static void sort(Submission[] a, int n) {
+        for (int i = 1; i < n; i++) {
+            Submission s = a[i];
+            int j = i - 1;
+            while (j >= 0 && a[j].key > s.key) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = s;
+        }
+    }
+
+    private static class Submission {
+        private final long key;
+        private final CommandBuffer commands;
+
+        private Submission(long key, CommandBuffer commands) {
+            this.key = key;
+            this.commands = commands;
+        }
+    }
+}
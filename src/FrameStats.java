@@ -0,0 +1,71 @@
+// Counters gathered by a GLContext over the course of a single frame.  A
+// frame is ended by calling GLContext.endFrame(), at which point the
+// counters of the frame just completed become available and a new set of
+// counters is started.
+public class FrameStats {
+
+    // driver calls that were skipped because they would not have changed
+    // the OpenGL state (state filtering must be enabled on the context)
+    int elidedCalls;
+    // buffer data stores replaced by respecifying them with glBufferData
+    int orphanedBuffers;
+    // uniform uploads skipped because the value was already set
+    int skippedUniforms;
+    // draws made with draw batching enabled, and the driver calls they
+    // were issued with
+    int batchedDraws;
+    int drawBatches;
+
+    FrameStats() {
+        reset();
+    }
+
+    public int getElidedCalls() {
+        return elidedCalls;
+    }
+
+    public int getOrphanedBuffers() {
+        return orphanedBuffers;
+    }
+
+    public int getSkippedUniforms() {
+        return skippedUniforms;
+    }
+
+    public int getBatchedDraws() {
+        return batchedDraws;
+    }
+
+    public int getDrawBatches() {
+        return drawBatches;
+    }
+
+    // the average number of draws merged into each driver call, or 0 if
+    // no draws were batched
+    public float getMergeRatio() {
+        return drawBatches == 0 ? 0 : (float) batchedDraws / drawBatches;
+    }
+
+    void reset() {
+        elidedCalls = 0;
+        orphanedBuffers = 0;
+        skippedUniforms = 0;
+        batchedDraws = 0;
+        drawBatches = 0;
+    }
+
+    void copy(FrameStats other) {
+        elidedCalls = other.elidedCalls;
+        orphanedBuffers = other.orphanedBuffers;
+        skippedUniforms = other.skippedUniforms;
+        batchedDraws = other.batchedDraws;
+        drawBatches = other.drawBatches;
+    }
+
+    public String toString() {
+        return "(elidedCalls=" + elidedCalls + ", orphanedBuffers=" +
+                orphanedBuffers + ", skippedUniforms=" + skippedUniforms +
+                ", batchedDraws=" + batchedDraws + ", drawBatches=" +
+                drawBatches + ")";
+    }
+}
@@ -0,0 +1,193 @@
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+// The OpenGL entry points used by a GLContext.  Every call made by the
+// context to the driver goes through a backend, so that the context's own
+// state tracking can be exercised (and measured) without a driver, for
+// example by substituting a RecordingBackend for the LwjglBackend.
+//
+// Arguments are the raw OpenGL names and enumerants, exactly as they would
+// be passed to the corresponding OpenGL function.
+interface GLBackend {
+
+    int glGetError();
+    int glGetInteger(int pname);
+    String glGetString(int name);
+
+    // Install a listener for error messages reported through debug output
+    // (KHR_debug), delivered synchronously from within the offending call.
+    // Returns false if the driver does not support debug output.
+    boolean glDebugMessageCallback(DebugListener listener);
+
+    // Set the number of threads the driver may compile shaders with
+    // (ARB_parallel_shader_compile), 0xFFFFFFFF for as many as it likes,
+    // after which GL_COMPLETION_STATUS_ARB can be queried to see whether
+    // a compile or link has finished without waiting for it.  Returns
+    // false if the driver does not support parallel compilation.
+    boolean glMaxShaderCompilerThreads(int count);
+
+    interface DebugListener {
+        void error(int id, String message);
+    }
+
+    // buffers
+    int glGenBuffers();
+    void glGenBuffers(IntBuffer buffers);
+    void glDeleteBuffers(int buffer);
+    void glDeleteBuffers(IntBuffer buffers);
+    void glBindBuffer(int target, int buffer);
+    void glBindBufferBase(int target, int index, int buffer);
+    void glBindBufferRange(int target, int index, int buffer, long offset,
+                           long size);
+    void glBufferData(int target, FloatBuffer data, int usage);
+    void glBufferData(int target, IntBuffer data, int usage);
+    void glBufferData(int target, ByteBuffer data, int usage);
+    void glBufferData(int target, long size, int usage);
+    void glBufferSubData(int target, long offset, ByteBuffer data);
+    void glBufferStorage(int target, long size, int flags);
+    void glCopyBufferSubData(int readTarget, int writeTarget,
+                             long readOffset, long writeOffset, long size);
+    void glClearBufferSubData(int target, int internalFormat, long offset,
+                              long size, int format, int type,
+                              IntBuffer data);
+    ByteBuffer glMapBufferRange(int target, long offset, long length,
+                                int access);
+    void glFlushMappedBufferRange(int target, long offset, long length);
+    boolean glUnmapBuffer(int target);
+
+    // sync objects
+    long glFenceSync();
+    int glClientWaitSync(long sync, int flags, long timeout);
+    void glDeleteSync(long sync);
+
+    // shaders and programs
+    int glCreateShader(int type);
+    void glShaderSource(int shader, CharSequence source);
+    void glCompileShader(int shader);
+    int glGetShaderi(int shader, int pname);
+    String glGetShaderInfoLog(int shader);
+    void glDeleteShader(int shader);
+    int glCreateProgram();
+    void glAttachShader(int program, int shader);
+    void glLinkProgram(int program);
+    int glGetProgrami(int program, int pname);
+    String glGetProgramInfoLog(int program);
+    void glUseProgram(int program);
+    void glDeleteProgram(int program);
+    void glProgramParameteri(int program, int pname, int value);
+    void glGetProgramBinary(int program, IntBuffer length, IntBuffer format,
+                            ByteBuffer binary);
+    void glProgramBinary(int program, int format, ByteBuffer binary);
+    int glGetUniformLocation(int program, CharSequence name);
+    int glGetAttribLocation(int program, CharSequence name);
+    String glGetActiveUniform(int program, int index, IntBuffer size,
+                              IntBuffer type);
+    String glGetActiveAttrib(int program, int index, IntBuffer size,
+                             IntBuffer type);
+    String glGetActiveUniformBlockName(int program, int index);
+    int glGetActiveUniformBlocki(int program, int index, int pname);
+    void glUniformBlockBinding(int program, int index, int binding);
+    void glBindFragDataLocation(int program, int colorNumber, CharSequence
+            name);
+
+    // uniforms of the program in use
+    void glUniform1f(int location, float x);
+    void glUniform2f(int location, float x, float y);
+    void glUniform3f(int location, float x, float y, float z);
+    void glUniform4f(int location, float x, float y, float z, float w);
+    void glUniform1i(int location, int x);
+    void glUniform2i(int location, int x, int y);
+    void glUniform3i(int location, int x, int y, int z);
+    void glUniform4i(int location, int x, int y, int z, int w);
+    void glUniform1ui(int location, int x);
+    void glUniform1fv(int location, FloatBuffer values);
+    void glUniform2fv(int location, FloatBuffer values);
+    void glUniform3fv(int location, FloatBuffer values);
+    void glUniform4fv(int location, FloatBuffer values);
+    void glUniform1iv(int location, IntBuffer values);
+    void glUniform2iv(int location, IntBuffer values);
+    void glUniform3iv(int location, IntBuffer values);
+    void glUniform4iv(int location, IntBuffer values);
+    void glUniform1uiv(int location, IntBuffer values);
+    void glUniformMatrix2fv(int location, boolean transpose,
+                            FloatBuffer values);
+    void glUniformMatrix3fv(int location, boolean transpose,
+                            FloatBuffer values);
+    void glUniformMatrix4fv(int location, boolean transpose,
+                            FloatBuffer values);
+
+    // vertex arrays
+    int glGenVertexArrays();
+    void glGenVertexArrays(IntBuffer arrays);
+    void glDeleteVertexArrays(int array);
+    void glDeleteVertexArrays(IntBuffer arrays);
+    void glBindVertexArray(int array);
+    void glVertexAttribPointer(int index, int size, int type,
+                               boolean normalized, int stride, long offset);
+    void glVertexAttrib4fv(int index, FloatBuffer v);
+    void glEnableVertexAttribArray(int index);
+    void glDisableVertexAttribArray(int index);
+    void glVertexAttribDivisor(int index, int divisor);
+    // separate attribute formats (OpenGL 4.3, ARB_vertex_attrib_binding)
+    void glVertexAttribFormat(int index, int size, int type,
+                              boolean normalized, int relativeOffset);
+    void glVertexAttribBinding(int index, int binding);
+    void glBindVertexBuffer(int binding, int buffer, long offset,
+                            int stride);
+
+    // textures
+    int glGenTextures();
+    void glGenTextures(IntBuffer textures);
+    void glDeleteTextures(int texture);
+    void glDeleteTextures(IntBuffer textures);
+    void glBindTexture(int target, int texture);
+    void glTexImage2D(int target, int level, int internalFormat, int width,
+                      int height, int border, int format, int type,
+                      FloatBuffer pixels);
+    void glTexStorage2D(int target, int levels, int internalFormat,
+                        int width, int height);
+    void glTexSubImage2D(int target, int level, int xoffset, int yoffset,
+                         int width, int height, int format, int type,
+                         FloatBuffer pixels);
+
+    // framebuffers
+    int glGenFramebuffers();
+    void glGenFramebuffers(IntBuffer framebuffers);
+    void glDeleteFramebuffers(int framebuffer);
+    void glDeleteFramebuffers(IntBuffer framebuffers);
+    void glBindFramebuffer(int target, int framebuffer);
+    void glClearBufferfv(int buffer, int drawbuffer, FloatBuffer value);
+
+    // clearing
+    void glClearColor(float r, float g, float b, float a);
+    void glClearDepth(double depth);
+    void glClearStencil(int stencil);
+    void glClear(int mask);
+
+    // drawing
+    void glPointSize(float size);
+    void glDrawArrays(int mode, int first, int count);
+    void glDrawElements(int mode, int count, int type, long offset);
+    // draw the runs of vertices given by the firsts and counts remaining
+    // in the buffers, or the runs of indices at the byte offsets into the
+    // element array buffer given by the start of the array, as one call
+    void glMultiDrawArrays(int mode, IntBuffer first, IntBuffer count);
+    void glMultiDrawElements(int mode, IntBuffer count, int type,
+                             long[] offsets);
+    void glDrawArraysInstanced(int mode, int first, int count,
+                               int instances);
+    void glMultiDrawArraysIndirect(int mode, long offset, int drawCount,
+                                   int stride);
+    void glMultiDrawElementsIndirect(int mode, int type, long offset,
+                                     int drawCount, int stride);
+    void glDrawElementsInstanced(int mode, int count, int type, long offset,
+                                 int instances);
+    void glDrawElementsBaseVertex(int mode, int count, int type,
+                                  long offset, int baseVertex);
+    void glDrawRangeElements(int mode, int start, int end, int count,
+                             int type, long offset);
+    void glDrawRangeElementsBaseVertex(int mode, int start, int end,
+                                       int count, int type, long offset,
+                                       int baseVertex);
+}
@@ -1,112 +1,469 @@
+import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.*;
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
-
-import static org.lwjgl.opengl.GL20.*;
-import static org.lwjgl.opengl.GLUtil.checkGLError;
+import java.util.concurrent.CompletableFuture;
 
 // Wrap an OpenGL context, for the purpose of tracking OpenGL context state.
+// All calls to OpenGL are made through a GLBackend.
 public class GLContext {
 
+    // create a context that calls the OpenGL context current on this thread
     public GLContext() {
+        this(new LwjglBackend());
+    }
+
+    GLContext(GLBackend backend) {
+        gl = backend;
+
+        bufferTargets = new Buffer[BufferTarget.values().length];
+        textureTargets = new Texture[TextureTarget.values().length];
+        framebufferTargets = new Framebuffer[FramebufferTarget.values()
+                .length];
+        framebuffers = new ObjectRegistry<Framebuffer>();
+        buffers = new ObjectRegistry<Buffer>();
+        textures = new ObjectRegistry<Texture>();
+        vertexArrays = new ObjectRegistry<VertexArray>();
+        programs = new ObjectRegistry<Program>();
+        shaders = new ObjectRegistry<Shader>();
+        pendingShaders = new ArrayList<Shader>();
+        pendingPrograms = new ArrayList<Program>();
+        bitplane = new Bitplane();
+        defaultFramebuffer = new DefaultFramebuffer();
+        stateFiltering = false;
+        validation = ValidationLevel.FULL;
+        callLog = new CallLog(CALL_LOG_SIZE);
+        debugOutput = false;
+        frameStats = new FrameStats();
+        lastFrameStats = new FrameStats();
+    }
+
+    // When state filtering is enabled, bind and use calls that would not
+    // change the tracked state (binding the object that is already bound,
+    // or unbinding a target that is already unbound) are not passed on
+    // to the driver.  The number of calls skipped is reported per frame.
+    public void setStateFiltering(boolean enabled) {
+        stateFiltering = enabled;
+    }
+
+    public boolean isStateFiltering() {
+        return stateFiltering;
+    }
+
+    // Mark the end of the current frame.  The counters gathered during
+    // the frame become available from getFrameStats().
+    public void endFrame() {
+        flushDraws();
+        lastFrameStats.copy(frameStats);
+        frameStats.reset();
+        if (validation == ValidationLevel.PER_FRAME) {
+            drainGLErrors();
+        }
+    }
 
-        bufferTargets = new HashMap<BufferTarget, Buffer>();
-        for (BufferTarget target : BufferTarget.values()) {
-            bufferTargets.put(target, null);
+    // the counters of the most recently completed frame
+    public FrameStats getFrameStats() {
+        return lastFrameStats;
+    }
+
+    // When draw batching is enabled, consecutive glDrawArrays calls, or
+    // glDrawElements calls, of the same mode are merged into one
+    // glMultiDrawArrays or glMultiDrawElements call (OpenGL 1.4), issued
+    // when anything else is called on the context or the frame ends.
+    // Calls made on GL directly rather than through the context, such as
+    // glEnable, glBlendFunc, glDepthMask, glViewport or glScissor, which
+    // the context has no wrappers for, don't flush the draws held back,
+    // which would then be drawn with the state those calls set.  With
+    // batching on, flushDraws() must be called before any direct GL call.
+    // The merge ratio is reported per frame.  Errors are polled for after every call at the FULL
+    // validation level, which issues each draw on its own, so batching
+    // is for the PER_FRAME and OFF levels or with debug output.
+    public void setDrawBatching(boolean enabled) {
+        if (enabled && batching == null) {
+            batching = new BatchingBackend(gl, frameStats);
+            gl = batching;
+        } else if (!enabled && batching != null) {
+            batching.flush();
+            gl = batching.getBackend();
+            batching = null;
         }
-        textureTargets = new HashMap<TextureTarget, Texture>();
-        for (TextureTarget target : TextureTarget.values()) {
-            textureTargets.put(target, null);
+    }
+
+    public boolean isDrawBatching() {
+        return batching != null;
+    }
+
+    // Issue any draws held back by draw batching.  This must be called
+    // before any GL call that doesn't go through the context, whether it
+    // changes state, such as glEnable or glViewport, or must see the
+    // draws of the frame, such as swapping buffers.
+    public void flushDraws() {
+        if (batching != null) {
+            batching.flush();
         }
-        framebufferTargets = new HashMap<FramebufferTarget, Framebuffer>();
-        for (FramebufferTarget t : FramebufferTarget.values()) {
-            framebufferTargets.put(t, null);
+    }
+
+    // Select how much checking is done of the calls made through this
+    // context.  The default is FULL.
+    public void setValidationLevel(ValidationLevel level) {
+        validation = level;
+        callLog.clear();
+    }
+
+    public ValidationLevel getValidationLevel() {
+        return validation;
+    }
+
+    // Have driver errors reported through a KHR_debug message callback
+    // rather than by polling glGetError.  At the FULL validation level the
+    // context then no longer polls after each call.  Returns false if the
+    // driver does not provide debug output, in which case polling
+    // continues.
+    public boolean enableDebugOutput() {
+        debugOutput = gl.glDebugMessageCallback(new GLBackend.DebugListener() {
+            public void error(int id, String message) {
+                if (debugError == null) {
+                    debugError = message;
+                }
+            }
+        });
+        return debugOutput;
+    }
+
+    // Generate object names in blocks of the given size, one driver call
+    // per block, and hand them out from a pool.  Buffer names given back
+    // by a delete are recycled without involving the driver, unless the
+    // buffer has immutable storage, is mapped, is read by a vertex
+    // array or is bound at an indexed binding point, in which case it is
+    // deleted straight away; other kinds
+    // of object carry state that would outlive the name, so their names
+    // are deleted a block at a time.  A block size of 0, the default,
+    // turns pooling off.  Any names held by existing pools are deleted.
+    public void setNamePoolBlockSize(int blockSize) {
+        check(blockSize >= 0);
+        trimNamePools();
+        if (blockSize == 0) {
+            bufferNames = null;
+            textureNames = null;
+            vertexArrayNames = null;
+            framebufferNames = null;
+            return;
         }
-        framebuffers = new HashMap<Integer, Framebuffer>();
-        buffers = new HashMap<Integer, Buffer>();
-        textures = new HashMap<Integer, Texture>();
-        vertexArrays = new HashMap<Integer, VertexArray>();
-        programs = new HashMap<Integer, Program>();
-        shaders = new HashMap<Integer, Shader>();
-        bitplane = new Bitplane();
-        defaultFramebuffer = new DefaultFramebuffer();
+        bufferNames = new NamePool(new NamePool.Allocator() {
+            public void gen(IntBuffer names) {
+                gl.glGenBuffers(names);
+                checkGLError("glGenBuffers");
+            }
+            public void delete(IntBuffer names) {
+                gl.glDeleteBuffers(names);
+                checkGLError("glDeleteBuffers");
+            }
+        }, blockSize, true);
+        textureNames = new NamePool(new NamePool.Allocator() {
+            public void gen(IntBuffer names) {
+                gl.glGenTextures(names);
+                checkGLError("glGenTextures");
+            }
+            public void delete(IntBuffer names) {
+                gl.glDeleteTextures(names);
+                checkGLError("glDeleteTextures");
+            }
+        }, blockSize, false);
+        vertexArrayNames = new NamePool(new NamePool.Allocator() {
+            public void gen(IntBuffer names) {
+                gl.glGenVertexArrays(names);
+                checkGLError("glGenVertexArrays");
+            }
+            public void delete(IntBuffer names) {
+                gl.glDeleteVertexArrays(names);
+                checkGLError("glDeleteVertexArrays");
+            }
+        }, blockSize, false);
+        framebufferNames = new NamePool(new NamePool.Allocator() {
+            public void gen(IntBuffer names) {
+                gl.glGenFramebuffers(names);
+                checkGLError("glGenFramebuffers");
+            }
+            public void delete(IntBuffer names) {
+                gl.glDeleteFramebuffers(names);
+                checkGLError("glDeleteFramebuffers");
+            }
+        }, blockSize, false);
+    }
+
+    // Delete the names held by the name pools, both unused names and
+    // names waiting to be deleted.  Call this when the number of objects
+    // in use has dropped and is expected to stay down.
+    public void trimNamePools() {
+        if (bufferNames == null) return;
+        bufferNames.trim();
+        textureNames.trim();
+        vertexArrayNames.trim();
+        framebufferNames.trim();
     }
 
     // reserve a new buffer object
     public Buffer glGenBuffers() {
-        int id = GL15.glGenBuffers();
-        checkGLError();
-        assert !buffers.containsKey(id);
+        if (bufferNames != null) {
+            return addBuffer(bufferNames.acquire());
+        }
+        int id = gl.glGenBuffers();
+        checkGLError("glGenBuffers");
+        return addBuffer(id);
+    }
+
+    // reserve n new buffer objects with a single driver call
+    public Buffer[] glGenBuffers(int n) {
+        Buffer[] result = new Buffer[n];
+        if (bufferNames != null) {
+            for (int i = 0; i < n; i++) {
+                result[i] = addBuffer(bufferNames.acquire());
+            }
+            return result;
+        }
+        IntBuffer ids = nameBuffer(n);
+        gl.glGenBuffers(ids);
+        checkGLError("glGenBuffers");
+        for (int i = 0; i < n; i++) {
+            result[i] = addBuffer(ids.get(i));
+        }
+        return result;
+    }
+
+    private Buffer addBuffer(int id) {
+        check(!buffers.containsKey(id));
         Buffer buffer = new Buffer(id);
-        buffers.put(id, buffer);
+        buffers.put(buffer);
         return buffer;
     }
 
     // Create a program object to which shader objects can be attached
     // and linked
     public Program glCreateProgram() {
-        int programId = GL20.glCreateProgram();
-        checkGLError();
+        int programId = gl.glCreateProgram();
+        checkGLError("glCreateProgram");
         Program p = new Program(programId);
-        this.programs.put(p.getId(), p);
+        this.programs.put(p);
         return p;
     }
 
     // Create an empty shader object, ready to accept source code and be
     // compiled
     public Shader glCreateShader(ShaderType t) {
-        int shaderId = GL20.glCreateShader(shaderTypeToGL(t));
-        checkGLError();
+        int shaderId = gl.glCreateShader(GL_SHADER_TYPES[t.ordinal()]);
+        checkGLError("glCreateShader");
         Shader s = new Shader(t, shaderId);
-        shaders.put(s.getId(), s);
+        shaders.put(s);
         return s;
     }
 
     public Framebuffer glGenFramebuffer() {
-        int framebufferId = GL30.glGenFramebuffers();
-        return new Framebuffer(framebufferId);
+        if (framebufferNames != null) {
+            return addFramebuffer(framebufferNames.acquire());
+        }
+        int framebufferId = gl.glGenFramebuffers();
+        checkGLError("glGenFramebuffer");
+        return addFramebuffer(framebufferId);
+    }
+
+    // reserve n new framebuffer objects with a single driver call
+    public Framebuffer[] glGenFramebuffers(int n) {
+        Framebuffer[] result = new Framebuffer[n];
+        if (framebufferNames != null) {
+            for (int i = 0; i < n; i++) {
+                result[i] = addFramebuffer(framebufferNames.acquire());
+            }
+            return result;
+        }
+        IntBuffer ids = nameBuffer(n);
+        gl.glGenFramebuffers(ids);
+        checkGLError("glGenFramebuffers");
+        for (int i = 0; i < n; i++) {
+            result[i] = addFramebuffer(ids.get(i));
+        }
+        return result;
+    }
+
+    private Framebuffer addFramebuffer(int id) {
+        check(!framebuffers.containsKey(id));
+        Framebuffer fb = new Framebuffer(id);
+        framebuffers.put(fb);
+        return fb;
+    }
+
+    public void glDeleteFramebuffers(Framebuffer fb) {
+        check(framebuffers.containsKey(fb.getId()));
+        check(!fb.isBound());
+        if (framebufferNames != null) {
+            framebufferNames.release(fb.getId());
+        } else {
+            gl.glDeleteFramebuffers(fb.getId());
+            checkGLError("glDeleteFramebuffers");
+        }
+        framebuffers.remove(fb.getId());
+        fb.delete();
+    }
+
+    // delete the framebuffer objects with a single driver call
+    public void glDeleteFramebuffers(Framebuffer[] fbs) {
+        IntBuffer ids = nameBuffer(fbs.length);
+        for (int i = 0; i < fbs.length; i++) {
+            Framebuffer fb = fbs[i];
+            check(framebuffers.containsKey(fb.getId()));
+            check(!fb.isBound());
+            if (framebufferNames != null) {
+                framebufferNames.release(fb.getId());
+            }
+            ids.put(i, fb.getId());
+            framebuffers.remove(fb.getId());
+            fb.delete();
+        }
+        if (framebufferNames == null) {
+            gl.glDeleteFramebuffers(ids);
+            checkGLError("glDeleteFramebuffers");
+        }
     }
 
     // Install the given program object as part of the current rendering state.
     // The program object in use can be modified after it is used, but these
     // changes will only be made active if the program is re-linked again.
     public void glUseProgram(Program p) {
+        if (stateFiltering && p == this.program) {
+            frameStats.elidedCalls++;
+            return;
+        }
         if (p == null) {
-            GL20.glUseProgram(0);
-            checkGLError();
+            gl.glUseProgram(0);
+            checkGLError("glUseProgram");
             this.program = null;
             return;
         }
-        assert p.isLinked();
+        awaitLink(p);
+        check(p.isLinked());
         this.program = p;
-        GL20.glUseProgram(p.getId());
-        checkGLError();
+        gl.glUseProgram(p.getId());
+        checkGLError("glUseProgram");
     }
 
     // sets the source code of the shader.  Any source code stored in the
     // shader object is completely replaced.
     public void glShaderSource(Shader shader, String str) {
-        assert shader.getSource() == null;
-        assert !shader.isCompiled();
-        GL20.glShaderSource(shader.getId(), str);
-        checkGLError();
+        check(shader.getSource() == null);
+        check(!shader.isCompiled());
+        gl.glShaderSource(shader.getId(), str);
+        checkGLError("glShaderSource");
         shader.setSource(str);
     }
 
     // compile whatever source code is contained in the shader object.
     public void glCompileShader(Shader s) {
-        assert !s.isCompiled();
-        assert s.getSource() != null;
-        GL20.glCompileShader(s.getId());
-        s.setCompiled(glGetShaderi(s.getId(), GL_COMPILE_STATUS) == 1);
+        submitCompile(s);
+        checkCompile(s);
+    }
+
+    // Start compiling the shader, without waiting to find out whether it
+    // compiled.  The future completes, or fails with the compile log, once
+    // the result has been checked, which happens in pollCompilation(),
+    // finishCompilation(), or when a program it is attached to is first
+    // used.  Programs can be linked before their shaders have finished
+    // compiling.  Starting many compiles before checking any lets the
+    // driver compile them in parallel.
+    public CompletableFuture<Shader> compileAsync(Shader s) {
+        submitCompile(s);
+        startParallelCompile();
+        s.compiling = new CompletableFuture<Shader>();
+        pendingShaders.add(s);
+        return s.compiling;
+    }
+
+    // Start linking the program, without waiting to find out whether it
+    // linked.  As for compileAsync, the result is checked later; until
+    // then the program can't be used or have its variables looked up.
+    public CompletableFuture<Program> linkAsync(Program p) {
+        submitLink(p);
+        startParallelCompile();
+        p.linking = new CompletableFuture<Program>();
+        pendingPrograms.add(p);
+        return p.linking;
+    }
+
+    // Check the compiles and links that have finished, completing their
+    // futures, and return the number still running.  Where the driver
+    // can't tell whether a compile has finished, this waits for all of
+    // them.  Call it once a frame, say, while loading.
+    public int pollCompilation() {
+        boolean parallel = startParallelCompile();
+        int completion = ARBParallelShaderCompile.GL_COMPLETION_STATUS_ARB;
+        for (int i = pendingShaders.size() - 1; i >= 0; i--) {
+            Shader s = pendingShaders.get(i);
+            if (!parallel || gl.glGetShaderi(s.getId(), completion) == 1) {
+                completeCompile(s);
+            }
+        }
+        for (int i = pendingPrograms.size() - 1; i >= 0; i--) {
+            Program p = pendingPrograms.get(i);
+            if (!parallel || gl.glGetProgrami(p.getId(), completion) == 1) {
+                completeLink(p);
+            }
+        }
+        return pendingShaders.size() + pendingPrograms.size();
+    }
+
+    // wait for every compile and link in progress, completing their
+    // futures
+    public void finishCompilation() {
+        while (!pendingShaders.isEmpty()) {
+            completeCompile(pendingShaders.get(pendingShaders.size() - 1));
+        }
+        while (!pendingPrograms.isEmpty()) {
+            completeLink(pendingPrograms.get(pendingPrograms.size() - 1));
+        }
+    }
+
+    // Ask the driver to compile on as many threads as it likes, the first
+    // time it is needed.  Returns whether the driver compiles in parallel,
+    // and so can report whether a compile has finished.
+    private boolean startParallelCompile() {
+        if (parallelCompile == null) {
+            parallelCompile = gl.glMaxShaderCompilerThreads(0xFFFFFFFF);
+            checkGLError("glMaxShaderCompilerThreads");
+        }
+        return parallelCompile;
+    }
+
+    private void submitCompile(Shader s) {
+        check(!s.isCompiled() && s.compiling == null);
+        check(s.getSource() != null);
+        gl.glCompileShader(s.getId());
+        checkGLError("glCompileShader");
+    }
+
+    // check the result of an asynchronous compile, returning the failure
+    // the future was completed with, if any
+    private RuntimeException completeCompile(Shader s) {
+        pendingShaders.remove(s);
+        CompletableFuture<Shader> f = s.compiling;
+        s.compiling = null;
+        try {
+            checkCompile(s);
+        } catch (RuntimeException e) {
+            f.completeExceptionally(e);
+            return e;
+        }
+        f.complete(s);
+        return null;
+    }
+
+    private void checkCompile(Shader s) {
+        s.setCompiled(gl.glGetShaderi(s.getId(), GL20.GL_COMPILE_STATUS) == 1);
         if (!s.isCompiled()) {
-            String strInfoLog = glGetShaderInfoLog(s.getId());
+            String strInfoLog = gl.glGetShaderInfoLog(s.getId());
             String strShaderType = "";
             switch (s.type) {
                 case GL_VERTEX_SHADER:
@@ -133,16 +490,15 @@ public class GLContext {
         // a vertex array object must be bound, it specifies
         // where the vertex data comes from when this function is
         // called.
-        assert vertexArrayTarget != null;
-        assert vertexArrayTarget.hasPointers();
-        GL11.glDrawArrays(drawModeToGL(s), first, count);
-        checkGLError();
+        check(vertexArrayTarget != null && vertexArrayTarget.hasPointers());
+        gl.glDrawArrays(GL_DRAW_MODES[s.ordinal()], first, count);
+        checkGLError("glDrawArrays");
     }
 
     public void glClearColor(float r, float g, float b, float a) {
         bitplane.setColor(r, g, b, a);
-        GL11.glClearColor(r, g, b, a);
-        checkGLError();
+        gl.glClearColor(r, g, b, a);
+        checkGLError("glClearColor");
     }
 
     // Clear the specified buffer of the currently bound 'draw framebuffer'.
@@ -152,8 +508,9 @@ public class GLContext {
     // color -
     public void glClearBufferfv(FramebufferBuffer buffer, int drawbuffer,
                                 float[] color) {
-        GL30.glClearBufferfv(fbbToGL(buffer), drawbuffer, FloatBuffer.wrap
-                (color));
+        gl.glClearBufferfv(GL_FRAMEBUFFER_BUFFERS[buffer.ordinal()],
+                drawbuffer, FloatBuffer.wrap(color));
+        checkGLError("glClearBufferfv");
     }
 
     // Delete a ahader object.  Once a shader has been linked to a program
@@ -161,8 +518,10 @@ public class GLContext {
     // longer needed, so it is safe to delete the shaders immediately after
     // the program has been linked.
     public void glDeleteShader(Shader s) {
-        assert s.isLinked(); // don't delete a shader if it hasn't been linked
-        GL20.glDeleteShader(s.getId());
+        check(s.isLinked()); // don't delete a shader if it hasn't been linked
+        gl.glDeleteShader(s.getId());
+        checkGLError("glDeleteShader");
+        shaders.remove(s.getId());
         s.delete();
     }
 
@@ -170,9 +529,11 @@ public class GLContext {
     // This is usually during cleanup after the application has completed
     // runing.
     public void glDeleteProgram(Program p) {
-        assert !p.isDeleted();
-        assert p.isLinked();
-        GL20.glDeleteProgram(p.getId());
+        check(!p.isDeleted());
+        check(p.isLinked());
+        gl.glDeleteProgram(p.getId());
+        checkGLError("glDeleteProgram");
+        programs.remove(p.getId());
         p.delete();
     }
 
@@ -181,22 +542,178 @@ public class GLContext {
     // should have been compiled already, and there should be at least one
     // shader (otherwise a program shouldn't be used).
     public void glLinkProgram(Program p) {
-        assert !p.isLinked();
-        assert p.shadersReady();
-        GL20.glLinkProgram(p.getId());
-        p.setLinked(GL20.glGetProgrami(p.getId(), GL20
+        submitLink(p);
+        checkLink(p);
+    }
+
+    private void submitLink(Program p) {
+        check(!p.isLinked() && p.linking == null);
+        for (Shader s : p.getShaders()) {
+            check(s.isCompiled() || s.compiling != null);
+        }
+        gl.glLinkProgram(p.getId());
+        checkGLError("glLinkProgram");
+    }
+
+    // as completeCompile, for links
+    private RuntimeException completeLink(Program p) {
+        pendingPrograms.remove(p);
+        CompletableFuture<Program> f = p.linking;
+        p.linking = null;
+        try {
+            checkLink(p);
+        } catch (RuntimeException e) {
+            f.completeExceptionally(e);
+            return e;
+        }
+        f.complete(p);
+        return null;
+    }
+
+    // Before a program whose link is pending is first used, wait for it,
+    // throwing if it failed.
+    private void awaitLink(Program p) {
+        if (p.linking == null) return;
+        RuntimeException e = completeLink(p);
+        if (e != null) throw e;
+    }
+
+    // check the result of linking, and of compiling the shaders, if that
+    // hasn't been checked yet
+    private void checkLink(Program p) {
+        for (Shader s : p.getShaders()) {
+            if (s.compiling != null) {
+                RuntimeException e = completeCompile(s);
+                if (e != null) throw e;
+            }
+            if (!s.isCompiled()) {
+                throw new RuntimeException("Linker failure: shader " +
+                        s.getId() + " failed to compile\n");
+            }
+        }
+        check(p.shadersReady());
+        p.setLinked(gl.glGetProgrami(p.getId(), GL20
                 .GL_LINK_STATUS) == 1);
-        if (p.isLinked()) {
-            String strInfoLog = GL20.glGetProgramInfoLog(p.getId());
+        if (!p.isLinked()) {
+            String strInfoLog = gl.glGetProgramInfoLog(p.getId());
             throw new RuntimeException("Linker failure: " + strInfoLog +
                     "\n");
         }
         p.link();
-        //int linkStatus = c.glGetProgrami(program, GL_LINK_STATUS);
-        //assert(linkStatus==1);
-        //int numActiveAttrs = glGetProgrami(program, GL_ACTIVE_ATTRIBUTES);
-        //assert(numActiveAttrs==1);
+        findActiveVariables(p);
+        findUniformBlocks(p);
+    }
+
+    // Record the program's active uniform blocks, with their sizes and
+    // the binding points they read from, which are 0 unless the shader
+    // gives one with layout(binding = N).  Blocks are numbered in the
+    // order the driver lists them, which is the block index.
+    private void findUniformBlocks(Program p) {
+        int id = p.getId();
+        int n = gl.glGetProgrami(id, GL31.GL_ACTIVE_UNIFORM_BLOCKS);
+        for (int i = 0; i < n; i++) {
+            String name = gl.glGetActiveUniformBlockName(id, i);
+            checkGLError("glGetActiveUniformBlockName");
+            int size = gl.glGetActiveUniformBlocki(id, i,
+                    GL31.GL_UNIFORM_BLOCK_DATA_SIZE);
+            int binding = gl.glGetActiveUniformBlocki(id, i,
+                    GL31.GL_UNIFORM_BLOCK_BINDING);
+            checkGLError("glGetActiveUniformBlocki");
+            p.addUniformBlock(name, size, binding);
+        }
+    }
 
+    // Set a parameter of a program before it is linked: either
+    // GL_PROGRAM_BINARY_RETRIEVABLE_HINT, to be able to get its binary
+    // with glGetProgramBinary, or GL_PROGRAM_SEPARABLE.
+    public void glProgramParameteri(Program p, int pname, int value) {
+        check(!p.isLinked());
+        check(pname == GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT ||
+                pname == GL41.GL_PROGRAM_SEPARABLE);
+        gl.glProgramParameteri(p.getId(), pname, value);
+        checkGLError("glProgramParameteri");
+    }
+
+    // Get the binary of a linked program, which can be given to
+    // glProgramBinary instead of compiling and linking its shaders again,
+    // as long as the driver is the same.  The format of the binary is
+    // stored in format[0].  Needs OpenGL 4.1 or ARB_get_program_binary.
+    public ByteBuffer glGetProgramBinary(Program p, int[] format) {
+        check(p.isLinked());
+        int length = gl.glGetProgrami(p.getId(),
+                GL41.GL_PROGRAM_BINARY_LENGTH);
+        checkGLError("glGetProgrami");
+        ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        IntBuffer written = BufferUtils.createIntBuffer(1);
+        IntBuffer binaryFormat = BufferUtils.createIntBuffer(1);
+        gl.glGetProgramBinary(p.getId(), written, binaryFormat, binary);
+        checkGLError("glGetProgramBinary");
+        binary.limit(written.get(0));
+        format[0] = binaryFormat.get(0);
+        return binary;
+    }
+
+    // Load a binary from glGetProgramBinary into a program that has not
+    // been linked, in place of linking it.  Returns whether the driver
+    // accepted the binary, which it may not if the driver has changed
+    // since the binary was made.  If it didn't the program is left
+    // unlinked, and can have shaders attached and be linked as usual.
+    public boolean glProgramBinary(Program p, int format, ByteBuffer binary) {
+        check(!p.isLinked());
+        gl.glProgramBinary(p.getId(), format, binary);
+        checkGLError("glProgramBinary");
+        if (gl.glGetProgrami(p.getId(), GL20.GL_LINK_STATUS) != 1) {
+            return false;
+        }
+        p.setLinked(true);
+        p.link();
+        findActiveVariables(p);
+        findUniformBlocks(p);
+        return true;
+    }
+
+    // The vendor, renderer and version strings of the driver, which
+    // together identify the driver that made a program binary.
+    public String getDriverDescription() {
+        if (driverDescription == null) {
+            driverDescription = gl.glGetString(GL11.GL_VENDOR) + "; " +
+                    gl.glGetString(GL11.GL_RENDERER) + "; " +
+                    gl.glGetString(GL11.GL_VERSION);
+            checkGLError("glGetString");
+        }
+        return driverDescription;
+    }
+
+    // Record the program's active uniforms and attributes, with their
+    // locations, so that they never have to be looked up by name through
+    // the driver again.  Uniforms in uniform blocks have no location and
+    // are left out, as are built-in attributes.
+    private void findActiveVariables(Program p) {
+        p.forgetUniformValues();
+        int id = p.getId();
+        IntBuffer size = BufferUtils.createIntBuffer(1);
+        IntBuffer type = BufferUtils.createIntBuffer(1);
+        int n = gl.glGetProgrami(id, GL20.GL_ACTIVE_UNIFORMS);
+        for (int i = 0; i < n; i++) {
+            String name = gl.glGetActiveUniform(id, i, size, type);
+            checkGLError("glGetActiveUniform");
+            int location = gl.glGetUniformLocation(id, name);
+            checkGLError("glGetUniformLocation");
+            if (location < 0) continue;
+            boolean array = name.endsWith("[0]");
+            if (array) name = name.substring(0, name.length() - 3);
+            p.addUniform(new UniformHandle(p, name, location,
+                    uniformTypeFromGL(type.get(0)), size.get(0)), array);
+        }
+        n = gl.glGetProgrami(id, GL20.GL_ACTIVE_ATTRIBUTES);
+        for (int i = 0; i < n; i++) {
+            String name = gl.glGetActiveAttrib(id, i, size, type);
+            checkGLError("glGetActiveAttrib");
+            int location = gl.glGetAttribLocation(id, name);
+            checkGLError("glGetAttribLocation");
+            if (location < 0) continue;
+            p.addAttribute(name, location);
+        }
     }
 
     public float getPointSize() {
@@ -204,72 +721,154 @@ public class GLContext {
     }
 
     public void glPointSize(float p) {
-        assert p >= 0; // TODO: can point size be zero?
+        check(p >= 0); // TODO: can point size be zero?
         pointSize = p;
-        GL11.glPointSize(p);
-        checkGLError();
+        gl.glPointSize(p);
+        checkGLError("glPointSize");
     }
 
     // Attach a shader object to the program object
     public void glAttachShader(Program p, Shader s) {
-        assert !p.isLinked();
-        assert s.isCompiled();
+        check(!p.isLinked());
+        check(s.isCompiled() || s.compiling != null);
         p.attach(s);
-        int shadersAttachedBefore = glGetProgrami(program.getId(),
-                GL_ATTACHED_SHADERS);
-        GL20.glAttachShader(p.getId(), s.getId());
-        int shadersAttachedAfter = glGetProgrami(program.getId(),
-                GL_ATTACHED_SHADERS);
-        assert shadersAttachedAfter == shadersAttachedBefore + 1;
+        if (validation != ValidationLevel.FULL) {
+            gl.glAttachShader(p.getId(), s.getId());
+            checkGLError("glAttachShader");
+            return;
+        }
+        int shadersAttachedBefore = gl.glGetProgrami(p.getId(),
+                GL20.GL_ATTACHED_SHADERS);
+        gl.glAttachShader(p.getId(), s.getId());
+        checkGLError("glAttachShader");
+        int shadersAttachedAfter = gl.glGetProgrami(p.getId(),
+                GL20.GL_ATTACHED_SHADERS);
+        check(shadersAttachedAfter == shadersAttachedBefore + 1);
     }
 
     public void glClearDepth(double depth) {
         bitplane.setDepth(depth);
-        GL11.glClearDepth(depth);
-        checkGLError();
+        gl.glClearDepth(depth);
+        checkGLError("glClearDepth");
     }
 
     public void glClearStencil(int stencil) {
-        GL11.glClearStencil(stencil);
-        checkGLError();
+        gl.glClearStencil(stencil);
+        checkGLError("glClearStencil");
         bitplane.setStencil(stencil);
     }
 
     // not sure what this does exactly.
     public void glClear(BufferBit[] bufferBits) {
-        int total = 0;
+        int bits = 0;
         for (BufferBit b : bufferBits) {
-            total = total | bufferBitToGL(b);
+            bits = bits | (1 << b.ordinal());
         }
-        GL11.glClear(total);
-        checkGLError();
+        clear(bits);
+    }
+
+    // clear the buffers given as a set of BufferBit ordinals, one bit each
+    void clear(int bufferBits) {
+        int total = 0;
+        for (int i = 0; i < GL_BUFFER_BITS.length; i++) {
+            if ((bufferBits & (1 << i)) != 0) {
+                total = total | GL_BUFFER_BITS[i];
+            }
+        }
+        gl.glClear(total);
+        checkGLError("glClear");
     }
 
     public void glClear(BufferBit b) {
-        GL11.glClear(bufferBitToGL(b));
-        checkGLError();
+        gl.glClear(GL_BUFFER_BITS[b.ordinal()]);
+        checkGLError("glClear");
     }
 
     public void glDeleteBuffers(Buffer buffer) {
-        assert buffers.containsKey(buffer.getId());
-        assert buffer.getBindings().size() == 0;
-        GL15.glDeleteBuffers(buffer.getId());
-        checkGLError();
+        check(buffers.containsKey(buffer.getId()));
+        check(!buffer.isBound());
+        if (bufferNames != null && isRecyclable(buffer)) {
+            bufferNames.release(buffer.getId());
+        } else {
+            gl.glDeleteBuffers(buffer.getId());
+            checkGLError("glDeleteBuffers");
+        }
         buffers.remove(buffer.getId());
+        releaseIndexedBindings(buffer);
         buffer.delete();
     }
 
+    // delete the buffer objects with a single driver call
+    public void glDeleteBuffers(Buffer[] bs) {
+        IntBuffer ids = nameBuffer(bs.length);
+        for (int i = 0; i < bs.length; i++) {
+            Buffer b = bs[i];
+            check(buffers.containsKey(b.getId()));
+            check(!b.isBound());
+            if (bufferNames != null && isRecyclable(b)) {
+                bufferNames.release(b.getId());
+            } else {
+                ids.put(b.getId());
+            }
+            buffers.remove(b.getId());
+            releaseIndexedBindings(b);
+            b.delete();
+        }
+        ids.flip();
+        if (ids.hasRemaining()) {
+            gl.glDeleteBuffers(ids);
+            checkGLError("glDeleteBuffers");
+        }
+    }
+
+    // Whether a deleted buffer's name can be handed out again without
+    // deleting the object.  Immutable storage can't be replaced, a
+    // mapping would outlive the delete, and a vertex array reading the
+    // buffer would read whatever the next user puts in it, as would a
+    // shader reading an indexed binding point, which only a driver delete
+    // clears.  Such buffers are deleted in the driver and their names not
+    // reused.
+    private boolean isRecyclable(Buffer b) {
+        return !(b.hasData() && b.isImmutable()) && !b.isMapped() &&
+                !b.isAttached() && !isIndexBound(b);
+    }
+
     // a vertex array object contains mappings from
     // the buffer bound to GL_VERTEX_ARRAY to the attributes
     // of the vertex buffer. After generating a vertex array,
     // it needs to be bound to the vertex array target
     // and populated.
     public VertexArray glGenVertexArrays() {
-        int id = GL30.glGenVertexArrays();
-        checkGLError();
-        assert vertexArrays.get(id) == null;
+        if (vertexArrayNames != null) {
+            return addVertexArray(vertexArrayNames.acquire());
+        }
+        int id = gl.glGenVertexArrays();
+        checkGLError("glGenVertexArrays");
+        return addVertexArray(id);
+    }
+
+    // reserve n new vertex array objects with a single driver call
+    public VertexArray[] glGenVertexArrays(int n) {
+        VertexArray[] result = new VertexArray[n];
+        if (vertexArrayNames != null) {
+            for (int i = 0; i < n; i++) {
+                result[i] = addVertexArray(vertexArrayNames.acquire());
+            }
+            return result;
+        }
+        IntBuffer ids = nameBuffer(n);
+        gl.glGenVertexArrays(ids);
+        checkGLError("glGenVertexArrays");
+        for (int i = 0; i < n; i++) {
+            result[i] = addVertexArray(ids.get(i));
+        }
+        return result;
+    }
+
+    private VertexArray addVertexArray(int id) {
+        check(vertexArrays.get(id) == null);
         VertexArray vertexArray = new VertexArray(id);
-        vertexArrays.put(id, vertexArray);
+        vertexArrays.put(vertexArray);
         return vertexArray;
     }
 
@@ -278,35 +877,167 @@ public class GLContext {
         // In that case, the vertex array target is set unbound (to 0).
         // However, to avoid accidents this API requires that the
         // vertex array being deleted already be unbound.
-        assert !a.isBound();
-        GL30.glDeleteVertexArrays(a.getId());
+        check(vertexArrayTarget != a);
+        if (vertexArrayNames != null) {
+            vertexArrayNames.release(a.getId());
+        } else {
+            gl.glDeleteVertexArrays(a.getId());
+            checkGLError("glDeleteVertexArrays");
+        }
+        vertexArrays.remove(a.getId());
+        a.delete();
+    }
+
+    // delete the vertex array objects with a single driver call
+    public void glDeleteVertexArrays(VertexArray[] as) {
+        IntBuffer ids = nameBuffer(as.length);
+        for (int i = 0; i < as.length; i++) {
+            VertexArray a = as[i];
+            check(vertexArrayTarget != a);
+            if (vertexArrayNames != null) {
+                vertexArrayNames.release(a.getId());
+            }
+            ids.put(i, a.getId());
+            vertexArrays.remove(a.getId());
+            a.delete();
+        }
+        if (vertexArrayNames == null) {
+            gl.glDeleteVertexArrays(ids);
+            checkGLError("glDeleteVertexArrays");
+        }
     }
 
     //  reserve a new Texture object
     public Texture glGenTextures() {
-        int id = GL11.glGenTextures();
-        checkGLError();
-        assert textures.get(id) == null;
+        if (textureNames != null) {
+            return addTexture(textureNames.acquire());
+        }
+        int id = gl.glGenTextures();
+        checkGLError("glGenTextures");
+        return addTexture(id);
+    }
+
+    // reserve n new texture objects with a single driver call
+    public Texture[] glGenTextures(int n) {
+        Texture[] result = new Texture[n];
+        if (textureNames != null) {
+            for (int i = 0; i < n; i++) {
+                result[i] = addTexture(textureNames.acquire());
+            }
+            return result;
+        }
+        IntBuffer ids = nameBuffer(n);
+        gl.glGenTextures(ids);
+        checkGLError("glGenTextures");
+        for (int i = 0; i < n; i++) {
+            result[i] = addTexture(ids.get(i));
+        }
+        return result;
+    }
+
+    private Texture addTexture(int id) {
+        check(textures.get(id) == null);
         Texture texture = new Texture(id);
-        textures.put(id, texture);
+        textures.put(texture);
         return texture;
     }
 
     // delete the texture object.
     public void glDeleteTextures(Texture texture) {
-        assert textures.containsKey(texture.getId());
-        assert !texture.isBound();
-        assert !texture.isDeleted();
-        GL11.glDeleteTextures(texture.getId());
+        check(textures.containsKey(texture.getId()));
+        check(!texture.isBound());
+        check(!texture.isDeleted());
+        if (textureNames != null) {
+            textureNames.release(texture.getId());
+        } else {
+            gl.glDeleteTextures(texture.getId());
+            checkGLError("glDeleteTextures");
+        }
+        textures.remove(texture.getId());
         texture.delete();
     }
 
+    // delete the texture objects with a single driver call
+    public void glDeleteTextures(Texture[] ts) {
+        IntBuffer ids = nameBuffer(ts.length);
+        for (int i = 0; i < ts.length; i++) {
+            Texture t = ts[i];
+            check(textures.containsKey(t.getId()));
+            check(!t.isBound());
+            if (textureNames != null) {
+                textureNames.release(t.getId());
+            }
+            ids.put(i, t.getId());
+            textures.remove(t.getId());
+            t.delete();
+        }
+        if (textureNames == null) {
+            gl.glDeleteTextures(ids);
+            checkGLError("glDeleteTextures");
+        }
+    }
+
+    // a direct buffer with room for n names, positioned at 0 with its
+    // limit at n, for passing names to and from the driver
+    private IntBuffer nameBuffer(int n) {
+        if (names == null || names.capacity() < n) {
+            names = BufferUtils.createIntBuffer(Math.max(n, 64));
+        }
+        names.clear();
+        names.limit(n);
+        return names;
+    }
+
     // get the program in use
     public Program getProgram() {
         return this.program;
     }
 
+    // look up existing objects by name, or null if there is no such object
+    Buffer getBuffer(int name) {
+        return buffers.get(name);
+    }
+
+    Texture getTexture(int name) {
+        return textures.get(name);
+    }
+
+    VertexArray getVertexArray(int name) {
+        return vertexArrays.get(name);
+    }
+
+    Program getProgram(int name) {
+        return programs.get(name);
+    }
+
+    // the buffer bound to the target, or null
+    Buffer getBuffer(BufferTarget target) {
+        return bufferTargets[target.ordinal()];
+    }
+
+    // the bound vertex array, or null
+    VertexArray getVertexArray() {
+        return vertexArrayTarget;
+    }
+
+    // Create a buffer with a data store of the given size and undefined
+    // contents.  The buffer is left unbound, and the copy write target,
+    // which is used to create the store, is left as it was found.
+    Buffer createBuffer(int size, BufferUsage usage) {
+        BufferTarget t = BufferTarget.GL_COPY_WRITE_BUFFER;
+        Buffer bound = bufferTargets[t.ordinal()];
+        Buffer b = glGenBuffers();
+        replaceBuffer(t, b);
+        glBufferData(t, size, usage);
+        replaceBuffer(t, bound);
+        return b;
+    }
+
     public void glBindBuffer(BufferTarget target, Buffer buffer) {
+        if (stateFiltering && bufferTargets[target.ordinal()] == buffer) {
+            frameStats.elidedCalls++;
+            return;
+        }
         // assert the buffer target is not already bound.
         if (buffer == null) {
             // binding to null is how unbinding is accomplished in the
@@ -314,22 +1045,161 @@ public class GLContext {
             unbindBuffer(target);
             return;
         }
-        assert bufferTargets.get(target) == null;
-        bufferTargets.put(target, buffer);
+        check(bufferTargets[target.ordinal()] == null);
+        bufferTargets[target.ordinal()] = buffer;
         buffer.bind(target);
-        GL15.glBindBuffer(bufferTargetToGL(target), buffer.getId());
+        gl.glBindBuffer(GL_BUFFER_TARGETS[target.ordinal()], buffer.getId());
+        checkGLError("glBindBuffer");
+    }
+
+    // Bind the buffer to the target, replacing whatever buffer is bound
+    // there, with a single driver call.  Unlike glBindBuffer the target
+    // need not be unbound first, which is how recorded commands are
+    // replayed without knowing the state they will be replayed in.
+    void replaceBuffer(BufferTarget target, Buffer buffer) {
+        Buffer bound = bufferTargets[target.ordinal()];
+        if (bound == buffer) {
+            if (stateFiltering) frameStats.elidedCalls++;
+            return;
+        }
+        if (bound != null && buffer != null) {
+            bound.unbind(target);
+            bufferTargets[target.ordinal()] = null;
+        }
+        glBindBuffer(target, buffer);
+    }
+
+    // as replaceBuffer, for textures
+    void replaceTexture(TextureTarget target, Texture texture) {
+        Texture bound = textureTargets[target.ordinal()];
+        if (bound == texture) {
+            if (stateFiltering) frameStats.elidedCalls++;
+            return;
+        }
+        if (bound != null && texture != null) {
+            bound.unbind();
+            textureTargets[target.ordinal()] = null;
+        }
+        glBindTexture(target, texture);
+    }
+
+    // as replaceBuffer, for the vertex array target
+    void replaceVertexArray(VertexArray o) {
+        if (vertexArrayTarget == o) {
+            if (stateFiltering) frameStats.elidedCalls++;
+            return;
+        }
+        if (vertexArrayTarget != null && o != null) {
+            vertexArrayTarget = null;
+        }
+        glBindVertexArray(o);
     }
 
     private void glBindFramebuffer(FramebufferTarget t, Framebuffer fb) {
-        assert !fb.isBound();
-        assert framebufferTargets.get(t) == null;
-        GL30.glBindFramebuffer(fbtToGL(t), fb.getId());
+        check(!fb.isBound());
+        check(framebufferTargets[t.ordinal()] == null);
+        gl.glBindFramebuffer(GL_FRAMEBUFFER_TARGETS[t.ordinal()], fb.getId());
+        checkGLError("glBindFramebuffer");
+    }
+
+    // Bind a whole buffer to an indexed binding point of the target, for
+    // use by the uniform blocks of programs.  Only GL_UNIFORM_BUFFER has
+    // binding points.  As in OpenGL, the buffer is also bound to the
+    // target itself, replacing what was bound there.
+    public void glBindBufferBase(BufferTarget target, int index,
+                                 Buffer buffer) {
+        bindUniformBuffer(target, index, buffer, 0, 0);
+    }
+
+    // Bind size bytes of a buffer, starting at offset, to an indexed
+    // binding point.  The offset must be a multiple of
+    // getUniformBufferOffsetAlignment(); binding different ranges of one
+    // buffer is how many blocks' worth of uniforms can be uploaded at once.
+    public void glBindBufferRange(BufferTarget target, int index,
+                                  Buffer buffer, int offset, int size) {
+        check(size > 0);
+        check(offset >= 0 &&
+                offset % getUniformBufferOffsetAlignment() == 0);
+        bindUniformBuffer(target, index, buffer, offset, size);
+    }
+
+    // the buffer bound to an indexed uniform buffer binding point, or null
+    public Buffer getUniformBinding(int index) {
+        return uniformBindings == null ? null : uniformBindings[index];
+    }
+
+    // the alignment required of the offset passed to glBindBufferRange
+    public int getUniformBufferOffsetAlignment() {
+        if (uniformBufferOffsetAlignment == 0) {
+            uniformBufferOffsetAlignment = gl.glGetInteger(
+                    GL31.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT);
+            checkGLError("glGetInteger");
+        }
+        return uniformBufferOffsetAlignment;
+    }
+
+    private void bindUniformBuffer(BufferTarget target, int index,
+                                   Buffer buffer, int offset, int size) {
+        check(target == BufferTarget.GL_UNIFORM_BUFFER);
+        check(buffer != null && buffers.containsKey(buffer.getId()));
+        if (uniformBindings == null) {
+            int n = gl.glGetInteger(GL31.GL_MAX_UNIFORM_BUFFER_BINDINGS);
+            checkGLError("glGetInteger");
+            uniformBindings = new Buffer[n];
+            uniformOffsets = new int[n];
+            uniformSizes = new int[n];
+        }
+        check(index >= 0 && index < uniformBindings.length);
+        if (stateFiltering && uniformBindings[index] == buffer &&
+                uniformOffsets[index] == offset &&
+                uniformSizes[index] == size) {
+            frameStats.elidedCalls++;
+            return;
+        }
+        int t = GL_BUFFER_TARGETS[target.ordinal()];
+        if (size == 0) {
+            gl.glBindBufferBase(t, index, buffer.getId());
+            checkGLError("glBindBufferBase");
+        } else {
+            gl.glBindBufferRange(t, index, buffer.getId(), offset, size);
+            checkGLError("glBindBufferRange");
+        }
+        uniformBindings[index] = buffer;
+        uniformOffsets[index] = offset;
+        uniformSizes[index] = size;
+        // the driver has bound the buffer to the target as well
+        Buffer bound = bufferTargets[target.ordinal()];
+        if (bound != buffer) {
+            if (bound != null) bound.unbind(target);
+            bufferTargets[target.ordinal()] = buffer;
+            buffer.bind(target);
+        }
+    }
+
+    // whether the buffer is bound at any indexed binding point
+    private boolean isIndexBound(Buffer b) {
+        if (uniformBindings == null) return false;
+        for (int i = 0; i < uniformBindings.length; i++) {
+            if (uniformBindings[i] == b) return true;
+        }
+        return false;
+    }
+
+    // forget the indexed bindings of a buffer being deleted, which the
+    // driver drops along with the buffer
+    private void releaseIndexedBindings(Buffer b) {
+        if (uniformBindings == null) return;
+        for (int i = 0; i < uniformBindings.length; i++) {
+            if (uniformBindings[i] == b) uniformBindings[i] = null;
+        }
     }
 
     private void unbindBuffer(BufferTarget t) {
-        Buffer b = bufferTargets.get(t);
-        assert b != null;
-        bufferTargets.put(t, null);
+        Buffer b = bufferTargets[t.ordinal()];
+        check(b != null);
+        gl.glBindBuffer(GL_BUFFER_TARGETS[t.ordinal()], 0);
+        checkGLError("glBindBuffer");
+        bufferTargets[t.ordinal()] = null;
         b.unbind(t);
     }
 
@@ -337,29 +1207,37 @@ public class GLContext {
     // determines the type of that texture object thereafter.  To unbind
     // a target, the texture can be null.
     public void glBindTexture(TextureTarget target, Texture texture) {
+        if (stateFiltering && textureTargets[target.ordinal()] == texture) {
+            frameStats.elidedCalls++;
+            return;
+        }
         if (texture == null) {
-            assert textureTargets.get(target) != null;
-            GL11.glBindTexture(textureTargetToGL(target), 0);
-            textureTargets.get(target).setTarget(null);
-            textureTargets.put(target, null);
+            check(textureTargets[target.ordinal()] != null);
+            gl.glBindTexture(GL_TEXTURE_TARGETS[target.ordinal()], 0);
+            checkGLError("glBindTexture");
+            textureTargets[target.ordinal()].unbind();
+            textureTargets[target.ordinal()] = null;
             return;
         }
         // a texture can only be bound once to a particular target, and
         // thereafter cannot be bound to a different target.
-        assert texture.getTarget() == null || texture.getTarget() == target;
-        GL11.glBindTexture(textureTargetToGL(target), texture.getId());
-        textureTargets.put(target, texture);
+        check(texture.getTarget() == null || texture.getTarget() == target);
+        gl.glBindTexture(GL_TEXTURE_TARGETS[target.ordinal()], texture.getId());
+        textureTargets[target.ordinal()] = texture;
         texture.setTarget(target);
-        checkGLError();
+        checkGLError("glBindTexture");
     }
 
     public void glTexImage2D(TextureTarget target, int detail,
                              TextureFormat format, int width, int height,
                              TextureFormat srcFormat, GLType type,
                              FloatBuffer data) {
-        assert isBound(target);
-        GL11.glTexImage2D(textureTargetToGL(target), detail, fmtToGL(format),
-                width, height, 0, fmtToGL(srcFormat), typeToGL(type), data);
+        check(isBound(target));
+        gl.glTexImage2D(GL_TEXTURE_TARGETS[target.ordinal()], detail,
+                GL_TEXTURE_FORMATS[format.ordinal()], width, height, 0,
+                GL_TEXTURE_FORMATS[srcFormat.ordinal()],
+                GL_TYPES[type.ordinal()], data);
+        checkGLError("glTexImage2D");
     }
 
 
@@ -374,9 +1252,10 @@ public class GLContext {
     // height - height of texture (or # of slices if GL_TEXTURE_1D_ARRAY)
     public void glTexStorage2D(TextureTarget target, int level, TextureFormat
             fmt, int width, int height) {
-        assert textureTargets.get(target) != null;
-        GL42.glTexStorage2D(textureTargetToGL(target), level, fmtToGL(fmt),
-                width, height);
+        check(textureTargets[target.ordinal()] != null);
+        gl.glTexStorage2D(GL_TEXTURE_TARGETS[target.ordinal()], level,
+                GL_TEXTURE_FORMATS[fmt.ordinal()], width, height);
+        checkGLError("glTexStorage2D");
     }
 
     // Specify the data for the texture.  The texture should be bound
@@ -396,8 +1275,10 @@ public class GLContext {
                                 int
                                         width, int height, TextureFormat format, GLType type, FloatBuffer
                                         data) {
-        GL11.glTexSubImage2D(textureTargetToGL(target), level, xoffset,
-                yoffset, width, height, fmtToGL(format), typeToGL(type), data);
+        gl.glTexSubImage2D(GL_TEXTURE_TARGETS[target.ordinal()], level, xoffset,
+                yoffset, width, height, GL_TEXTURE_FORMATS[format.ordinal()],
+                GL_TYPES[type.ordinal()], data);
+        checkGLError("glTexSubImage2D");
     }
 
 
@@ -406,63 +1287,299 @@ public class GLContext {
     }
     // There is only a single vertex array binding point
     // in the context.  A vertex array object must be bound to this
-    // target in order to be modified.
+    // target in order to be modified.  To unbind the target, the vertex
+    // array can be null.
     public void glBindVertexArray(VertexArray o) {
-        assert vertexArrayTarget == null;
+        if (stateFiltering && vertexArrayTarget == o) {
+            frameStats.elidedCalls++;
+            return;
+        }
+        if (o == null) {
+            check(vertexArrayTarget != null);
+            gl.glBindVertexArray(0);
+            checkGLError("glBindVertexArray");
+            vertexArrayTarget = null;
+            return;
+        }
+        check(vertexArrayTarget == null);
         vertexArrayTarget = o;
-        GL30.glBindVertexArray(o.getId());
-        checkGLError();
+        gl.glBindVertexArray(o.getId());
+        checkGLError("glBindVertexArray");
     }
 
 
     public void glBufferData(BufferTarget target, FloatBuffer buffer,
                              BufferUsage usage) {
-        assert isBound(target);
-        Buffer b = bufferTargets.get(target);
-        assert !b.hasData();
-        b.addData(buffer.remaining(), usage);
-        GL15.glBufferData(bufferTargetToGL(target), buffer, usageToGL(usage));
-        checkGLError();
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        specify(b, buffer.remaining() * 4, usage);
+        gl.glBufferData(GL_BUFFER_TARGETS[target.ordinal()], buffer,
+                GL_USAGES[usage.ordinal()]);
+        checkGLError("glBufferData");
     }
 
     public void glBufferData(BufferTarget target, IntBuffer buffer,
                              BufferUsage usage) {
-        assert isBound(target);
-        Buffer b = bufferTargets.get(target);
-        assert !b.hasData();
-        b.addData(buffer.remaining(), usage);
-        GL15.glBufferData(bufferTargetToGL(target), buffer, usageToGL(usage));
-        checkGLError();
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        specify(b, buffer.remaining() * 4, usage);
+        gl.glBufferData(GL_BUFFER_TARGETS[target.ordinal()], buffer,
+                GL_USAGES[usage.ordinal()]);
+        checkGLError("glBufferData");
     }
 
-
-    public void glBufferSubData(BufferTarget target, long byteOffset,
-                                ByteBuffer data)  {
-        assert isBound(target);
-        GL15.glBufferSubData(bufferTargetToGL(target), byteOffset, data);
-        checkGLError();
-    }
-
-    // copy data from an existing data structure by providing a pointer
-    // to the data structure
-    public void glMapBuffer() {
-        //GL15.glMapBuffer();
-        throw new NotImplementedException();
+    // as glBufferData for float data, for data of any type, such as
+    // vertices packed by a VertexPacker
+    public void glBufferData(BufferTarget target, ByteBuffer buffer,
+                             BufferUsage usage) {
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        specify(b, buffer.remaining(), usage);
+        gl.glBufferData(GL_BUFFER_TARGETS[target.ordinal()], buffer,
+                GL_USAGES[usage.ordinal()]);
+        checkGLError("glBufferData");
     }
 
-    // overwrite the entire buffer with the data
-    public void glClearBufferSubData() {
-        //GL43.glClearBufferSubData();
-        throw new NotImplementedException();
+    // create a data store of the given size in bytes, with undefined
+    // contents, for the buffer bound to the target
+    public void glBufferData(BufferTarget target, int size,
+                             BufferUsage usage) {
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        specify(b, size, usage);
+        gl.glBufferData(GL_BUFFER_TARGETS[target.ordinal()], (long) size,
+                GL_USAGES[usage.ordinal()]);
+        checkGLError("glBufferData");
+    }
+
+    // Replace the contents of the buffer bound to the target with the
+    // data, without waiting for the GPU to finish reading the old
+    // contents.  The old data store is orphaned, to be freed by the driver
+    // once no pending command uses it, and the data is written to a fresh
+    // one.  The store keeps the largest size it has been given, so that
+    // the driver can recycle orphaned stores of the same size.  The usage
+    // must be a STREAM or DYNAMIC one.  Meant for geometry that changes
+    // every frame, such as particles or UI.
+    public void streamBufferData(BufferTarget target, ByteBuffer data,
+                                 BufferUsage usage) {
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        int size = data.remaining();
+        if (b.hasData() && b.getDataSize() > size) {
+            size = b.getDataSize();
+        }
+        specify(b, size, usage);
+        int t = GL_BUFFER_TARGETS[target.ordinal()];
+        gl.glBufferData(t, (long) size, GL_USAGES[usage.ordinal()]);
+        checkGLError("glBufferData");
+        gl.glBufferSubData(t, 0, data);
+        checkGLError("glBufferSubData");
+    }
+
+    // Give the buffer a new data store.  A buffer with a STREAM or DYNAMIC
+    // usage may be respecified, orphaning its old store; any other buffer
+    // may only be specified once.
+    private void specify(Buffer b, int size, BufferUsage usage) {
+        if (!b.hasData()) {
+            b.addData(size, usage);
+            return;
+        }
+        check(b.canRespecify() && Buffer.isStreaming(usage));
+        check(!b.isMapped());
+        check(size >= 0);
+        b.respecify(size, usage);
+        frameStats.orphanedBuffers++;
+    }
+
+    // Create an immutable data store of the given size in bytes, with
+    // undefined contents, for the buffer bound to the target.  The store
+    // may only be mapped with the given flags, and may only be updated by
+    // glBufferSubData if dynamic is true.  Persistent mappings need
+    // immutable storage.
+    public void glBufferStorage(BufferTarget target, int size,
+                                MapBit[] flags, boolean dynamic) {
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        check(!b.hasData());
+        int bits = mapBits(flags);
+        check((bits & ~STORAGE_MAP_BITS) == 0);
+        int glFlags = glMapBits(bits);
+        if (dynamic) glFlags |= GL44.GL_DYNAMIC_STORAGE_BIT;
+        gl.glBufferStorage(GL_BUFFER_TARGETS[target.ordinal()], (long) size,
+                glFlags);
+        checkGLError("glBufferStorage");
+        // only once the call is known good, so a failed one leaves the
+        // buffer without a data store
+        b.addStorage(size, bits, dynamic);
     }
 
-    // copy data from one buffer to another.  It is recommended to use
-    // the GL_COPY_READ_BUFFER target for the readtarget, and the
-    // GL_COPY_WRITE_BUFFER for the write target, so that existing targets
-    // don't need to be
-    public void glCopyBufferSubData(Buffer readTarget, Buffer writeTarget,
-                                    int readOffset, int writeoffset, int size) {
-        throw new NotImplementedException();
+    public void glBufferSubData(BufferTarget target, long byteOffset,
+                                ByteBuffer data)  {
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        check(!b.hasData() || !b.isImmutable() || b.isDynamicStorage());
+        check(!b.isMapped() || (b.getMapBits() &
+                (1 << MapBit.GL_MAP_PERSISTENT_BIT.ordinal())) != 0);
+        gl.glBufferSubData(GL_BUFFER_TARGETS[target.ordinal()], byteOffset,
+                data);
+        checkGLError("glBufferSubData");
+    }
+
+    // Map the whole data store of the buffer bound to the target into
+    // client memory.  See glMapBufferRange.
+    public ByteBuffer glMapBuffer(BufferTarget target, MapBit[] access) {
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        check(b.hasData());
+        return glMapBufferRange(target, 0, b.getDataSize(), access);
+    }
+
+    // Map part of the data store of the buffer bound to the target into
+    // client memory, returning a view of it in native byte order.  Writes
+    // to the view go straight to the store, without a copy through the
+    // driver.  The view must not be used after the buffer is unmapped,
+    // other than through a persistent mapping, which stays valid until
+    // glUnmapBuffer even while the buffer is unbound or used for drawing.
+    public ByteBuffer glMapBufferRange(BufferTarget target, int offset,
+                                       int length, MapBit[] access) {
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        check(b.hasData() && !b.isMapped());
+        check(offset >= 0 && length > 0 &&
+                offset + length <= b.getDataSize());
+        int bits = mapBits(access);
+        // immutable storage can only be mapped as it allows
+        check(!b.isImmutable() ||
+                (bits & STORAGE_MAP_BITS & ~b.getStorageBits()) == 0);
+        check(b.isImmutable() ||
+                (bits & (1 << MapBit.GL_MAP_PERSISTENT_BIT.ordinal())) == 0);
+        ByteBuffer mapping = gl.glMapBufferRange(
+                GL_BUFFER_TARGETS[target.ordinal()], (long) offset,
+                (long) length, glMapBits(bits));
+        checkGLError("glMapBufferRange");
+        if (mapping == null) {
+            throw new RuntimeException("glMapBufferRange failed for " +
+                    "buffer " + b.getId());
+        }
+        b.map(bits);
+        return mapping.order(ByteOrder.nativeOrder());
+    }
+
+    // make writes to part of a mapping made with GL_MAP_FLUSH_EXPLICIT_BIT
+    // visible.  The offset is relative to the start of the mapping.
+    public void glFlushMappedBufferRange(BufferTarget target, int offset,
+                                         int length) {
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        check(b.isMapped() && (b.getMapBits() &
+                (1 << MapBit.GL_MAP_FLUSH_EXPLICIT_BIT.ordinal())) != 0);
+        gl.glFlushMappedBufferRange(GL_BUFFER_TARGETS[target.ordinal()],
+                (long) offset, (long) length);
+        checkGLError("glFlushMappedBufferRange");
+    }
+
+    // Unmap the buffer bound to the target.  Returns false if the contents
+    // of the store were lost while it was mapped, in which case they must
+    // be specified again.
+    public boolean glUnmapBuffer(BufferTarget target) {
+        check(isBound(target));
+        Buffer b = bufferTargets[target.ordinal()];
+        check(b.isMapped());
+        boolean intact = gl.glUnmapBuffer(GL_BUFFER_TARGETS[target.ordinal()]);
+        checkGLError("glUnmapBuffer");
+        b.unmap();
+        return intact;
+    }
+
+    // Insert a fence into the command stream, returning a sync object
+    // that is signaled once the GPU has completed every command before
+    // it.  The sync object must be deleted with glDeleteSync.
+    public long glFenceSync() {
+        long sync = gl.glFenceSync();
+        checkGLError("glFenceSync");
+        if (sync == 0) {
+            throw new RuntimeException("glFenceSync failed");
+        }
+        return sync;
+    }
+
+    // Wait up to the given number of nanoseconds for the sync object to be
+    // signaled, flushing pending commands so that it can be.  Returns true
+    // if it was signaled, and false if the wait timed out.  A timeout of 0
+    // just tests the sync object.
+    public boolean glClientWaitSync(long sync, long timeoutNanos) {
+        int result = gl.glClientWaitSync(sync,
+                GL32.GL_SYNC_FLUSH_COMMANDS_BIT, timeoutNanos);
+        checkGLError("glClientWaitSync");
+        if (result == GL32.GL_WAIT_FAILED) {
+            throw new RuntimeException("glClientWaitSync failed");
+        }
+        return result != GL32.GL_TIMEOUT_EXPIRED;
+    }
+
+    public void glDeleteSync(long sync) {
+        gl.glDeleteSync(sync);
+        checkGLError("glDeleteSync");
+    }
+
+    // Fill part of a buffer's data store with a repeated 32-bit value,
+    // without passing the data through client memory.  The offset and
+    // size are in bytes, and must be multiples of 4.  The buffer is bound
+    // to GL_COPY_WRITE_BUFFER for the duration of the call, and whatever
+    // was bound there is restored afterwards.
+    public void glClearBufferSubData(Buffer b, int offset, int size,
+                                     int value) {
+        check(b.hasData() && !b.isDeleted());
+        check(offset >= 0 && size >= 0 &&
+                offset + size <= b.getDataSize());
+        check(offset % 4 == 0 && size % 4 == 0);
+        check(!b.isMapped() || (b.getMapBits() &
+                (1 << MapBit.GL_MAP_PERSISTENT_BIT.ordinal())) != 0);
+        BufferTarget t = BufferTarget.GL_COPY_WRITE_BUFFER;
+        Buffer bound = bufferTargets[t.ordinal()];
+        replaceBuffer(t, b);
+        if (clearValue == null) {
+            clearValue = BufferUtils.createIntBuffer(1);
+        }
+        clearValue.put(0, value);
+        gl.glClearBufferSubData(GL_BUFFER_TARGETS[t.ordinal()],
+                GL30.GL_R32UI, (long) offset, (long) size,
+                GL30.GL_RED_INTEGER, GL11.GL_UNSIGNED_INT, clearValue);
+        checkGLError("glClearBufferSubData");
+        replaceBuffer(t, bound);
+    }
+
+    // Copy size bytes from one buffer's data store to another's, or
+    // within a single buffer as long as the ranges don't overlap, without
+    // passing the data through client memory.  The buffers are bound to
+    // GL_COPY_READ_BUFFER and GL_COPY_WRITE_BUFFER for the duration of the
+    // call, and whatever was bound there is restored afterwards.
+    public void glCopyBufferSubData(Buffer read, Buffer write,
+                                    int readOffset, int writeOffset,
+                                    int size) {
+        check(read.hasData() && !read.isDeleted());
+        check(write.hasData() && !write.isDeleted());
+        check(readOffset >= 0 && writeOffset >= 0 && size >= 0);
+        check(readOffset + size <= read.getDataSize());
+        check(writeOffset + size <= write.getDataSize());
+        check(read != write || readOffset + size <= writeOffset ||
+                writeOffset + size <= readOffset);
+        int persistent = 1 << MapBit.GL_MAP_PERSISTENT_BIT.ordinal();
+        check(!read.isMapped() || (read.getMapBits() & persistent) != 0);
+        check(!write.isMapped() || (write.getMapBits() & persistent) != 0);
+        BufferTarget rt = BufferTarget.GL_COPY_READ_BUFFER;
+        BufferTarget wt = BufferTarget.GL_COPY_WRITE_BUFFER;
+        Buffer boundRead = bufferTargets[rt.ordinal()];
+        Buffer boundWrite = bufferTargets[wt.ordinal()];
+        replaceBuffer(rt, read);
+        // a buffer copied within itself is bound to both targets
+        replaceBuffer(wt, write);
+        gl.glCopyBufferSubData(GL_BUFFER_TARGETS[rt.ordinal()],
+                GL_BUFFER_TARGETS[wt.ordinal()], (long) readOffset,
+                (long) writeOffset, (long) size);
+        checkGLError("glCopyBufferSubData");
+        replaceBuffer(rt, boundRead);
+        replaceBuffer(wt, boundWrite);
     }
 
     // define a data source for a particular attribute in the vertex
@@ -482,12 +1599,90 @@ public class GLContext {
                                       int offset) {
         // make sure there's a vertex array object that is bound.
         // We want to save this pointer information.
-        assert vertexArrayTarget != null;
+        check(vertexArrayTarget != null);
+        check(type != GLType.GL_INT_2_10_10_10_REV || size == 4);
         vertexArrayTarget.addPointer(index, size, type, normalized, stride,
-                offset);
-        GL20.glVertexAttribPointer(index, size, typeToGL(type), normalized,
-                stride, offset);
-        checkGLError();
+                offset, bufferTargets[BufferTarget.GL_ARRAY_BUFFER.ordinal()]);
+        gl.glVertexAttribPointer(index, size, GL_TYPES[type.ordinal()],
+                normalized, stride, offset);
+        checkGLError("glVertexAttribPointer");
+    }
+
+    // Make the attribute of the bound vertex array advance once every
+    // divisor instances of an instanced draw instead of once every vertex,
+    // so that it supplies per-instance data such as a transform; 0 makes
+    // it per-vertex again.  The divisor may be set before or after the
+    // attribute's pointer.
+    public void glVertexAttribDivisor(int index, int divisor) {
+        check(vertexArrayTarget != null);
+        check(index >= 0 && divisor >= 0);
+        vertexArrayTarget.setDivisor(index, divisor);
+        gl.glVertexAttribDivisor(index, divisor);
+        checkGLError("glVertexAttribDivisor");
+    }
+
+    // Set the layout of an attribute of the bound vertex array apart from
+    // the buffer it reads: the attribute reads size values of the given
+    // type at relativeOffset bytes into each vertex of the buffer bound
+    // to its vertex buffer binding point with glBindVertexBuffer.  With
+    // the layout separate, vertex data in another buffer of the same
+    // layout is drawn by rebinding the buffer instead of switching vertex
+    // arrays.  Needs OpenGL 4.3 or ARB_vertex_attrib_binding.
+    public void glVertexAttribFormat(int index, int size, GLType type,
+                                     boolean normalized,
+                                     int relativeOffset) {
+        check(vertexArrayTarget != null);
+        check(relativeOffset >= 0);
+        check(type != GLType.GL_INT_2_10_10_10_REV || size == 4);
+        vertexArrayTarget.addFormat(index, size, type, normalized,
+                relativeOffset);
+        gl.glVertexAttribFormat(index, size, GL_TYPES[type.ordinal()],
+                normalized, relativeOffset);
+        checkGLError("glVertexAttribFormat");
+    }
+
+    // Have an attribute of the bound vertex array, whose format has been
+    // set, read from the given vertex buffer binding point.  Attributes
+    // read from the binding point with their own index until this is
+    // called.
+    public void glVertexAttribBinding(int index, int binding) {
+        check(vertexArrayTarget != null);
+        check(index >= 0 && binding >= 0);
+        vertexArrayTarget.setBinding(index, binding);
+        gl.glVertexAttribBinding(index, binding);
+        checkGLError("glVertexAttribBinding");
+    }
+
+    // Bind a buffer to a vertex buffer binding point of the bound vertex
+    // array, with vertices stride bytes apart starting at offset.  The
+    // buffer may be null to leave the binding point empty.
+    public void glBindVertexBuffer(int binding, Buffer buffer, int offset,
+                                   int stride) {
+        check(vertexArrayTarget != null);
+        check(binding >= 0 && offset >= 0 && stride >= 0);
+        if (!vertexArrayTarget.bindVertexBuffer(binding, buffer, offset,
+                stride) && stateFiltering) {
+            frameStats.elidedCalls++;
+            return;
+        }
+        gl.glBindVertexBuffer(binding, buffer == null ? 0 : buffer.getId(),
+                offset, stride);
+        checkGLError("glBindVertexBuffer");
+    }
+
+    // as glBindVertexBuffer, but skipping the call whenever the binding
+    // point already has the buffer, offset and stride
+    void replaceVertexBuffer(int binding, Buffer buffer, int offset,
+                             int stride) {
+        check(vertexArrayTarget != null);
+        if (!vertexArrayTarget.bindVertexBuffer(binding, buffer, offset,
+                stride)) {
+            if (stateFiltering) frameStats.elidedCalls++;
+            return;
+        }
+        gl.glBindVertexBuffer(binding, buffer == null ? 0 : buffer.getId(),
+                offset, stride);
+        checkGLError("glBindVertexBuffer");
     }
 
     // set a vertex attribute to a specific value rather than use a vertex
@@ -498,7 +1693,8 @@ public class GLContext {
     // This function should be called whenever a change in the data needs to
     // be made visible.
     public void glVertexAttrib4fv(int attrib, FloatBuffer data) {
-        GL20.glVertexAttrib4fv(attrib, data);
+        gl.glVertexAttrib4fv(attrib, data);
+        checkGLError("glVertexAttrib4fv");
     }
 
     // enables the automatic reading of data for a particular attribute
@@ -507,28 +1703,28 @@ public class GLContext {
     public void glEnableVertexAttribArray(int index) {
 
         // A vertex array object must exist and be bound.
-        assert vertexArrayTarget != null;
+        check(vertexArrayTarget != null);
 
         //assert index in vertexShader.attributes;
-        GL20.glEnableVertexAttribArray(index);
-        checkGLError();
+        gl.glEnableVertexAttribArray(index);
+        checkGLError("glEnableVertexAttribArray");
     }
 
     private void glDisableVertexAttribArray(int index) {
-        GL20.glDisableVertexAttribArray(index);
-        checkGLError();
+        gl.glDisableVertexAttribArray(index);
+        checkGLError("glDisableVertexAttribArray");
     }
 
     public boolean isBound(BufferTarget t) {
-        return bufferTargets.get(t) != null;
+        return bufferTargets[t.ordinal()] != null;
     }
 
     public boolean isBoundTo(BufferTarget t, Buffer b) {
-        return bufferTargets.get(t) == b;
+        return bufferTargets[t.ordinal()] == b;
     }
 
     public boolean isBound(Buffer b) {
-        return b.getBindings().size() > 0;
+        return b.isBound();
     }
 
     public boolean isBound(Texture t) {
@@ -540,7 +1736,7 @@ public class GLContext {
     }
 
     public boolean isBound(TextureTarget t) {
-        return textureTargets.get(t) != null;
+        return textureTargets[t.ordinal()] != null;
     }
 
     public Set<BufferTarget> getBufferBindings(Buffer b) {
@@ -554,21 +1750,21 @@ public class GLContext {
     public String toString() {
         String s = "Buffer Targets:\n";
         // include buffer target binding status
-        for (BufferTarget t : bufferTargets.keySet()) {
-            Buffer b = bufferTargets.get(t);
+        for (BufferTarget t : BufferTarget.values()) {
+            Buffer b = bufferTargets[t.ordinal()];
             String bstr = b == null ? "None" : Integer.toString(b.getId());
             s = s.concat(t + "=" + bstr + "\n");
         }
         s = s.concat("\nTexture Targets:\n");
         // include texture target binding status
-        for (TextureTarget t : textureTargets.keySet()) {
-            Texture tex = textureTargets.get(t);
+        for (TextureTarget t : TextureTarget.values()) {
+            Texture tex = textureTargets[t.ordinal()];
             String tstr = tex == null ? "None" : Integer.toString(tex.getId());
             s = s.concat(t + "=" + tstr + "\n");
         }
         s = s.concat("\nFramebuffer Targets:\n");
-        for (FramebufferTarget fbt : framebufferTargets.keySet()) {
-            Framebuffer fb = framebufferTargets.get(fbt);
+        for (FramebufferTarget fbt : FramebufferTarget.values()) {
+            Framebuffer fb = framebufferTargets[fbt.ordinal()];
             String fbstr = fb == null ? "None" : Integer.toString(fb.getId());
             s = s.concat(fbt + "=" + fbstr + "\n");
         }
@@ -578,13 +1774,13 @@ public class GLContext {
                 (vertexArrayTarget.getId());
         s = s.concat(vastr + "\n");
         // include existing buffers
-        s = s.concat("\nBuffers:\n" + mapToString(buffers));
+        s = s.concat("\nBuffers:\n" + buffers);
         // include existing textures
-        s = s.concat("\nTextures:\n" + mapToString(textures));
+        s = s.concat("\nTextures:\n" + textures);
         // include existing vertex arrays
-        s = s.concat("\nVertex Arrays:\n" + mapToString(vertexArrays));
+        s = s.concat("\nVertex Arrays:\n" + vertexArrays);
         // includeexisting framebuffers
-        s = s.concat("\nFramebuffers:\n" + mapToString(framebuffers));
+        s = s.concat("\nFramebuffers:\n" + framebuffers);
         // the default framebuffer state
         s = s.concat("\nDefault Framebuffer:\n" + defaultFramebuffer);
 
@@ -599,40 +1795,501 @@ public class GLContext {
         return s;
     }
 
-    private String mapToString(HashMap<?, ?> map) {
-        String s = "";
-        if (map.isEmpty()) return s.concat("None\n");
-        else {
-            for (Object o : map.values()) {
-                s = s.concat(o + "\n");
+    // Called after each call to the driver.  At the FULL level, throw if
+    // the driver has recorded an error.  At the PER_FRAME level the call is
+    // only logged, and errors are looked for at the end of the frame.
+    private void checkGLError(String call) {
+        if (validation == ValidationLevel.OFF) {
+            return;
+        }
+        if (validation == ValidationLevel.PER_FRAME) {
+            callLog.add(call);
+            return;
+        }
+        if (debugOutput) {
+            if (debugError != null) {
+                String message = debugError;
+                debugError = null;
+                throw new RuntimeException(call + ": " + message);
             }
+            return;
+        }
+        int error = gl.glGetError();
+        if (error != GL11.GL_NO_ERROR) {
+            throw new RuntimeException(call + ": OpenGL error 0x" +
+                    Integer.toHexString(error));
         }
-        return s;
     }
 
-    // Get the location of a uniform variable in a shader
+    // Throw if the driver has recorded any errors since the last drain.
+    // The error flags don't identify the offending call, so the calls
+    // logged since the last drain are included in the message, most recent
+    // last.
+    private void drainGLErrors() {
+        int error = gl.glGetError();
+        if (error == GL11.GL_NO_ERROR) {
+            callLog.clear();
+            return;
+        }
+        String errors = "0x" + Integer.toHexString(error);
+        // a lost context can report errors indefinitely, so stop after
+        // a reasonable number of flags
+        for (int i = 0; i < MAX_ERROR_FLAGS; i++) {
+            error = gl.glGetError();
+            if (error == GL11.GL_NO_ERROR) break;
+            errors = errors.concat(", 0x" + Integer.toHexString(error));
+        }
+        String calls = callLog.toString();
+        callLog.clear();
+        throw new RuntimeException("OpenGL error(s) " + errors +
+                " raised during the frame. Most recent calls:\n" + calls);
+    }
+
+    // Verify an invariant of the tracked state.  Like an assert statement
+    // the check is only made when assertions are enabled, and in addition
+    // only at the FULL validation level.
+    private void check(boolean condition) {
+        assert validation != ValidationLevel.FULL || condition;
+    }
+
+    // Get the location of a uniform variable of a linked program, or -1
+    // if the program has no such active uniform.  The locations are found
+    // when the program is linked, so this doesn't call the driver; where
+    // a uniform is set often, keep its UniformHandle from
+    // Program.getUniform instead of looking it up by name.
     public int glGetUniformLocation(Program p, CharSequence name) {
-        assert p.hasAttribute(name);
-        return GL20.glGetUniformLocation(p.getId(), name);
+        awaitLink(p);
+        check(p.isLinked());
+        UniformHandle u = p.getUniform(name.toString());
+        return u == null ? -1 : u.getLocation();
     }
 
     // Retrieve the location of a specific attribute for the given linked
-    // program.
+    // program, or -1 if it has no such active attribute.  Like uniform
+    // locations, these are found when the program is linked.
     public int glGetAttribLocation(Program p, CharSequence attrib) {
-        assert p.isLinked();
-        assert p.hasAttribute(attrib);
-        int loc = GL20.glGetAttribLocation(p.getId(), attrib);
-        checkGLError();
-        return loc;
+        awaitLink(p);
+        check(p.isLinked());
+        return p.getAttribLocation(attrib);
+    }
+
+    // Get the index of a uniform block of a linked program, or -1 if the
+    // program has no such active block.  Like uniform locations, block
+    // indices are found when the program is linked.
+    public int glGetUniformBlockIndex(Program p, CharSequence name) {
+        awaitLink(p);
+        check(p.isLinked());
+        return p.getUniformBlockIndex(name);
+    }
+
+    // Have a uniform block of the program read from the buffer bound to
+    // an indexed uniform buffer binding point.  Each block starts out
+    // reading from the binding point the link gave it.
+    public void glUniformBlockBinding(Program p, int blockIndex,
+                                      int binding) {
+        check(p.isLinked());
+        check(blockIndex >= 0 && blockIndex < p.getUniformBlockCount());
+        check(binding >= 0);
+        if (stateFiltering &&
+                p.getUniformBlockBinding(blockIndex) == binding) {
+            frameStats.elidedCalls++;
+            return;
+        }
+        gl.glUniformBlockBinding(p.getId(), blockIndex, binding);
+        checkGLError("glUniformBlockBinding");
+        p.setUniformBlockBinding(blockIndex, binding);
+    }
+
+    // Uniform setters.  The uniform must belong to the program in use, and
+    // the setter must match its type: glUniformNf for a float or vecN,
+    // glUniformNi for an int, ivecN, bool or sampler, glUniform1ui for an
+    // unsigned int, the fv, iv and uiv forms for arrays, whose values are
+    // uploaded from the first element, and the matrix forms for
+    // column-major matrices.
+    //
+    // Each program keeps a shadow of the values last set for its
+    // uniforms, and with state filtering on a value the uniform is known
+    // to have already is not uploaded again.  Nothing is known about a
+    // uniform until it is first set after a link or glProgramBinary.  The
+    // number of uploads skipped is reported per frame.  This relies on
+    // every uniform being set through the context.
+
+    public void glUniform1f(UniformHandle u, float x) {
+        checkUniform(u, 1, true);
+        if (!updateShadow(u, x, 0, 0, 0, 1)) return;
+        gl.glUniform1f(u.getLocation(), x);
+        checkGLError("glUniform1f");
+    }
+
+    public void glUniform2f(UniformHandle u, float x, float y) {
+        checkUniform(u, 2, true);
+        if (!updateShadow(u, x, y, 0, 0, 2)) return;
+        gl.glUniform2f(u.getLocation(), x, y);
+        checkGLError("glUniform2f");
+    }
+
+    public void glUniform3f(UniformHandle u, float x, float y, float z) {
+        checkUniform(u, 3, true);
+        if (!updateShadow(u, x, y, z, 0, 3)) return;
+        gl.glUniform3f(u.getLocation(), x, y, z);
+        checkGLError("glUniform3f");
+    }
+
+    public void glUniform4f(UniformHandle u, float x, float y, float z,
+                            float w) {
+        checkUniform(u, 4, true);
+        if (!updateShadow(u, x, y, z, w, 4)) return;
+        gl.glUniform4f(u.getLocation(), x, y, z, w);
+        checkGLError("glUniform4f");
+    }
+
+    public void glUniform1i(UniformHandle u, int x) {
+        checkUniform(u, 1, false);
+        if (!updateShadow(u, x, 0, 0, 0, 1)) return;
+        gl.glUniform1i(u.getLocation(), x);
+        checkGLError("glUniform1i");
+    }
+
+    public void glUniform2i(UniformHandle u, int x, int y) {
+        checkUniform(u, 2, false);
+        if (!updateShadow(u, x, y, 0, 0, 2)) return;
+        gl.glUniform2i(u.getLocation(), x, y);
+        checkGLError("glUniform2i");
+    }
+
+    public void glUniform3i(UniformHandle u, int x, int y, int z) {
+        checkUniform(u, 3, false);
+        if (!updateShadow(u, x, y, z, 0, 3)) return;
+        gl.glUniform3i(u.getLocation(), x, y, z);
+        checkGLError("glUniform3i");
+    }
+
+    public void glUniform4i(UniformHandle u, int x, int y, int z, int w) {
+        checkUniform(u, 4, false);
+        if (!updateShadow(u, x, y, z, w, 4)) return;
+        gl.glUniform4i(u.getLocation(), x, y, z, w);
+        checkGLError("glUniform4i");
+    }
+
+    public void glUniform1ui(UniformHandle u, int x) {
+        checkUnsignedUniform(u);
+        if (!updateShadow(u, x, 0, 0, 0, 1)) return;
+        gl.glUniform1ui(u.getLocation(), x);
+        checkGLError("glUniform1ui");
+    }
+
+    public void glUniform1fv(UniformHandle u, float[] values) {
+        checkUniform(u, 1, true);
+        if (!updateShadow(u, values)) return;
+        gl.glUniform1fv(u.getLocation(), uniformFloats(values));
+        checkGLError("glUniform1fv");
+    }
+
+    public void glUniform2fv(UniformHandle u, float[] values) {
+        checkUniform(u, 2, true);
+        if (!updateShadow(u, values)) return;
+        gl.glUniform2fv(u.getLocation(), uniformFloats(values));
+        checkGLError("glUniform2fv");
+    }
+
+    public void glUniform3fv(UniformHandle u, float[] values) {
+        checkUniform(u, 3, true);
+        if (!updateShadow(u, values)) return;
+        gl.glUniform3fv(u.getLocation(), uniformFloats(values));
+        checkGLError("glUniform3fv");
+    }
+
+    public void glUniform4fv(UniformHandle u, float[] values) {
+        checkUniform(u, 4, true);
+        check(u.getType() != UniformType.GL_FLOAT_MAT2);
+        if (!updateShadow(u, values)) return;
+        gl.glUniform4fv(u.getLocation(), uniformFloats(values));
+        checkGLError("glUniform4fv");
+    }
+
+    public void glUniform1iv(UniformHandle u, int[] values) {
+        checkUniform(u, 1, false);
+        if (!updateShadow(u, values)) return;
+        gl.glUniform1iv(u.getLocation(), uniformInts(values));
+        checkGLError("glUniform1iv");
+    }
+
+    public void glUniform2iv(UniformHandle u, int[] values) {
+        checkUniform(u, 2, false);
+        if (!updateShadow(u, values)) return;
+        gl.glUniform2iv(u.getLocation(), uniformInts(values));
+        checkGLError("glUniform2iv");
+    }
+
+    public void glUniform3iv(UniformHandle u, int[] values) {
+        checkUniform(u, 3, false);
+        if (!updateShadow(u, values)) return;
+        gl.glUniform3iv(u.getLocation(), uniformInts(values));
+        checkGLError("glUniform3iv");
+    }
+
+    public void glUniform4iv(UniformHandle u, int[] values) {
+        checkUniform(u, 4, false);
+        if (!updateShadow(u, values)) return;
+        gl.glUniform4iv(u.getLocation(), uniformInts(values));
+        checkGLError("glUniform4iv");
+    }
+
+    public void glUniform1uiv(UniformHandle u, int[] values) {
+        checkUnsignedUniform(u);
+        if (!updateShadow(u, values)) return;
+        gl.glUniform1uiv(u.getLocation(), uniformInts(values));
+        checkGLError("glUniform1uiv");
+    }
+
+    public void glUniformMatrix2fv(UniformHandle u, float[] values) {
+        check(u.getType() == UniformType.GL_FLOAT_MAT2);
+        checkUniform(u, 4, true);
+        if (!updateShadow(u, values)) return;
+        gl.glUniformMatrix2fv(u.getLocation(), false,
+                uniformFloats(values));
+        checkGLError("glUniformMatrix2fv");
+    }
+
+    public void glUniformMatrix3fv(UniformHandle u, float[] values) {
+        checkUniform(u, 9, true);
+        if (!updateShadow(u, values)) return;
+        gl.glUniformMatrix3fv(u.getLocation(), false,
+                uniformFloats(values));
+        checkGLError("glUniformMatrix3fv");
+    }
+
+    public void glUniformMatrix4fv(UniformHandle u, float[] values) {
+        checkUniform(u, 16, true);
+        if (!updateShadow(u, values)) return;
+        gl.glUniformMatrix4fv(u.getLocation(), false,
+                uniformFloats(values));
+        checkGLError("glUniformMatrix4fv");
+    }
+
+    // the uniform belongs to the program in use and has the given number
+    // of components of the given kind
+    private void checkUniform(UniformHandle u, int components,
+                              boolean isFloat) {
+        check(u.getProgram() == program);
+        check(u.getComponents() == components && u.isFloat() == isFloat &&
+                !u.isUnsigned());
+    }
+
+    // as above, for an unsigned int uniform
+    private void checkUnsignedUniform(UniformHandle u) {
+        check(u.getProgram() == program);
+        check(u.isUnsigned());
+    }
+
+    // Store up to four float components of a uniform in its shadow.
+    // Returns whether they must be uploaded.
+    private boolean updateShadow(UniformHandle u, float x, float y, float z,
+                                 float w, int n) {
+        return updateShadow(u, Float.floatToRawIntBits(x),
+                Float.floatToRawIntBits(y), Float.floatToRawIntBits(z),
+                Float.floatToRawIntBits(w), n);
+    }
+
+    // as above, for int components
+    private boolean updateShadow(UniformHandle u, int x, int y, int z,
+                                 int w, int n) {
+        Program p = u.getProgram();
+        int o = u.shadowOffset;
+        boolean changed = p.updateUniform(o, x);
+        if (n > 1) changed |= p.updateUniform(o + 1, y);
+        if (n > 2) changed |= p.updateUniform(o + 2, z);
+        if (n > 3) changed |= p.updateUniform(o + 3, w);
+        return uploadNeeded(changed);
+    }
+
+    // as above, for an array of float components starting at the first
+    // element of the uniform.  Values past the end of the uniform are
+    // ignored, as the driver ignores them, rather than written over the
+    // shadow of the next uniform.
+    private boolean updateShadow(UniformHandle u, float[] values) {
+        check(values.length % u.getComponents() == 0);
+        check(values.length <= u.getComponents() * u.getSize());
+        Program p = u.getProgram();
+        int o = u.shadowOffset;
+        int n = Math.min(values.length, u.getComponents() * u.getSize());
+        boolean changed = false;
+        for (int i = 0; i < n; i++) {
+            changed |= p.updateUniform(o + i,
+                    Float.floatToRawIntBits(values[i]));
+        }
+        return uploadNeeded(changed);
+    }
+
+    // as above, for an array of int components
+    private boolean updateShadow(UniformHandle u, int[] values) {
+        check(values.length % u.getComponents() == 0);
+        check(values.length <= u.getComponents() * u.getSize());
+        Program p = u.getProgram();
+        int o = u.shadowOffset;
+        int n = Math.min(values.length, u.getComponents() * u.getSize());
+        boolean changed = false;
+        for (int i = 0; i < n; i++) {
+            changed |= p.updateUniform(o + i, values[i]);
+        }
+        return uploadNeeded(changed);
+    }
+
+    // Whether a uniform whose shadow did or didn't change must be
+    // uploaded.  Unchanged values are skipped, and counted, only with
+    // state filtering on.
+    private boolean uploadNeeded(boolean changed) {
+        if (changed || !stateFiltering) {
+            return true;
+        }
+        frameStats.skippedUniforms++;
+        return false;
+    }
+
+    // the values in a direct buffer, for passing to the driver
+    private FloatBuffer uniformFloats(float[] values) {
+        if (uniformFloats == null || uniformFloats.capacity() < values.length) {
+            uniformFloats = BufferUtils.createFloatBuffer(
+                    Math.max(values.length, 64));
+        }
+        uniformFloats.clear();
+        uniformFloats.put(values);
+        uniformFloats.flip();
+        return uniformFloats;
+    }
+
+    // as above, for ints
+    private IntBuffer uniformInts(int[] values) {
+        if (uniformInts == null || uniformInts.capacity() < values.length) {
+            uniformInts = BufferUtils.createIntBuffer(
+                    Math.max(values.length, 64));
+        }
+        uniformInts.clear();
+        uniformInts.put(values);
+        uniformInts.flip();
+        return uniformInts;
     }
 
     public void glBindFragDataLocation(Program p, int location, String name) {
-        GL30.glBindFragDataLocation(p.getId(), location, name);
+        gl.glBindFragDataLocation(p.getId(), location, name);
+        checkGLError("glBindFragDataLocation");
     }
 
     public void glDrawElements(DrawMode glTriangles, int i, GLType glUnsignedInt, int i1) {
-        GL11.glDrawElements(drawModeToGL(glTriangles), i, typeToGL
-                (glUnsignedInt), i1);
+        gl.glDrawElements(GL_DRAW_MODES[glTriangles.ordinal()], i,
+                GL_TYPES[glUnsignedInt.ordinal()], i1);
+        checkGLError("glDrawElements");
+    }
+
+    // Draw instances copies of count vertices starting at first, with
+    // attributes that have a divisor advancing per instance rather than
+    // per vertex.  One call draws what would otherwise take one draw per
+    // copy.
+    public void glDrawArraysInstanced(DrawMode mode, int first, int count,
+                                      int instances) {
+        checkInstanced(instances);
+        gl.glDrawArraysInstanced(GL_DRAW_MODES[mode.ordinal()], first, count,
+                instances);
+        checkGLError("glDrawArraysInstanced");
+    }
+
+    // as glDrawArraysInstanced, drawing count indices read from offset
+    // bytes into the element array buffer
+    public void glDrawElementsInstanced(DrawMode mode, int count,
+                                        GLType type, int offset,
+                                        int instances) {
+        checkInstanced(instances);
+        gl.glDrawElementsInstanced(GL_DRAW_MODES[mode.ordinal()], count,
+                GL_TYPES[type.ordinal()], offset, instances);
+        checkGLError("glDrawElementsInstanced");
+    }
+
+    // Draw drawCount draws whose DrawArraysIndirectCommand structs are
+    // read from offset bytes into the buffer bound to
+    // GL_DRAW_INDIRECT_BUFFER, stride bytes apart, or tightly packed if
+    // stride is 0.  Each draw can have its own vertices, instance count
+    // and base instance, so a whole scene can be drawn with one call.
+    // Needs OpenGL 4.3 or ARB_multi_draw_indirect.
+    public void glMultiDrawArraysIndirect(DrawMode mode, int offset,
+                                          int drawCount, int stride) {
+        checkIndirect(offset, drawCount, stride,
+                IndirectCommandBuilder.ARRAYS_STRIDE);
+        gl.glMultiDrawArraysIndirect(GL_DRAW_MODES[mode.ordinal()], offset,
+                drawCount, stride);
+        checkGLError("glMultiDrawArraysIndirect");
+    }
+
+    // as glMultiDrawArraysIndirect, for DrawElementsIndirectCommand
+    // structs, whose indices of the given type are read from the element
+    // array buffer
+    public void glMultiDrawElementsIndirect(DrawMode mode, GLType type,
+                                            int offset, int drawCount,
+                                            int stride) {
+        checkIndirect(offset, drawCount, stride,
+                IndirectCommandBuilder.ELEMENTS_STRIDE);
+        gl.glMultiDrawElementsIndirect(GL_DRAW_MODES[mode.ordinal()],
+                GL_TYPES[type.ordinal()], offset, drawCount, stride);
+        checkGLError("glMultiDrawElementsIndirect");
+    }
+
+    // the commands, each of the given size, must lie within the bound
+    // indirect buffer
+    private void checkIndirect(int offset, int drawCount, int stride,
+                               int size) {
+        check(vertexArrayTarget != null && vertexArrayTarget.hasPointers());
+        Buffer b = bufferTargets[
+                BufferTarget.GL_DRAW_INDIRECT_BUFFER.ordinal()];
+        check(b != null && b.hasData());
+        check(offset >= 0 && offset % 4 == 0 && drawCount >= 0);
+        if (stride == 0) stride = size;
+        check(stride % 4 == 0 && stride >= size);
+        check(drawCount == 0 || (long) offset +
+                (long) (drawCount - 1) * stride + size <= b.getDataSize());
+    }
+
+    private void checkInstanced(int instances) {
+        check(instances >= 0);
+        check(vertexArrayTarget != null && vertexArrayTarget.hasPointers());
+        check(vertexArrayTarget.hasInstanceBuffers());
+    }
+
+    // Draw count indices read from offset bytes into the element array
+    // buffer, adding baseVertex to each index before fetching vertices.
+    // Lets meshes that share one vertex buffer keep indices relative to
+    // their own first vertex.
+    public void glDrawElementsBaseVertex(DrawMode mode, int count,
+                                         GLType type, int offset,
+                                         int baseVertex) {
+        check(vertexArrayTarget != null && vertexArrayTarget.hasPointers());
+        gl.glDrawElementsBaseVertex(GL_DRAW_MODES[mode.ordinal()], count,
+                GL_TYPES[type.ordinal()], offset, baseVertex);
+        checkGLError("glDrawElementsBaseVertex");
+    }
+
+    // as glDrawElements, with a promise that every index lies between
+    // start and end inclusive, which lets the driver limit the vertices
+    // it has to consider
+    public void glDrawRangeElements(DrawMode mode, int start, int end,
+                                    int count, GLType type, int offset) {
+        check(vertexArrayTarget != null && vertexArrayTarget.hasPointers());
+        check(start <= end);
+        gl.glDrawRangeElements(GL_DRAW_MODES[mode.ordinal()], start, end,
+                count, GL_TYPES[type.ordinal()], offset);
+        checkGLError("glDrawRangeElements");
+    }
+
+    // glDrawRangeElements and glDrawElementsBaseVertex combined.  The
+    // range applies to the indices before baseVertex is added.
+    public void glDrawRangeElementsBaseVertex(DrawMode mode, int start,
+                                              int end, int count,
+                                              GLType type, int offset,
+                                              int baseVertex) {
+        check(vertexArrayTarget != null && vertexArrayTarget.hasPointers());
+        check(start <= end);
+        gl.glDrawRangeElementsBaseVertex(GL_DRAW_MODES[mode.ordinal()],
+                start, end, count, GL_TYPES[type.ordinal()], offset,
+                baseVertex);
+        checkGLError("glDrawRangeElementsBaseVertex");
     }
 
 
@@ -668,11 +2325,78 @@ public class GLContext {
 
     }
 
-    private int textureTargetToGL(TextureTarget t) {
+    // OpenGL enumerants, indexed by the ordinal of the corresponding enum
+    // constant, so that no conversion is needed on the hot path.
+    private static final int[] GL_TEXTURE_TARGETS =
+            new int[TextureTarget.values().length];
+    private static final int[] GL_BUFFER_TARGETS =
+            new int[BufferTarget.values().length];
+    private static final int[] GL_USAGES =
+            new int[BufferUsage.values().length];
+    private static final int[] GL_FRAMEBUFFER_TARGETS =
+            new int[FramebufferTarget.values().length];
+    private static final int[] GL_FRAMEBUFFER_BUFFERS =
+            new int[FramebufferBuffer.values().length];
+    private static final int[] GL_BUFFER_BITS =
+            new int[BufferBit.values().length];
+    private static final int[] GL_DRAW_MODES =
+            new int[DrawMode.values().length];
+    private static final int[] GL_SHADER_TYPES =
+            new int[ShaderType.values().length];
+    private static final int[] GL_TEXTURE_FORMATS =
+            new int[TextureFormat.values().length];
+    private static final int[] GL_TYPES =
+            new int[GLType.values().length];
+    private static final int[] GL_MAP_BITS =
+            new int[MapBit.values().length];
+    // the MapBit ordinals that have meaning for immutable storage
+    private static final int STORAGE_MAP_BITS =
+            (1 << MapBit.GL_MAP_READ_BIT.ordinal()) |
+            (1 << MapBit.GL_MAP_WRITE_BIT.ordinal()) |
+            (1 << MapBit.GL_MAP_PERSISTENT_BIT.ordinal()) |
+            (1 << MapBit.GL_MAP_COHERENT_BIT.ordinal());
+
+    static {
+        for (TextureTarget v : TextureTarget.values()) {
+            GL_TEXTURE_TARGETS[v.ordinal()] = textureTargetToGL(v);
+        }
+        for (BufferTarget v : BufferTarget.values()) {
+            GL_BUFFER_TARGETS[v.ordinal()] = bufferTargetToGL(v);
+        }
+        for (BufferUsage v : BufferUsage.values()) {
+            GL_USAGES[v.ordinal()] = usageToGL(v);
+        }
+        for (FramebufferTarget v : FramebufferTarget.values()) {
+            GL_FRAMEBUFFER_TARGETS[v.ordinal()] = fbtToGL(v);
+        }
+        for (FramebufferBuffer v : FramebufferBuffer.values()) {
+            GL_FRAMEBUFFER_BUFFERS[v.ordinal()] = fbbToGL(v);
+        }
+        for (BufferBit v : BufferBit.values()) {
+            GL_BUFFER_BITS[v.ordinal()] = bufferBitToGL(v);
+        }
+        for (DrawMode v : DrawMode.values()) {
+            GL_DRAW_MODES[v.ordinal()] = drawModeToGL(v);
+        }
+        for (ShaderType v : ShaderType.values()) {
+            GL_SHADER_TYPES[v.ordinal()] = shaderTypeToGL(v);
+        }
+        for (TextureFormat v : TextureFormat.values()) {
+            GL_TEXTURE_FORMATS[v.ordinal()] = fmtToGL(v);
+        }
+        for (MapBit v : MapBit.values()) {
+            GL_MAP_BITS[v.ordinal()] = mapBitToGL(v);
+        }
+        for (GLType v : GLType.values()) {
+            GL_TYPES[v.ordinal()] = typeToGL(v);
+        }
+    }
+
+    private static int textureTargetToGL(TextureTarget t) {
         switch(t) {
             case GL_TEXTURE_1D: return GL11.GL_TEXTURE_1D;
             case GL_TEXTURE_2D: return GL11.GL_TEXTURE_2D;
-            case GL_TEXTURE_3D: return GL11.GL_TEXTURE_2D;
+            case GL_TEXTURE_3D: return GL12.GL_TEXTURE_3D;
             case GL_TEXTURE_RECTANGLE: return GL31.GL_TEXTURE_RECTANGLE;
             case GL_TEXTURE_1D_ARRAY: return GL30.GL_TEXTURE_1D_ARRAY;
             case GL_TEXTURE_2D_ARRAY: return GL30.GL_TEXTURE_2D_ARRAY;
@@ -698,12 +2422,16 @@ public class GLContext {
                 return GL31.GL_COPY_WRITE_BUFFER;
             case GL_ELEMENT_ARRAY_BUFFER:
                 return GL15.GL_ELEMENT_ARRAY_BUFFER;
+            case GL_UNIFORM_BUFFER:
+                return GL31.GL_UNIFORM_BUFFER;
+            case GL_DRAW_INDIRECT_BUFFER:
+                return GL40.GL_DRAW_INDIRECT_BUFFER;
         }
         throw new IllegalArgumentException();
     }
 
 
-    private int usageToGL(BufferUsage u) {
+    private static int usageToGL(BufferUsage u) {
         switch(u) {
             case GL_STREAM_DRAW: return GL15.GL_STREAM_DRAW;
             case GL_STREAM_READ: return GL15.GL_STREAM_READ;
@@ -722,7 +2450,7 @@ public class GLContext {
         GL_COLOR, GL_STENCIL, GL_DEPTH
     }
 
-    private int fbtToGL(FramebufferTarget t) {
+    private static int fbtToGL(FramebufferTarget t) {
         switch (t) {
             case GL_FRAMEBUFFER:
                 return GL30.GL_FRAMEBUFFER;
@@ -735,7 +2463,7 @@ public class GLContext {
         }
     }
 
-    private int fbbToGL(FramebufferBuffer b) {
+    private static int fbbToGL(FramebufferBuffer b) {
         switch (b) {
             case GL_COLOR:
                 return GL11.GL_COLOR;
@@ -748,7 +2476,7 @@ public class GLContext {
         }
     }
 
-    private int bufferBitToGL(BufferBit b) {
+    private static int bufferBitToGL(BufferBit b) {
         switch (b) {
             case GL_COLOR_BUFFER_BIT:
                 return GL11.GL_COLOR_BUFFER_BIT;
@@ -761,7 +2489,7 @@ public class GLContext {
         }
     }
 
-    private int drawModeToGL(DrawMode m) {
+    private static int drawModeToGL(DrawMode m) {
         switch (m) {
             case GL_POINTS:
                 return GL11.GL_POINTS;
@@ -788,7 +2516,7 @@ public class GLContext {
         }
     }
 
-    int shaderTypeToGL(ShaderType t) {
+    private static int shaderTypeToGL(ShaderType t) {
         switch (t) {
             case GL_FRAGMENT_SHADER:
                 return GL20.GL_FRAGMENT_SHADER;
@@ -801,7 +2529,7 @@ public class GLContext {
         }
     }
 
-    private int fmtToGL(TextureFormat t) {
+    private static int fmtToGL(TextureFormat t) {
         switch (t) {
             case GL_RGBA:
                 return GL11.GL_RGBA;
@@ -812,27 +2540,125 @@ public class GLContext {
         }
     }
 
-    private int typeToGL(GLType t) {
+    private static UniformType uniformTypeFromGL(int type) {
+        switch (type) {
+            case GL11.GL_FLOAT:
+                return UniformType.GL_FLOAT;
+            case GL20.GL_FLOAT_VEC2:
+                return UniformType.GL_FLOAT_VEC2;
+            case GL20.GL_FLOAT_VEC3:
+                return UniformType.GL_FLOAT_VEC3;
+            case GL20.GL_FLOAT_VEC4:
+                return UniformType.GL_FLOAT_VEC4;
+            case GL11.GL_INT:
+                return UniformType.GL_INT;
+            case GL20.GL_INT_VEC2:
+                return UniformType.GL_INT_VEC2;
+            case GL20.GL_INT_VEC3:
+                return UniformType.GL_INT_VEC3;
+            case GL20.GL_INT_VEC4:
+                return UniformType.GL_INT_VEC4;
+            case GL11.GL_UNSIGNED_INT:
+                return UniformType.GL_UNSIGNED_INT;
+            case GL20.GL_BOOL:
+                return UniformType.GL_BOOL;
+            case GL20.GL_FLOAT_MAT2:
+                return UniformType.GL_FLOAT_MAT2;
+            case GL20.GL_FLOAT_MAT3:
+                return UniformType.GL_FLOAT_MAT3;
+            case GL20.GL_FLOAT_MAT4:
+                return UniformType.GL_FLOAT_MAT4;
+            case GL20.GL_SAMPLER_1D:
+                return UniformType.GL_SAMPLER_1D;
+            case GL20.GL_SAMPLER_2D:
+                return UniformType.GL_SAMPLER_2D;
+            case GL20.GL_SAMPLER_3D:
+                return UniformType.GL_SAMPLER_3D;
+            case GL20.GL_SAMPLER_CUBE:
+                return UniformType.GL_SAMPLER_CUBE;
+            case GL20.GL_SAMPLER_2D_SHADOW:
+                return UniformType.GL_SAMPLER_2D_SHADOW;
+            default:
+                return UniformType.OTHER;
+        }
+    }
+
+    private static int mapBitToGL(MapBit b) {
+        switch (b) {
+            case GL_MAP_READ_BIT:
+                return GL30.GL_MAP_READ_BIT;
+            case GL_MAP_WRITE_BIT:
+                return GL30.GL_MAP_WRITE_BIT;
+            case GL_MAP_INVALIDATE_RANGE_BIT:
+                return GL30.GL_MAP_INVALIDATE_RANGE_BIT;
+            case GL_MAP_INVALIDATE_BUFFER_BIT:
+                return GL30.GL_MAP_INVALIDATE_BUFFER_BIT;
+            case GL_MAP_FLUSH_EXPLICIT_BIT:
+                return GL30.GL_MAP_FLUSH_EXPLICIT_BIT;
+            case GL_MAP_UNSYNCHRONIZED_BIT:
+                return GL30.GL_MAP_UNSYNCHRONIZED_BIT;
+            case GL_MAP_PERSISTENT_BIT:
+                return GL44.GL_MAP_PERSISTENT_BIT;
+            case GL_MAP_COHERENT_BIT:
+                return GL44.GL_MAP_COHERENT_BIT;
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    // MapBit ordinals, one bit each
+    private static int mapBits(MapBit[] bits) {
+        int mask = 0;
+        for (MapBit b : bits) {
+            mask |= 1 << b.ordinal();
+        }
+        return mask;
+    }
+
+    private static int glMapBits(int mask) {
+        int bits = 0;
+        for (int i = 0; i < GL_MAP_BITS.length; i++) {
+            if ((mask & (1 << i)) != 0) bits |= GL_MAP_BITS[i];
+        }
+        return bits;
+    }
+
+    private static int typeToGL(GLType t) {
         switch(t) {
             case GL_BYTE:
                 return GL11.GL_BYTE;
             case GL_UNSIGNED_BYTE:
                 return GL11.GL_UNSIGNED_BYTE;
+            case GL_SHORT:
+                return GL11.GL_SHORT;
             case GL_UNSIGNED_SHORT:
                 return GL11.GL_UNSIGNED_SHORT;
             case GL_INT:
+                return GL11.GL_INT;
+            case GL_UNSIGNED_INT:
                 return GL11.GL_UNSIGNED_INT;
             case GL_FLOAT:
                 return GL11.GL_FLOAT;
+            case GL_DOUBLE:
+                return GL11.GL_DOUBLE;
+            case GL_HALF_FLOAT:
+                return GL30.GL_HALF_FLOAT;
+            case GL_INT_2_10_10_10_REV:
+                return GL33.GL_INT_2_10_10_10_REV;
             default:
                 throw new IllegalArgumentException();
         }
     }
 
-    // bound targets
-    private Map<BufferTarget, Buffer> bufferTargets;
-    private Map<TextureTarget, Texture> textureTargets;
-    private Map<FramebufferTarget, Framebuffer> framebufferTargets;
+    // the OpenGL implementation that calls are dispatched to
+    private GLBackend gl;
+    // the backend merging draws, which gl is, when draw batching is on
+    private BatchingBackend batching;
+
+    // bound targets, indexed by the ordinal of the target
+    private Buffer[] bufferTargets;
+    private Texture[] textureTargets;
+    private Framebuffer[] framebufferTargets;
     private VertexArray vertexArrayTarget;
 
     // the current bit plane
@@ -847,14 +2673,63 @@ public class GLContext {
     // the program currently in use
     Program program;
 
+    // whether redundant bind and use calls are filtered out
+    private boolean stateFiltering;
+
+    // how much checking is done, the calls made since errors were last
+    // looked for, and whether errors are reported through debug output
+    private ValidationLevel validation;
+    private CallLog callLog;
+    private boolean debugOutput;
+    // the first error reported through debug output since the last check
+    private String debugError;
+
+    // the number of calls remembered for PER_FRAME error reports
+    private static final int CALL_LOG_SIZE = 64;
+    // the most error flags drained at the end of a frame
+    private static final int MAX_ERROR_FLAGS = 16;
+
+    // counters for the frame in progress, and for the last completed frame
+    private FrameStats frameStats;
+    private FrameStats lastFrameStats;
+
     // the default framebuffer
     DefaultFramebuffer defaultFramebuffer;
 
     // OpenGL objects (bound or unbound)
-    private HashMap<Integer, Buffer> buffers;
-    private HashMap<Integer, Texture> textures;
-    private HashMap<Integer, VertexArray> vertexArrays;
-    private HashMap<Integer, Program> programs;
-    private HashMap<Integer, Shader> shaders;
-    private HashMap<Integer, Framebuffer> framebuffers;
+    private ObjectRegistry<Buffer> buffers;
+    private ObjectRegistry<Texture> textures;
+    private ObjectRegistry<VertexArray> vertexArrays;
+    private ObjectRegistry<Program> programs;
+    private ObjectRegistry<Shader> shaders;
+    private ObjectRegistry<Framebuffer> framebuffers;
+
+    // name pools, all null unless pooling is turned on
+    private NamePool bufferNames;
+    private NamePool textureNames;
+    private NamePool vertexArrayNames;
+    private NamePool framebufferNames;
+    // scratch space for passing batches of names to the driver
+    private IntBuffer names;
+    // scratch space for the value passed to glClearBufferSubData
+    private IntBuffer clearValue;
+    // scratch space for uniform arrays
+    private FloatBuffer uniformFloats;
+    private IntBuffer uniformInts;
+    // the buffer ranges bound to each indexed uniform buffer binding
+    // point, with a size of 0 for a whole buffer bound by
+    // glBindBufferBase, all null until a buffer is first bound
+    private Buffer[] uniformBindings;
+    private int[] uniformOffsets;
+    private int[] uniformSizes;
+    // GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT, or 0 until it is first needed
+    private int uniformBufferOffsetAlignment;
+    // see getDriverDescription(); null until it is first needed
+    private String driverDescription;
+    // compiles and links started asynchronously and not yet checked
+    private List<Shader> pendingShaders;
+    private List<Program> pendingPrograms;
+    // whether the driver compiles in parallel, or null until it is first
+    // needed
+    private Boolean parallelCompile;
 }
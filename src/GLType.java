@@ -1,4 +1,7 @@
 enum GLType {
     GL_BYTE, GL_UNSIGNED_BYTE, GL_SHORT, GL_UNSIGNED_SHORT, GL_INT,
-    GL_UNSIGNED_INT, GL_FLOAT, GL_DOUBLE
+    GL_UNSIGNED_INT, GL_FLOAT, GL_DOUBLE,
+    // vertex attribute types: 16 bit floats, and a signed 10 bit x, y
+    // and z with a 2 bit w packed into each 32 bit value
+    GL_HALF_FLOAT, GL_INT_2_10_10_10_REV
 }
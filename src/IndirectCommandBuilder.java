@@ -0,0 +1,112 @@
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+// Packs the command structs of indirect draws into a buffer off the Java
+// heap, ready to upload to a GL_DRAW_INDIRECT_BUFFER and draw with one
+// call to glMultiDrawElementsIndirect or glMultiDrawArraysIndirect:
+//
+//   DrawElementsIndirectCommand {      DrawArraysIndirectCommand {
+//       uint count;                        uint count;
+//       uint instanceCount;                uint instanceCount;
+//       uint firstIndex;                   uint first;
+//       int  baseVertex;                   uint baseInstance;
+//       uint baseInstance;             }
+//   }
+//
+// A builder holds commands of one kind only, tightly packed.  Adding
+// commands only allocates when the buffer has to grow, so a builder kept
+// from frame to frame and cleared each time allocates nothing once it is
+// large enough.  For a static scene the commands can be built and
+// uploaded once, and the whole scene drawn with one call every frame.
+public class IndirectCommandBuilder {
+
+    // the sizes of the two structs in bytes
+    public static final int ELEMENTS_STRIDE = 20;
+    public static final int ARRAYS_STRIDE = 16;
+
+    private ByteBuffer commands;
+    private int count;
+    // the size of the commands added since the last clear, or 0 if none
+    // have been
+    private int stride;
+
+    // capacity - the number of commands to make room for at first
+    public IndirectCommandBuilder(int capacity) {
+        commands = BufferUtils.createByteBuffer(
+                Math.max(1, capacity) * ELEMENTS_STRIDE);
+    }
+
+    // Add a DrawElementsIndirectCommand, drawing instanceCount instances
+    // of count indices starting at index firstIndex of the element array
+    // buffer, adding baseVertex to each index.  The first instance reads
+    // instance number baseInstance of any per-instance attributes.
+    public IndirectCommandBuilder addElements(int count, int instanceCount,
+                                              int firstIndex, int baseVertex,
+                                              int baseInstance) {
+        int at = start(ELEMENTS_STRIDE);
+        commands.putInt(at, count);
+        commands.putInt(at + 4, instanceCount);
+        commands.putInt(at + 8, firstIndex);
+        commands.putInt(at + 12, baseVertex);
+        commands.putInt(at + 16, baseInstance);
+        return this;
+    }
+
+    // Add a DrawArraysIndirectCommand, drawing instanceCount instances of
+    // count vertices starting at vertex first.
+    public IndirectCommandBuilder addArrays(int count, int instanceCount,
+                                            int first, int baseInstance) {
+        int at = start(ARRAYS_STRIDE);
+        commands.putInt(at, count);
+        commands.putInt(at + 4, instanceCount);
+        commands.putInt(at + 8, first);
+        commands.putInt(at + 12, baseInstance);
+        return this;
+    }
+
+    // the commands added so far, positioned at 0 with their size as the
+    // limit; the buffer is reused, so upload it before adding more
+    public ByteBuffer getCommands() {
+        commands.limit(count * stride);
+        commands.position(0);
+        return commands;
+    }
+
+    // the number of commands added, which is the drawCount to draw them
+    public int getCount() {
+        return count;
+    }
+
+    // the size of each command, or 0 if none have been added
+    public int getStride() {
+        return stride;
+    }
+
+    // remove every command, so that commands of either kind can be added
+    public void clear() {
+        count = 0;
+        stride = 0;
+    }
+
+    // the offset at which to write the next command of the given size,
+    // growing the buffer if need be
+    private int start(int size) {
+        if (stride != 0 && stride != size) {
+            throw new IllegalStateException("Can't mix elements and " +
+                    "arrays commands in one builder");
+        }
+        stride = size;
+        int at = count * size;
+        if (at + size > commands.capacity()) {
+            ByteBuffer grown = BufferUtils.createByteBuffer(
+                    commands.capacity() * 2);
+            commands.limit(at).position(0);
+            grown.put(commands);
+            commands = grown;
+        }
+        commands.limit(commands.capacity());
+        count++;
+        return at;
+    }
+}
@@ -0,0 +1,87 @@
+import java.nio.ByteBuffer;
+
+// A buffer of per-instance attributes, such as a transform and a colour
+// for every plant or every member of a crowd, to be drawn with
+// glDrawArraysInstanced or glDrawElementsInstanced.
+//
+// Each instance is a run of floats read by consecutive attributes of up
+// to four floats each, so a mat4 takes four attributes.  attach() points
+// those attributes of the bound vertex array at the buffer, with a
+// divisor of 1, once.  After that upload() replaces the data for all the
+// instances with one call, orphaning the old data store so that it
+// never waits for draws still reading it, and returns the number of
+// instances to draw.
+public class InstanceBuffer {
+
+    private GLContext context;
+    private Buffer buffer;
+    private int floatsPerInstance;
+    private int instances;
+
+    public InstanceBuffer(GLContext c, int floatsPerInstance) {
+        if (floatsPerInstance <= 0) {
+            throw new IllegalArgumentException("floatsPerInstance " +
+                    floatsPerInstance);
+        }
+        context = c;
+        this.floatsPerInstance = floatsPerInstance;
+        buffer = c.glGenBuffers();
+    }
+
+    // Set up attributes first, first + 1, and so on, of the bound vertex
+    // array to read from this buffer, one instance at a time.  Returns the
+    // number of attributes used.
+    public int attach(int first) {
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        Buffer bound = context.getBuffer(t);
+        context.replaceBuffer(t, buffer);
+        int stride = floatsPerInstance * 4;
+        int attributes = 0;
+        for (int f = 0; f < floatsPerInstance; f += 4) {
+            int index = first + attributes++;
+            context.glVertexAttribPointer(index,
+                    Math.min(4, floatsPerInstance - f), GLType.GL_FLOAT,
+                    false, stride, f * 4);
+            context.glEnableVertexAttribArray(index);
+            context.glVertexAttribDivisor(index, 1);
+        }
+        context.replaceBuffer(t, bound);
+        return attributes;
+    }
+
+    // Replace the instance data with the data remaining in the buffer,
+    // floatsPerInstance floats per instance in native byte order.  Returns
+    // the number of instances.
+    public int upload(ByteBuffer data) {
+        int bytes = data.remaining();
+        if (bytes % (floatsPerInstance * 4) != 0) {
+            throw new IllegalArgumentException(bytes + " bytes is not a " +
+                    "whole number of instances of " + floatsPerInstance +
+                    " floats");
+        }
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        Buffer bound = context.getBuffer(t);
+        context.replaceBuffer(t, buffer);
+        context.streamBufferData(t, data, BufferUsage.GL_STREAM_DRAW);
+        context.replaceBuffer(t, bound);
+        instances = bytes / (floatsPerInstance * 4);
+        return instances;
+    }
+
+    // the number of instances last uploaded
+    public int getInstanceCount() {
+        return instances;
+    }
+
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    // Delete the buffer.  Vertex arrays attached to it must not be used
+    // for instanced draws afterwards.
+    public void delete() {
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        if (context.getBuffer(t) == buffer) context.replaceBuffer(t, null);
+        context.glDeleteBuffers(buffer);
+    }
+}
@@ -0,0 +1,550 @@
+import org.lwjgl.BufferUtils;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.opengl.*;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+// Passes every call straight through to the LWJGL bindings of the OpenGL
+// context that is current on the calling thread.
+class LwjglBackend implements GLBackend {
+
+    // kept so the native callback isn't freed while installed
+    private GLDebugMessageCallback debugCallback;
+    // the offsets of glMultiDrawElements, as pointers
+    private PointerBuffer pointers;
+
+    public int glGetError() {
+        return GL11.glGetError();
+    }
+
+    public int glGetInteger(int pname) {
+        return GL11.glGetInteger(pname);
+    }
+
+    public String glGetString(int name) {
+        return GL11.glGetString(name);
+    }
+
+    public boolean glDebugMessageCallback(final DebugListener listener) {
+        GLCapabilities caps = GL.getCapabilities();
+        if (!caps.OpenGL43 && !caps.GL_KHR_debug) {
+            return false;
+        }
+        if (debugCallback != null) {
+            debugCallback.free();
+        }
+        debugCallback = GLDebugMessageCallback.create(
+                new GLDebugMessageCallbackI() {
+            public void invoke(int source, int type, int id, int severity,
+                               int length, long message, long userParam) {
+                if (type == KHRDebug.GL_DEBUG_TYPE_ERROR) {
+                    listener.error(id, GLDebugMessageCallback.getMessage(
+                            length, message));
+                }
+            }
+        });
+        KHRDebug.glDebugMessageCallback(debugCallback, 0);
+        GL11.glEnable(KHRDebug.GL_DEBUG_OUTPUT);
+        GL11.glEnable(KHRDebug.GL_DEBUG_OUTPUT_SYNCHRONOUS);
+        return true;
+    }
+
+    public boolean glMaxShaderCompilerThreads(int count) {
+        if (!GL.getCapabilities().GL_ARB_parallel_shader_compile) {
+            return false;
+        }
+        ARBParallelShaderCompile.glMaxShaderCompilerThreadsARB(count);
+        return true;
+    }
+
+    public int glGenBuffers() {
+        return GL15.glGenBuffers();
+    }
+
+    public void glGenBuffers(IntBuffer buffers) {
+        GL15.glGenBuffers(buffers);
+    }
+
+    public void glDeleteBuffers(int buffer) {
+        GL15.glDeleteBuffers(buffer);
+    }
+
+    public void glDeleteBuffers(IntBuffer buffers) {
+        GL15.glDeleteBuffers(buffers);
+    }
+
+    public void glBindBuffer(int target, int buffer) {
+        GL15.glBindBuffer(target, buffer);
+    }
+
+    public void glBindBufferBase(int target, int index, int buffer) {
+        GL30.glBindBufferBase(target, index, buffer);
+    }
+
+    public void glBindBufferRange(int target, int index, int buffer,
+                                  long offset, long size) {
+        GL30.glBindBufferRange(target, index, buffer, offset, size);
+    }
+
+    public void glBufferData(int target, FloatBuffer data, int usage) {
+        GL15.glBufferData(target, data, usage);
+    }
+
+    public void glBufferData(int target, IntBuffer data, int usage) {
+        GL15.glBufferData(target, data, usage);
+    }
+
+    public void glBufferData(int target, ByteBuffer data, int usage) {
+        GL15.glBufferData(target, data, usage);
+    }
+
+    public void glBufferData(int target, long size, int usage) {
+        GL15.glBufferData(target, size, usage);
+    }
+
+    public void glBufferStorage(int target, long size, int flags) {
+        GL44.glBufferStorage(target, size, flags);
+    }
+
+    public void glCopyBufferSubData(int readTarget, int writeTarget,
+                                    long readOffset, long writeOffset,
+                                    long size) {
+        GL31.glCopyBufferSubData(readTarget, writeTarget, readOffset,
+                writeOffset, size);
+    }
+
+    public void glClearBufferSubData(int target, int internalFormat,
+                                     long offset, long size, int format,
+                                     int type, IntBuffer data) {
+        GL43.glClearBufferSubData(target, internalFormat, offset, size,
+                format, type, data);
+    }
+
+    public ByteBuffer glMapBufferRange(int target, long offset, long length,
+                                       int access) {
+        return GL30.glMapBufferRange(target, offset, length, access);
+    }
+
+    public void glFlushMappedBufferRange(int target, long offset,
+                                         long length) {
+        GL30.glFlushMappedBufferRange(target, offset, length);
+    }
+
+    public boolean glUnmapBuffer(int target) {
+        return GL15.glUnmapBuffer(target);
+    }
+
+    public long glFenceSync() {
+        return GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+
+    public int glClientWaitSync(long sync, int flags, long timeout) {
+        return GL32.glClientWaitSync(sync, flags, timeout);
+    }
+
+    public void glDeleteSync(long sync) {
+        GL32.glDeleteSync(sync);
+    }
+
+    public void glBufferSubData(int target, long offset, ByteBuffer data) {
+        GL15.glBufferSubData(target, offset, data);
+    }
+
+    public int glCreateShader(int type) {
+        return GL20.glCreateShader(type);
+    }
+
+    public void glShaderSource(int shader, CharSequence source) {
+        GL20.glShaderSource(shader, source);
+    }
+
+    public void glCompileShader(int shader) {
+        GL20.glCompileShader(shader);
+    }
+
+    public int glGetShaderi(int shader, int pname) {
+        return GL20.glGetShaderi(shader, pname);
+    }
+
+    public String glGetShaderInfoLog(int shader) {
+        return GL20.glGetShaderInfoLog(shader);
+    }
+
+    public void glDeleteShader(int shader) {
+        GL20.glDeleteShader(shader);
+    }
+
+    public int glCreateProgram() {
+        return GL20.glCreateProgram();
+    }
+
+    public void glAttachShader(int program, int shader) {
+        GL20.glAttachShader(program, shader);
+    }
+
+    public void glLinkProgram(int program) {
+        GL20.glLinkProgram(program);
+    }
+
+    public int glGetProgrami(int program, int pname) {
+        return GL20.glGetProgrami(program, pname);
+    }
+
+    public String glGetProgramInfoLog(int program) {
+        return GL20.glGetProgramInfoLog(program);
+    }
+
+    public void glUseProgram(int program) {
+        GL20.glUseProgram(program);
+    }
+
+    public void glDeleteProgram(int program) {
+        GL20.glDeleteProgram(program);
+    }
+
+    public void glProgramParameteri(int program, int pname, int value) {
+        GL41.glProgramParameteri(program, pname, value);
+    }
+
+    public void glGetProgramBinary(int program, IntBuffer length,
+                                   IntBuffer format, ByteBuffer binary) {
+        GL41.glGetProgramBinary(program, length, format, binary);
+    }
+
+    public void glProgramBinary(int program, int format, ByteBuffer binary) {
+        GL41.glProgramBinary(program, format, binary);
+    }
+
+    public int glGetUniformLocation(int program, CharSequence name) {
+        return GL20.glGetUniformLocation(program, name);
+    }
+
+    public int glGetAttribLocation(int program, CharSequence name) {
+        return GL20.glGetAttribLocation(program, name);
+    }
+
+    public void glUniform1f(int location, float x) {
+        GL20.glUniform1f(location, x);
+    }
+
+    public void glUniform2f(int location, float x, float y) {
+        GL20.glUniform2f(location, x, y);
+    }
+
+    public void glUniform3f(int location, float x, float y, float z) {
+        GL20.glUniform3f(location, x, y, z);
+    }
+
+    public void glUniform4f(int location, float x, float y, float z,
+                            float w) {
+        GL20.glUniform4f(location, x, y, z, w);
+    }
+
+    public void glUniform1i(int location, int x) {
+        GL20.glUniform1i(location, x);
+    }
+
+    public void glUniform2i(int location, int x, int y) {
+        GL20.glUniform2i(location, x, y);
+    }
+
+    public void glUniform3i(int location, int x, int y, int z) {
+        GL20.glUniform3i(location, x, y, z);
+    }
+
+    public void glUniform4i(int location, int x, int y, int z, int w) {
+        GL20.glUniform4i(location, x, y, z, w);
+    }
+
+    public void glUniform1ui(int location, int x) {
+        GL30.glUniform1ui(location, x);
+    }
+
+    public void glUniform1fv(int location, FloatBuffer values) {
+        GL20.glUniform1fv(location, values);
+    }
+
+    public void glUniform2fv(int location, FloatBuffer values) {
+        GL20.glUniform2fv(location, values);
+    }
+
+    public void glUniform3fv(int location, FloatBuffer values) {
+        GL20.glUniform3fv(location, values);
+    }
+
+    public void glUniform4fv(int location, FloatBuffer values) {
+        GL20.glUniform4fv(location, values);
+    }
+
+    public void glUniform1iv(int location, IntBuffer values) {
+        GL20.glUniform1iv(location, values);
+    }
+
+    public void glUniform2iv(int location, IntBuffer values) {
+        GL20.glUniform2iv(location, values);
+    }
+
+    public void glUniform3iv(int location, IntBuffer values) {
+        GL20.glUniform3iv(location, values);
+    }
+
+    public void glUniform4iv(int location, IntBuffer values) {
+        GL20.glUniform4iv(location, values);
+    }
+
+    public void glUniform1uiv(int location, IntBuffer values) {
+        GL30.glUniform1uiv(location, values);
+    }
+
+    public void glUniformMatrix2fv(int location, boolean transpose,
+                                   FloatBuffer values) {
+        GL20.glUniformMatrix2fv(location, transpose, values);
+    }
+
+    public void glUniformMatrix3fv(int location, boolean transpose,
+                                   FloatBuffer values) {
+        GL20.glUniformMatrix3fv(location, transpose, values);
+    }
+
+    public void glUniformMatrix4fv(int location, boolean transpose,
+                                   FloatBuffer values) {
+        GL20.glUniformMatrix4fv(location, transpose, values);
+    }
+
+    public String glGetActiveUniform(int program, int index, IntBuffer size,
+                                     IntBuffer type) {
+        return GL20.glGetActiveUniform(program, index, size, type);
+    }
+
+    public String glGetActiveAttrib(int program, int index, IntBuffer size,
+                                    IntBuffer type) {
+        return GL20.glGetActiveAttrib(program, index, size, type);
+    }
+
+    public String glGetActiveUniformBlockName(int program, int index) {
+        return GL31.glGetActiveUniformBlockName(program, index);
+    }
+
+    public int glGetActiveUniformBlocki(int program, int index, int pname) {
+        return GL31.glGetActiveUniformBlocki(program, index, pname);
+    }
+
+    public void glUniformBlockBinding(int program, int index, int binding) {
+        GL31.glUniformBlockBinding(program, index, binding);
+    }
+
+    public void glBindFragDataLocation(int program, int colorNumber,
+                                       CharSequence name) {
+        GL30.glBindFragDataLocation(program, colorNumber, name);
+    }
+
+    public int glGenVertexArrays() {
+        return GL30.glGenVertexArrays();
+    }
+
+    public void glGenVertexArrays(IntBuffer arrays) {
+        GL30.glGenVertexArrays(arrays);
+    }
+
+    public void glDeleteVertexArrays(int array) {
+        GL30.glDeleteVertexArrays(array);
+    }
+
+    public void glDeleteVertexArrays(IntBuffer arrays) {
+        GL30.glDeleteVertexArrays(arrays);
+    }
+
+    public void glBindVertexArray(int array) {
+        GL30.glBindVertexArray(array);
+    }
+
+    public void glVertexAttribPointer(int index, int size, int type,
+                                      boolean normalized, int stride,
+                                      long offset) {
+        GL20.glVertexAttribPointer(index, size, type, normalized, stride,
+                offset);
+    }
+
+    public void glVertexAttribDivisor(int index, int divisor) {
+        GL33.glVertexAttribDivisor(index, divisor);
+    }
+
+    public void glVertexAttribFormat(int index, int size, int type,
+                                     boolean normalized,
+                                     int relativeOffset) {
+        GL43.glVertexAttribFormat(index, size, type, normalized,
+                relativeOffset);
+    }
+
+    public void glVertexAttribBinding(int index, int binding) {
+        GL43.glVertexAttribBinding(index, binding);
+    }
+
+    public void glBindVertexBuffer(int binding, int buffer, long offset,
+                                   int stride) {
+        GL43.glBindVertexBuffer(binding, buffer, offset, stride);
+    }
+
+    public void glVertexAttrib4fv(int index, FloatBuffer v) {
+        GL20.glVertexAttrib4fv(index, v);
+    }
+
+    public void glEnableVertexAttribArray(int index) {
+        GL20.glEnableVertexAttribArray(index);
+    }
+
+    public void glDisableVertexAttribArray(int index) {
+        GL20.glDisableVertexAttribArray(index);
+    }
+
+    public int glGenTextures() {
+        return GL11.glGenTextures();
+    }
+
+    public void glGenTextures(IntBuffer textures) {
+        GL11.glGenTextures(textures);
+    }
+
+    public void glDeleteTextures(int texture) {
+        GL11.glDeleteTextures(texture);
+    }
+
+    public void glDeleteTextures(IntBuffer textures) {
+        GL11.glDeleteTextures(textures);
+    }
+
+    public void glBindTexture(int target, int texture) {
+        GL11.glBindTexture(target, texture);
+    }
+
+    public void glTexImage2D(int target, int level, int internalFormat,
+                             int width, int height, int border, int format,
+                             int type, FloatBuffer pixels) {
+        GL11.glTexImage2D(target, level, internalFormat, width, height,
+                border, format, type, pixels);
+    }
+
+    public void glTexStorage2D(int target, int levels, int internalFormat,
+                               int width, int height) {
+        GL42.glTexStorage2D(target, levels, internalFormat, width, height);
+    }
+
+    public void glTexSubImage2D(int target, int level, int xoffset,
+                                int yoffset, int width, int height,
+                                int format, int type, FloatBuffer pixels) {
+        GL11.glTexSubImage2D(target, level, xoffset, yoffset, width, height,
+                format, type, pixels);
+    }
+
+    public int glGenFramebuffers() {
+        return GL30.glGenFramebuffers();
+    }
+
+    public void glGenFramebuffers(IntBuffer framebuffers) {
+        GL30.glGenFramebuffers(framebuffers);
+    }
+
+    public void glDeleteFramebuffers(int framebuffer) {
+        GL30.glDeleteFramebuffers(framebuffer);
+    }
+
+    public void glDeleteFramebuffers(IntBuffer framebuffers) {
+        GL30.glDeleteFramebuffers(framebuffers);
+    }
+
+    public void glBindFramebuffer(int target, int framebuffer) {
+        GL30.glBindFramebuffer(target, framebuffer);
+    }
+
+    public void glClearBufferfv(int buffer, int drawbuffer,
+                                FloatBuffer value) {
+        GL30.glClearBufferfv(buffer, drawbuffer, value);
+    }
+
+    public void glClearColor(float r, float g, float b, float a) {
+        GL11.glClearColor(r, g, b, a);
+    }
+
+    public void glClearDepth(double depth) {
+        GL11.glClearDepth(depth);
+    }
+
+    public void glClearStencil(int stencil) {
+        GL11.glClearStencil(stencil);
+    }
+
+    public void glClear(int mask) {
+        GL11.glClear(mask);
+    }
+
+    public void glPointSize(float size) {
+        GL11.glPointSize(size);
+    }
+
+    public void glDrawArrays(int mode, int first, int count) {
+        GL11.glDrawArrays(mode, first, count);
+    }
+
+    public void glDrawElements(int mode, int count, int type, long offset) {
+        GL11.glDrawElements(mode, count, type, offset);
+    }
+
+    public void glMultiDrawArrays(int mode, IntBuffer first,
+                                  IntBuffer count) {
+        GL14.glMultiDrawArrays(mode, first, count);
+    }
+
+    public void glMultiDrawElements(int mode, IntBuffer count, int type,
+                                    long[] offsets) {
+        int n = count.remaining();
+        if (pointers == null || pointers.capacity() < n) {
+            pointers = BufferUtils.createPointerBuffer(Math.max(n, 64));
+        }
+        pointers.clear();
+        for (int i = 0; i < n; i++) {
+            pointers.put(i, offsets[i]);
+        }
+        pointers.limit(n);
+        GL14.glMultiDrawElements(mode, count, type, pointers);
+    }
+
+    public void glDrawArraysInstanced(int mode, int first, int count,
+                                      int instances) {
+        GL31.glDrawArraysInstanced(mode, first, count, instances);
+    }
+
+    public void glMultiDrawArraysIndirect(int mode, long offset,
+                                          int drawCount, int stride) {
+        GL43.glMultiDrawArraysIndirect(mode, offset, drawCount, stride);
+    }
+
+    public void glMultiDrawElementsIndirect(int mode, int type, long offset,
+                                            int drawCount, int stride) {
+        GL43.glMultiDrawElementsIndirect(mode, type, offset, drawCount,
+                stride);
+    }
+
+    public void glDrawElementsInstanced(int mode, int count, int type,
+                                        long offset, int instances) {
+        GL31.glDrawElementsInstanced(mode, count, type, offset, instances);
+    }
+
+    public void glDrawElementsBaseVertex(int mode, int count, int type,
+                                         long offset, int baseVertex) {
+        GL32.glDrawElementsBaseVertex(mode, count, type, offset, baseVertex);
+    }
+
+    public void glDrawRangeElements(int mode, int start, int end, int count,
+                                    int type, long offset) {
+        GL12.glDrawRangeElements(mode, start, end, count, type, offset);
+    }
+
+    public void glDrawRangeElementsBaseVertex(int mode, int start, int end,
+                                              int count, int type,
+                                              long offset, int baseVertex) {
+        GL32.glDrawRangeElementsBaseVertex(mode, start, end, count, type,
+                offset, baseVertex);
+    }
+}
@@ -0,0 +1,21 @@
+// Flags describing how a buffer's data store is mapped into client
+// memory, and, for immutable storage, how it may be mapped.
+enum MapBit {
+    // the mapping may be read from
+    GL_MAP_READ_BIT,
+    // the mapping may be written to
+    GL_MAP_WRITE_BIT,
+    // the previous contents of the mapped range may be discarded
+    GL_MAP_INVALIDATE_RANGE_BIT,
+    // the previous contents of the whole buffer may be discarded
+    GL_MAP_INVALIDATE_BUFFER_BIT,
+    // writes are only made visible by glFlushMappedBufferRange
+    GL_MAP_FLUSH_EXPLICIT_BIT,
+    // don't wait for pending operations on the buffer before mapping
+    GL_MAP_UNSYNCHRONIZED_BIT,
+    // the buffer may be used for drawing while it is mapped
+    GL_MAP_PERSISTENT_BIT,
+    // writes to a persistent mapping are visible to the GPU without a
+    // flush or barrier
+    GL_MAP_COHERENT_BIT
+}
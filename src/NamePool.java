@@ -0,0 +1,132 @@
+import org.lwjgl.BufferUtils;
+
+import java.nio.IntBuffer;
+
+// A pool of names for one kind of OpenGL object.  Names are generated in
+// blocks, with a single driver call per block, and handed out one at a
+// time.  Names given back are either recycled, and handed out again
+// without involving the driver, or retired and deleted a block at a time.
+//
+// Recycling is only suitable for objects that carry no state that would
+// surprise their next user.  A buffer is fine, since its data store is
+// replaced when it is next specified with glBufferData, as long as it
+// has no immutable storage, isn't mapped and isn't read by a vertex
+// array; the context deletes other buffers outright.  A texture is not,
+// since its target and any immutable storage are fixed for its lifetime,
+// and neither is a vertex array or framebuffer, whose attribute and
+// attachment state would carry over.
+class NamePool {
+
+    // generates and deletes names of the pool's kind of object
+    interface Allocator {
+        // fill the remaining space in the buffer with new names
+        void gen(IntBuffer names);
+        // delete the names remaining in the buffer
+        void delete(IntBuffer names);
+    }
+
+    private Allocator allocator;
+    private int blockSize;
+    private boolean recycle;
+
+    // names ready to be handed out, used from the top down
+    private int[] free;
+    private int freeCount;
+    // names given back to be deleted
+    private int[] retired;
+    private int retiredCount;
+
+    // passes names to and from the allocator
+    private IntBuffer scratch;
+
+    // counters for tuning the block size
+    private long driverCalls;
+
+    NamePool(Allocator allocator, int blockSize, boolean recycle) {
+        assert blockSize > 0;
+        this.allocator = allocator;
+        this.blockSize = blockSize;
+        this.recycle = recycle;
+        free = new int[blockSize];
+        retired = new int[blockSize];
+        scratch = BufferUtils.createIntBuffer(blockSize);
+    }
+
+    // take a name from the pool, generating a new block of names if none
+    // are left
+    int acquire() {
+        if (freeCount == 0) {
+            refill();
+        }
+        return free[--freeCount];
+    }
+
+    // give a name back to the pool.  The object it names must already
+    // be deleted as far as the context is concerned.
+    void release(int name) {
+        if (recycle) {
+            if (freeCount == free.length) {
+                free = grow(free);
+            }
+            free[freeCount++] = name;
+            return;
+        }
+        retired[retiredCount++] = name;
+        if (retiredCount == retired.length) {
+            deleteRetired();
+        }
+    }
+
+    // Delete every name held by the pool, both retired and unused ones.
+    void trim() {
+        deleteRetired();
+        int i = 0;
+        while (i < freeCount) {
+            scratch.clear();
+            while (i < freeCount && scratch.hasRemaining()) {
+                scratch.put(free[i++]);
+            }
+            scratch.flip();
+            allocator.delete(scratch);
+            driverCalls++;
+        }
+        freeCount = 0;
+    }
+
+    // the number of names that can be handed out without a driver call
+    int available() {
+        return freeCount;
+    }
+
+    // the number of calls made to generate or delete names
+    long getDriverCalls() {
+        return driverCalls;
+    }
+
+    private void refill() {
+        scratch.clear();
+        allocator.gen(scratch);
+        driverCalls++;
+        // names are handed out from the top, so store them reversed to
+        // hand them out in the order they were generated
+        for (int i = blockSize - 1; i >= 0; i--) {
+            free[freeCount++] = scratch.get(i);
+        }
+    }
+
+    private void deleteRetired() {
+        if (retiredCount == 0) return;
+        scratch.clear();
+        scratch.put(retired, 0, retiredCount);
+        scratch.flip();
+        allocator.delete(scratch);
+        driverCalls++;
+        retiredCount = 0;
+    }
+
+    private static int[] grow(int[] a) {
+        int[] grown = new int[a.length * 2];
+        System.arraycopy(a, 0, grown, 0, a.length);
+        return grown;
+    }
+}
@@ -0,0 +1,83 @@
+// The OpenGL objects of one kind that exist in a context, indexed by name.
+// OpenGL names are small integers, handed out more or less sequentially
+// and reused once deleted, so the objects are kept in a dense array indexed
+// by name rather than in a hash map.  Lookups, insertions and removals
+// neither allocate nor box.
+class ObjectRegistry<T extends GLObject> {
+
+    private static final int INITIAL_CAPACITY = 64;
+    // the largest array the VM can allocate
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private Object[] objects;
+    // the number of objects held
+    private int size;
+
+    ObjectRegistry() {
+        objects = new Object[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    // the object with the given name, or null if there isn't one
+    @SuppressWarnings("unchecked")
+    T get(int name) {
+        if (name < 0 || name >= objects.length) return null;
+        return (T) objects[name];
+    }
+
+    boolean containsKey(int name) {
+        return get(name) != null;
+    }
+
+    // add an object, replacing any object of the same name
+    void put(T o) {
+        int name = o.getId();
+        assert name >= 0;
+        if (name >= objects.length) {
+            grow(name + 1);
+        }
+        if (objects[name] == null) size++;
+        objects[name] = o;
+    }
+
+    void remove(int name) {
+        if (name < 0 || name >= objects.length) return;
+        if (objects[name] != null) size--;
+        objects[name] = null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void grow(int minCapacity) {
+        Object[] grown = new Object[newCapacity(objects.length, minCapacity)];
+        System.arraycopy(objects, 0, grown, 0, objects.length);
+        objects = grown;
+    }
+
+    // Double the capacity, or more if that isn't enough, without
+    // overflowing.  Names too large for any array are rejected.
+    static int newCapacity(int capacity, int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Name " + (minCapacity - 1) +
+                    " is too large");
+        }
+        return (int) Math.min(MAX_CAPACITY,
+                Math.max(2L * capacity, minCapacity));
+    }
+
+    // the objects held in order of name, one per line
+    public String toString() {
+        if (size == 0) return "None\n";
+        String s = "";
+        for (Object o : objects) {
+            if (o != null) s = s.concat(o + "\n");
+        }
+        return s;
+    }
+}
@@ -1,19 +1,151 @@
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 public class Program extends GLObject {
 
     private HashMap<Integer, Shader> shaders;
-    private int activeAttributes;
+    // the active uniforms and attributes, found when the program is linked
+    private HashMap<String, UniformHandle> uniforms;
+    private UniformHandle[] uniformList;
+    private HashMap<String, Integer> attribLocations;
+    // the active uniform blocks by name, with the size in bytes of each
+    // and the binding point it reads from, indexed by block index
+    private HashMap<String, Integer> uniformBlocks;
+    private int[] blockSizes;
+    private int[] blockBindings;
+    // The last value set for each component of each uniform, as the raw
+    // bits of floats or as ints, indexed from UniformHandle.shadowOffset,
+    // and whether it is known.  No value is known when a program is
+    // linked: initializers and layout(binding = N) give uniforms values
+    // other than zero.
+    private int[] uniformValues;
+    private boolean[] uniformKnown;
     private boolean linked;
     private boolean deleted;
+    // completed once an asynchronous link has been checked, or null if no
+    // link is pending
+    CompletableFuture<Program> linking;
 
     // create a program object from an array of shader source code strings
     Program(int id) {
         super(id);
         shaders = new HashMap<Integer, Shader>();
+        uniforms = new HashMap<String, UniformHandle>();
+        uniformList = new UniformHandle[0];
+        uniformValues = new int[0];
+        uniformKnown = new boolean[0];
+        attribLocations = new HashMap<String, Integer>();
+        uniformBlocks = new HashMap<String, Integer>();
+        blockSizes = new int[0];
+        blockBindings = new int[0];
         linked = false;
     }
 
+    // the handle of the active uniform with the given name, or null if
+    // the program has no such uniform.  An array uniform may be named with
+    // or without the [0] suffix.
+    public UniformHandle getUniform(String name) {
+        return uniforms.get(name);
+    }
+
+    // the handles of all the active uniforms
+    public UniformHandle[] getUniforms() {
+        return uniformList.clone();
+    }
+
+    void addUniform(UniformHandle u, boolean array) {
+        uniforms.put(u.getName(), u);
+        if (array) {
+            uniforms.put(u.getName() + "[0]", u);
+        }
+        UniformHandle[] grown = new UniformHandle[uniformList.length + 1];
+        System.arraycopy(uniformList, 0, grown, 0, uniformList.length);
+        grown[uniformList.length] = u;
+        uniformList = grown;
+        u.shadowOffset = uniformValues.length;
+        int[] values = new int[uniformValues.length +
+                u.getComponents() * u.getSize()];
+        System.arraycopy(uniformValues, 0, values, 0, uniformValues.length);
+        boolean[] known = new boolean[values.length];
+        System.arraycopy(uniformKnown, 0, known, 0, uniformKnown.length);
+        uniformValues = values;
+        uniformKnown = known;
+    }
+
+    // Store a component of a uniform in the shadow.  Returns false if it
+    // was known to have the value already.
+    boolean updateUniform(int at, int value) {
+        if (uniformKnown[at] && uniformValues[at] == value) {
+            return false;
+        }
+        uniformValues[at] = value;
+        uniformKnown[at] = true;
+        return true;
+    }
+
+    // forget the values of every uniform, so that each is uploaded the
+    // next time it is set
+    void forgetUniformValues() {
+        Arrays.fill(uniformKnown, false);
+    }
+
+    // the location of the active attribute with the given name, or -1 if
+    // the program has no such attribute
+    int getAttribLocation(CharSequence name) {
+        Integer loc = attribLocations.get(name.toString());
+        return loc == null ? -1 : loc;
+    }
+
+    void addAttribute(String name, int location) {
+        attribLocations.put(name, location);
+    }
+
+    public int getActiveAttributes() {
+        return attribLocations.size();
+    }
+
+    // the index of the active uniform block with the given name, or -1 if
+    // the program has no such block
+    public int getUniformBlockIndex(CharSequence name) {
+        Integer index = uniformBlocks.get(name.toString());
+        return index == null ? -1 : index;
+    }
+
+    public int getUniformBlockCount() {
+        return blockSizes.length;
+    }
+
+    // the size in bytes of the buffer range a uniform block needs
+    public int getUniformBlockSize(int blockIndex) {
+        return blockSizes[blockIndex];
+    }
+
+    // the indexed uniform buffer binding point a block reads from
+    public int getUniformBlockBinding(int blockIndex) {
+        return blockBindings[blockIndex];
+    }
+
+    void setUniformBlockBinding(int blockIndex, int binding) {
+        blockBindings[blockIndex] = binding;
+    }
+
+    // add the next uniform block, reading from the binding point the
+    // link gave it
+    void addUniformBlock(String name, int size, int binding) {
+        int n = blockSizes.length;
+        uniformBlocks.put(name, n);
+        int[] sizes = new int[n + 1];
+        System.arraycopy(blockSizes, 0, sizes, 0, n);
+        sizes[n] = size;
+        blockSizes = sizes;
+        int[] bindings = new int[n + 1];
+        System.arraycopy(blockBindings, 0, bindings, 0, n);
+        bindings[n] = binding;
+        blockBindings = bindings;
+    }
+
     boolean isLinked() {
         return linked;
     }
@@ -26,6 +158,10 @@ public class Program extends GLObject {
         shaders.put(s.getId(), s);
     }
 
+    Collection<Shader> getShaders() {
+        return shaders.values();
+    }
+
     public String toString() {
         return "";
     }
@@ -34,10 +170,9 @@ public class Program extends GLObject {
         return deleted;
     }
 
+    // GLContext checks that every shader has been compiled before linking
     void setLinked(boolean linked) {
-        // verify every shader has been compiled
         for (Shader s : shaders.values()) {
-            assert s.isCompiled();
             s.setLinked();
         }
         this.linked = linked;
@@ -56,10 +191,7 @@ public class Program extends GLObject {
     }
 
     boolean hasAttribute(CharSequence attrib) {
-        for (Shader s : shaders.values()) {
-            if (s.hasAttribute(attrib.toString())) return true;
-        }
-        return false;
+        return attribLocations.containsKey(attrib.toString());
     }
         /*
         public Program(CharSequence[] vertexShaders,
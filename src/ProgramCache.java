@@ -0,0 +1,245 @@
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL41;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Keeps the binaries of linked programs in a directory, so that a program
+// built from the same shader sources can be loaded with glProgramBinary
+// on later runs instead of compiling and linking its shaders again,
+// which is most of the time it takes to start up with many programs.
+//
+// Binaries are filed under a hash of the shader types and sources and of
+// the driver's vendor, renderer and version strings.  A binary only works
+// with the driver that made it, so the directory also records the driver
+// it was filled by, and when that changes every binary in it is deleted.
+// When there is no binary, or the driver rejects it anyway, the program
+// is compiled and linked as usual and its binary is stored for next time.
+//
+// Failing to read or write the directory is never an error; the program
+// is simply compiled.  Needs OpenGL 4.1 or ARB_get_program_binary.
+public class ProgramCache {
+
+    private static final String BINARY_SUFFIX = ".bin";
+    private static final String DRIVER_FILE = "driver";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private GLContext context;
+    private File directory;
+    private String driver;
+
+    // programs loaded from a binary, compiled for lack of one, and
+    // compiled because the driver rejected the binary
+    private int hits;
+    private int misses;
+    private int rejections;
+    // the time spent on each, including reading and writing binaries
+    private long hitNanos;
+    private long missNanos;
+
+    public ProgramCache(GLContext c, File directory) {
+        context = c;
+        this.directory = directory;
+        driver = c.getDriverDescription();
+        directory.mkdirs();
+        if (!driver.equals(readDriver())) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    if (f.getName().endsWith(BINARY_SUFFIX)) f.delete();
+                }
+            }
+            writeDriver();
+        }
+    }
+
+    // Get a linked program made of shaders of the given types and
+    // sources, from its binary if there is one, or else by compiling and
+    // linking the shaders.
+    public Program load(ShaderType[] types, String[] sources) {
+        if (types.length != sources.length || types.length == 0) {
+            throw new IllegalArgumentException(types.length + " types, " +
+                    sources.length + " sources");
+        }
+        long start = System.nanoTime();
+        File file = new File(directory, key(types, sources) + BINARY_SUFFIX);
+        Program p = context.glCreateProgram();
+        if (file.isFile()) {
+            if (readBinary(p, file)) {
+                hits++;
+                hitNanos += System.nanoTime() - start;
+                return p;
+            }
+            rejections++;
+            file.delete();
+        }
+        Shader[] shaders = new Shader[types.length];
+        for (int i = 0; i < types.length; i++) {
+            shaders[i] = context.glCreateShader(types[i]);
+            context.glShaderSource(shaders[i], sources[i]);
+            context.glCompileShader(shaders[i]);
+            context.glAttachShader(p, shaders[i]);
+        }
+        context.glProgramParameteri(p,
+                GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, 1);
+        context.glLinkProgram(p);
+        for (Shader s : shaders) {
+            context.glDeleteShader(s);
+        }
+        writeBinary(p, file);
+        misses++;
+        missNanos += System.nanoTime() - start;
+        return p;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    // the binaries the driver refused, which are counted as misses too
+    public int getRejections() {
+        return rejections;
+    }
+
+    // the total time spent loading programs from binaries, which is the
+    // cost of a warm start
+    public long getHitNanos() {
+        return hitNanos;
+    }
+
+    // the total time spent compiling and linking programs, which is the
+    // cost of a cold start
+    public long getMissNanos() {
+        return missNanos;
+    }
+
+    public String toString() {
+        return "(hits=" + hits + " in " + millis(hitNanos) + "ms, misses=" +
+                misses + " in " + millis(missNanos) + "ms, rejections=" +
+                rejections + ")";
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    // the name of the binary: a hash of the driver and the shaders
+    private String key(ShaderType[] types, String[] sources) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        digest.update(driver.getBytes(UTF8));
+        for (int i = 0; i < types.length; i++) {
+            digest.update((byte) 0);
+            digest.update(types[i].name().getBytes(UTF8));
+            digest.update((byte) 0);
+            digest.update(sources[i].getBytes(UTF8));
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16));
+            key.append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    // A binary file holds the binary format followed by the binary.
+    // Returns whether the program was loaded from it.
+    private boolean readBinary(Program p, File file) {
+        int format;
+        byte[] bytes;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            format = in.readInt();
+            bytes = new byte[(int) file.length() - 4];
+            in.readFully(bytes);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            close(in);
+        }
+        ByteBuffer binary = BufferUtils.createByteBuffer(bytes.length);
+        binary.put(bytes).flip();
+        return context.glProgramBinary(p, format, binary);
+    }
+
+    // write to a temporary file first, so that a binary is never read
+    // half written
+    private void writeBinary(Program p, File file) {
+        int[] format = new int[1];
+        ByteBuffer binary = context.glGetProgramBinary(p, format);
+        if (binary.remaining() == 0) return;
+        byte[] bytes = new byte[binary.remaining()];
+        binary.get(bytes);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(temporary));
+            out.writeInt(format[0]);
+            out.write(bytes);
+            out.close();
+            out = null;
+            if (!temporary.renameTo(file)) temporary.delete();
+        } catch (IOException e) {
+            temporary.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    // the driver recorded in the directory, or null
+    private String readDriver() {
+        File file = new File(directory, DRIVER_FILE);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            return in.readUTF();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    private void writeDriver() {
+        File file = new File(directory, DRIVER_FILE);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(file));
+            out.writeUTF(driver);
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            file.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    private static void close(Closeable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (IOException e) {
+            // nothing was lost; reads are complete and writes are closed
+            // explicitly first
+        }
+    }
+}
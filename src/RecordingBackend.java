@@ -0,0 +1,883 @@
+import org.lwjgl.opengl.ARBParallelShaderCompile;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL41;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+// An in-memory backend that never touches a driver.  Object names are
+// handed out sequentially, shaders always compile and programs always
+// link.  Each call is counted and, while recording is enabled, appended
+// to a log in a readable form such as "glBindBuffer(34962, 1)", so that
+// the sequence of calls made by a GLContext can be inspected.
+//
+// With recording disabled the backend does no work beyond counting, which
+// makes it suitable for measuring the overhead of the GLContext itself.
+class RecordingBackend implements GLBackend {
+
+    private List<String> calls;
+    private boolean recording;
+    private long callCount;
+
+    // the last name handed out for each kind of object
+    private int lastBuffer;
+    private int lastTexture;
+    private int lastVertexArray;
+    private int lastFramebuffer;
+    private int lastShaderOrProgram;
+    private long lastSync;
+    // the number of upcoming waits on a sync object that will time out
+    private int syncTimeouts;
+
+    // the number of shaders attached to each program
+    private HashMap<Integer, Integer> attachedShaders;
+    // locations handed out, keyed by program and variable name
+    private HashMap<String, Integer> locations;
+    // the active variables every linked program reports, as name, type
+    // and size
+    private List<Object[]> activeUniforms;
+    private List<Object[]> activeAttribs;
+    private List<Object[]> activeUniformBlocks;
+    // values returned by glGetInteger and glGetString
+    private HashMap<Integer, Integer> integers;
+    private HashMap<Integer, String> strings;
+    // programs whose last link, or program binary, failed
+    private HashSet<Integer> unlinkedPrograms;
+    // shaders that fail to compile
+    private HashSet<Integer> failingShaders;
+    // shaders and programs whose compile or link is still running
+    private HashSet<Integer> incomplete;
+    private boolean parallelCompile;
+
+    // an error to be reported by the next call to glGetError
+    private int error;
+    // receives errors instead of glGetError, once installed
+    private DebugListener debugListener;
+
+    RecordingBackend() {
+        calls = new ArrayList<String>();
+        recording = true;
+        attachedShaders = new HashMap<Integer, Integer>();
+        locations = new HashMap<String, Integer>();
+        activeUniforms = new ArrayList<Object[]>();
+        activeAttribs = new ArrayList<Object[]>();
+        activeUniformBlocks = new ArrayList<Object[]>();
+        integers = new HashMap<Integer, Integer>();
+        integers.put(GL31.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT, 256);
+        integers.put(GL31.GL_MAX_UNIFORM_BUFFER_BINDINGS, 36);
+        strings = new HashMap<Integer, String>();
+        strings.put(GL11.GL_VENDOR, "Recording");
+        strings.put(GL11.GL_RENDERER, "RecordingBackend");
+        strings.put(GL11.GL_VERSION, "4.5");
+        unlinkedPrograms = new HashSet<Integer>();
+        failingShaders = new HashSet<Integer>();
+        incomplete = new HashSet<Integer>();
+        parallelCompile = true;
+    }
+
+    // whether to support parallel shader compilation
+    void setParallelCompile(boolean supported) {
+        parallelCompile = supported;
+    }
+
+    // have the shader or program report its compile or link as still
+    // running, or as finished
+    void setIncomplete(int shaderOrProgram, boolean running) {
+        if (running) incomplete.add(shaderOrProgram);
+        else incomplete.remove(shaderOrProgram);
+    }
+
+    // have the shader fail to compile
+    void failCompile(int shader) {
+        failingShaders.add(shader);
+    }
+
+    // Change a string reported by glGetString.  Program binaries hold the
+    // GL_VERSION they were made by, and are rejected by other versions, as
+    // real drivers reject binaries from other driver versions.
+    void setString(int name, String value) {
+        strings.put(name, value);
+    }
+
+    // have linked programs report an active uniform block with the given
+    // name and data size in bytes, reading from binding point 0
+    void addActiveUniformBlock(String name, int size) {
+        addActiveUniformBlock(name, size, 0);
+    }
+
+    // as above, reading from the given binding point, as a block declared
+    // with layout(binding = N) does
+    void addActiveUniformBlock(String name, int size, int binding) {
+        activeUniformBlocks.add(new Object[] {name, size, binding});
+    }
+
+    // have linked programs report an active uniform with the given name,
+    // GL type and number of elements
+    void addActiveUniform(String name, int type, int size) {
+        activeUniforms.add(new Object[] {name, type, size});
+    }
+
+    // as addActiveUniform, for attributes
+    void addActiveAttrib(String name, int type) {
+        activeAttribs.add(new Object[] {name, type, 1});
+    }
+
+    void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    // have the next n waits on sync objects time out, as if the GPU
+    // were still busy
+    void setSyncTimeouts(int n) {
+        syncTimeouts = n;
+    }
+
+    // the calls recorded so far
+    List<String> getCalls() {
+        return calls;
+    }
+
+    // the number of calls made, whether recorded or not
+    long getCallCount() {
+        return callCount;
+    }
+
+    void clear() {
+        calls.clear();
+        callCount = 0;
+    }
+
+    // Raise an error, as if by the last call made.  It is reported to the
+    // debug listener if one is installed, or else by the next call to
+    // glGetError.
+    void setError(int error) {
+        if (debugListener != null) {
+            debugListener.error(error, "error 0x" +
+                    Integer.toHexString(error));
+            return;
+        }
+        this.error = error;
+    }
+
+    private boolean record() {
+        callCount++;
+        return recording;
+    }
+
+    // the names remaining in the buffer, separated by spaces
+    private static String names(IntBuffer names) {
+        String s = "";
+        for (int i = names.position(); i < names.limit(); i++) {
+            s = s.concat((i > names.position() ? " " : "") + names.get(i));
+        }
+        return s;
+    }
+
+    private int location(int program, CharSequence name) {
+        String key = program + ":" + name;
+        Integer loc = locations.get(key);
+        if (loc == null) {
+            loc = locations.size();
+            locations.put(key, loc);
+        }
+        return loc;
+    }
+
+    public String glGetString(int name) {
+        callCount++;
+        return strings.get(name);
+    }
+
+    public int glGetInteger(int pname) {
+        callCount++;
+        Integer value = integers.get(pname);
+        return value == null ? 0 : value;
+    }
+
+    public int glGetError() {
+        callCount++;
+        int e = error;
+        error = 0;
+        return e;
+    }
+
+    public boolean glDebugMessageCallback(DebugListener listener) {
+        callCount++;
+        debugListener = listener;
+        return true;
+    }
+
+    public int glGenBuffers() {
+        int id = ++lastBuffer;
+        if (record()) calls.add("glGenBuffers() = " + id);
+        return id;
+    }
+
+    public void glGenBuffers(IntBuffer buffers) {
+        int n = buffers.remaining();
+        int first = lastBuffer + 1;
+        while (buffers.hasRemaining()) buffers.put(++lastBuffer);
+        buffers.position(buffers.position() - n);
+        if (record()) calls.add("glGenBuffers(" + n + ") = " + first +
+                ".." + lastBuffer);
+    }
+
+    public void glDeleteBuffers(int buffer) {
+        if (record()) calls.add("glDeleteBuffers(" + buffer + ")");
+    }
+
+    public void glDeleteBuffers(IntBuffer buffers) {
+        if (record()) calls.add("glDeleteBuffers(" + names(buffers) + ")");
+    }
+
+    public void glBindBuffer(int target, int buffer) {
+        if (record()) calls.add("glBindBuffer(" + target + ", " + buffer +
+                ")");
+    }
+
+    public void glBindBufferBase(int target, int index, int buffer) {
+        if (record()) calls.add("glBindBufferBase(" + target + ", " + index +
+                ", " + buffer + ")");
+    }
+
+    public void glBindBufferRange(int target, int index, int buffer,
+                                  long offset, long size) {
+        if (record()) calls.add("glBindBufferRange(" + target + ", " +
+                index + ", " + buffer + ", " + offset + ", " + size + ")");
+    }
+
+    public void glBufferData(int target, FloatBuffer data, int usage) {
+        if (record()) calls.add("glBufferData(" + target + ", " +
+                data.remaining() * 4 + ", " + usage + ")");
+    }
+
+    public void glBufferData(int target, IntBuffer data, int usage) {
+        if (record()) calls.add("glBufferData(" + target + ", " +
+                data.remaining() * 4 + ", " + usage + ")");
+    }
+
+    public void glBufferData(int target, ByteBuffer data, int usage) {
+        if (record()) calls.add("glBufferData(" + target + ", " +
+                data.remaining() + ", " + usage + ")");
+    }
+
+    public void glBufferData(int target, long size, int usage) {
+        if (record()) calls.add("glBufferData(" + target + ", " + size +
+                ", " + usage + ")");
+    }
+
+    public void glBufferSubData(int target, long offset, ByteBuffer data) {
+        if (record()) calls.add("glBufferSubData(" + target + ", " + offset +
+                ", " + data.remaining() + ")");
+    }
+
+    public void glBufferStorage(int target, long size, int flags) {
+        if (record()) calls.add("glBufferStorage(" + target + ", " + size +
+                ", " + flags + ")");
+    }
+
+    public void glCopyBufferSubData(int readTarget, int writeTarget,
+                                    long readOffset, long writeOffset,
+                                    long size) {
+        if (record()) calls.add("glCopyBufferSubData(" + readTarget + ", " +
+                writeTarget + ", " + readOffset + ", " + writeOffset + ", " +
+                size + ")");
+    }
+
+    public void glClearBufferSubData(int target, int internalFormat,
+                                     long offset, long size, int format,
+                                     int type, IntBuffer data) {
+        if (record()) calls.add("glClearBufferSubData(" + target + ", " +
+                offset + ", " + size + ", " + data.get(data.position()) +
+                ")");
+    }
+
+    // the mapping is backed by fresh memory, not by the buffer's data
+    public ByteBuffer glMapBufferRange(int target, long offset, long length,
+                                       int access) {
+        if (record()) calls.add("glMapBufferRange(" + target + ", " +
+                offset + ", " + length + ", " + access + ")");
+        return ByteBuffer.allocateDirect((int) length)
+                .order(ByteOrder.nativeOrder());
+    }
+
+    public void glFlushMappedBufferRange(int target, long offset,
+                                         long length) {
+        if (record()) calls.add("glFlushMappedBufferRange(" + target + ", " +
+                offset + ", " + length + ")");
+    }
+
+    public boolean glUnmapBuffer(int target) {
+        if (record()) calls.add("glUnmapBuffer(" + target + ")");
+        return true;
+    }
+
+    public long glFenceSync() {
+        long sync = ++lastSync;
+        if (record()) calls.add("glFenceSync() = " + sync);
+        return sync;
+    }
+
+    public int glClientWaitSync(long sync, int flags, long timeout) {
+        if (record()) calls.add("glClientWaitSync(" + sync + ", " +
+                timeout + ")");
+        if (syncTimeouts > 0) {
+            syncTimeouts--;
+            return GL32.GL_TIMEOUT_EXPIRED;
+        }
+        return GL32.GL_ALREADY_SIGNALED;
+    }
+
+    public void glDeleteSync(long sync) {
+        if (record()) calls.add("glDeleteSync(" + sync + ")");
+    }
+
+    public int glCreateShader(int type) {
+        int id = ++lastShaderOrProgram;
+        if (record()) calls.add("glCreateShader(" + type + ") = " + id);
+        return id;
+    }
+
+    public void glShaderSource(int shader, CharSequence source) {
+        if (record()) calls.add("glShaderSource(" + shader + ")");
+    }
+
+    public void glCompileShader(int shader) {
+        if (record()) calls.add("glCompileShader(" + shader + ")");
+    }
+
+    public int glGetShaderi(int shader, int pname) {
+        callCount++;
+        switch (pname) {
+            case GL20.GL_COMPILE_STATUS:
+                return failingShaders.contains(shader) ? 0 : 1;
+            case ARBParallelShaderCompile.GL_COMPLETION_STATUS_ARB:
+                return incomplete.contains(shader) ? 0 : 1;
+        }
+        return 0;
+    }
+
+    public boolean glMaxShaderCompilerThreads(int count) {
+        if (!parallelCompile) return false;
+        if (record()) calls.add("glMaxShaderCompilerThreads(" + count + ")");
+        return true;
+    }
+
+    public String glGetShaderInfoLog(int shader) {
+        callCount++;
+        return "";
+    }
+
+    public void glDeleteShader(int shader) {
+        if (record()) calls.add("glDeleteShader(" + shader + ")");
+    }
+
+    public int glCreateProgram() {
+        int id = ++lastShaderOrProgram;
+        attachedShaders.put(id, 0);
+        if (record()) calls.add("glCreateProgram() = " + id);
+        return id;
+    }
+
+    public void glAttachShader(int program, int shader) {
+        attachedShaders.put(program, attachedShaders.get(program) + 1);
+        if (record()) calls.add("glAttachShader(" + program + ", " + shader +
+                ")");
+    }
+
+    public void glLinkProgram(int program) {
+        if (record()) calls.add("glLinkProgram(" + program + ")");
+        unlinkedPrograms.remove(program);
+    }
+
+    public void glProgramParameteri(int program, int pname, int value) {
+        if (record()) calls.add("glProgramParameteri(" + program + ", " +
+                pname + ", " + value + ")");
+    }
+
+    public void glGetProgramBinary(int program, IntBuffer length,
+                                   IntBuffer format, ByteBuffer binary) {
+        callCount++;
+        byte[] bytes = binary().getBytes();
+        length.put(0, bytes.length);
+        format.put(0, 1);
+        binary.duplicate().put(bytes);
+    }
+
+    public void glProgramBinary(int program, int format, ByteBuffer binary) {
+        if (record()) calls.add("glProgramBinary(" + program + ", " +
+                format + ", " + binary.remaining() + ")");
+        byte[] bytes = new byte[binary.remaining()];
+        binary.duplicate().get(bytes);
+        if (format == 1 && new String(bytes).equals(binary())) {
+            unlinkedPrograms.remove(program);
+        } else {
+            unlinkedPrograms.add(program);
+        }
+    }
+
+    // the program binary the current driver version makes
+    private String binary() {
+        return "binary " + strings.get(GL11.GL_VERSION);
+    }
+
+    public int glGetProgrami(int program, int pname) {
+        callCount++;
+        switch (pname) {
+            case GL20.GL_LINK_STATUS:
+                return unlinkedPrograms.contains(program) ? 0 : 1;
+            case ARBParallelShaderCompile.GL_COMPLETION_STATUS_ARB:
+                return incomplete.contains(program) ? 0 : 1;
+            case GL41.GL_PROGRAM_BINARY_LENGTH:
+                return binary().length();
+            case GL20.GL_ATTACHED_SHADERS:
+                return attachedShaders.get(program);
+            case GL20.GL_ACTIVE_UNIFORMS:
+                return activeUniforms.size();
+            case GL20.GL_ACTIVE_ATTRIBUTES:
+                return activeAttribs.size();
+            case GL31.GL_ACTIVE_UNIFORM_BLOCKS:
+                return activeUniformBlocks.size();
+            default:
+                return 0;
+        }
+    }
+
+    public String glGetProgramInfoLog(int program) {
+        callCount++;
+        return "";
+    }
+
+    public void glUseProgram(int program) {
+        if (record()) calls.add("glUseProgram(" + program + ")");
+    }
+
+    public void glDeleteProgram(int program) {
+        if (record()) calls.add("glDeleteProgram(" + program + ")");
+    }
+
+    public int glGetUniformLocation(int program, CharSequence name) {
+        callCount++;
+        return location(program, name);
+    }
+
+    public int glGetAttribLocation(int program, CharSequence name) {
+        callCount++;
+        return location(program, name);
+    }
+
+    public void glUniform1f(int location, float x) {
+        if (record()) calls.add("glUniform1f(" + location + ", " + x + ")");
+    }
+
+    public void glUniform2f(int location, float x, float y) {
+        if (record()) calls.add("glUniform2f(" + location + ", " + x + ", " +
+                y + ")");
+    }
+
+    public void glUniform3f(int location, float x, float y, float z) {
+        if (record()) calls.add("glUniform3f(" + location + ", " + x + ", " +
+                y + ", " + z + ")");
+    }
+
+    public void glUniform4f(int location, float x, float y, float z,
+                            float w) {
+        if (record()) calls.add("glUniform4f(" + location + ", " + x + ", " +
+                y + ", " + z + ", " + w + ")");
+    }
+
+    public void glUniform1i(int location, int x) {
+        if (record()) calls.add("glUniform1i(" + location + ", " + x + ")");
+    }
+
+    public void glUniform2i(int location, int x, int y) {
+        if (record()) calls.add("glUniform2i(" + location + ", " + x + ", " +
+                y + ")");
+    }
+
+    public void glUniform3i(int location, int x, int y, int z) {
+        if (record()) calls.add("glUniform3i(" + location + ", " + x + ", " +
+                y + ", " + z + ")");
+    }
+
+    public void glUniform4i(int location, int x, int y, int z, int w) {
+        if (record()) calls.add("glUniform4i(" + location + ", " + x + ", " +
+                y + ", " + z + ", " + w + ")");
+    }
+
+    public void glUniform1ui(int location, int x) {
+        if (record()) calls.add("glUniform1ui(" + location + ", " + x + ")");
+    }
+
+    // vector and matrix uploads are logged with the number of values
+    public void glUniform1fv(int location, FloatBuffer values) {
+        if (record()) calls.add("glUniform1fv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniform2fv(int location, FloatBuffer values) {
+        if (record()) calls.add("glUniform2fv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniform3fv(int location, FloatBuffer values) {
+        if (record()) calls.add("glUniform3fv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniform4fv(int location, FloatBuffer values) {
+        if (record()) calls.add("glUniform4fv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniform1iv(int location, IntBuffer values) {
+        if (record()) calls.add("glUniform1iv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniform2iv(int location, IntBuffer values) {
+        if (record()) calls.add("glUniform2iv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniform3iv(int location, IntBuffer values) {
+        if (record()) calls.add("glUniform3iv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniform4iv(int location, IntBuffer values) {
+        if (record()) calls.add("glUniform4iv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniform1uiv(int location, IntBuffer values) {
+        if (record()) calls.add("glUniform1uiv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniformMatrix2fv(int location, boolean transpose,
+                                   FloatBuffer values) {
+        if (record()) calls.add("glUniformMatrix2fv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniformMatrix3fv(int location, boolean transpose,
+                                   FloatBuffer values) {
+        if (record()) calls.add("glUniformMatrix3fv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public void glUniformMatrix4fv(int location, boolean transpose,
+                                   FloatBuffer values) {
+        if (record()) calls.add("glUniformMatrix4fv(" + location + ", " +
+                values.remaining() + ")");
+    }
+
+    public String glGetActiveUniform(int program, int index, IntBuffer size,
+                                     IntBuffer type) {
+        callCount++;
+        return active(activeUniforms.get(index), size, type);
+    }
+
+    public String glGetActiveAttrib(int program, int index, IntBuffer size,
+                                    IntBuffer type) {
+        callCount++;
+        return active(activeAttribs.get(index), size, type);
+    }
+
+    public String glGetActiveUniformBlockName(int program, int index) {
+        callCount++;
+        return (String) activeUniformBlocks.get(index)[0];
+    }
+
+    public int glGetActiveUniformBlocki(int program, int index, int pname) {
+        callCount++;
+        Object[] block = activeUniformBlocks.get(index);
+        switch (pname) {
+            case GL31.GL_UNIFORM_BLOCK_DATA_SIZE:
+                return (Integer) block[1];
+            case GL31.GL_UNIFORM_BLOCK_BINDING:
+                return (Integer) block[2];
+            default:
+                return 0;
+        }
+    }
+
+    public void glUniformBlockBinding(int program, int index, int binding) {
+        if (record()) calls.add("glUniformBlockBinding(" + program + ", " +
+                index + ", " + binding + ")");
+    }
+
+    private static String active(Object[] variable, IntBuffer size,
+                                 IntBuffer type) {
+        type.put(type.position(), (Integer) variable[1]);
+        size.put(size.position(), (Integer) variable[2]);
+        return (String) variable[0];
+    }
+
+    public void glBindFragDataLocation(int program, int colorNumber,
+                                       CharSequence name) {
+        if (record()) calls.add("glBindFragDataLocation(" + program + ", " +
+                colorNumber + ", " + name + ")");
+    }
+
+    public int glGenVertexArrays() {
+        int id = ++lastVertexArray;
+        if (record()) calls.add("glGenVertexArrays() = " + id);
+        return id;
+    }
+
+    public void glGenVertexArrays(IntBuffer arrays) {
+        int n = arrays.remaining();
+        int first = lastVertexArray + 1;
+        while (arrays.hasRemaining()) arrays.put(++lastVertexArray);
+        arrays.position(arrays.position() - n);
+        if (record()) calls.add("glGenVertexArrays(" + n + ") = " + first +
+                ".." + lastVertexArray);
+    }
+
+    public void glDeleteVertexArrays(int array) {
+        if (record()) calls.add("glDeleteVertexArrays(" + array + ")");
+    }
+
+    public void glDeleteVertexArrays(IntBuffer arrays) {
+        if (record()) calls.add("glDeleteVertexArrays(" + names(arrays) +
+                ")");
+    }
+
+    public void glBindVertexArray(int array) {
+        if (record()) calls.add("glBindVertexArray(" + array + ")");
+    }
+
+    public void glVertexAttribPointer(int index, int size, int type,
+                                      boolean normalized, int stride,
+                                      long offset) {
+        if (record()) calls.add("glVertexAttribPointer(" + index + ", " +
+                size + ", " + type + ", " + normalized + ", " + stride +
+                ", " + offset + ")");
+    }
+
+    public void glVertexAttribDivisor(int index, int divisor) {
+        if (record()) calls.add("glVertexAttribDivisor(" + index + ", " +
+                divisor + ")");
+    }
+
+    public void glVertexAttribFormat(int index, int size, int type,
+                                     boolean normalized,
+                                     int relativeOffset) {
+        if (record()) calls.add("glVertexAttribFormat(" + index + ", " +
+                size + ", " + type + ", " + normalized + ", " +
+                relativeOffset + ")");
+    }
+
+    public void glVertexAttribBinding(int index, int binding) {
+        if (record()) calls.add("glVertexAttribBinding(" + index + ", " +
+                binding + ")");
+    }
+
+    public void glBindVertexBuffer(int binding, int buffer, long offset,
+                                   int stride) {
+        if (record()) calls.add("glBindVertexBuffer(" + binding + ", " +
+                buffer + ", " + offset + ", " + stride + ")");
+    }
+
+    public void glVertexAttrib4fv(int index, FloatBuffer v) {
+        if (record()) calls.add("glVertexAttrib4fv(" + index + ")");
+    }
+
+    public void glEnableVertexAttribArray(int index) {
+        if (record()) calls.add("glEnableVertexAttribArray(" + index + ")");
+    }
+
+    public void glDisableVertexAttribArray(int index) {
+        if (record()) calls.add("glDisableVertexAttribArray(" + index + ")");
+    }
+
+    public int glGenTextures() {
+        int id = ++lastTexture;
+        if (record()) calls.add("glGenTextures() = " + id);
+        return id;
+    }
+
+    public void glGenTextures(IntBuffer textures) {
+        int n = textures.remaining();
+        int first = lastTexture + 1;
+        while (textures.hasRemaining()) textures.put(++lastTexture);
+        textures.position(textures.position() - n);
+        if (record()) calls.add("glGenTextures(" + n + ") = " + first +
+                ".." + lastTexture);
+    }
+
+    public void glDeleteTextures(int texture) {
+        if (record()) calls.add("glDeleteTextures(" + texture + ")");
+    }
+
+    public void glDeleteTextures(IntBuffer textures) {
+        if (record()) calls.add("glDeleteTextures(" + names(textures) + ")");
+    }
+
+    public void glBindTexture(int target, int texture) {
+        if (record()) calls.add("glBindTexture(" + target + ", " + texture +
+                ")");
+    }
+
+    public void glTexImage2D(int target, int level, int internalFormat,
+                             int width, int height, int border, int format,
+                             int type, FloatBuffer pixels) {
+        if (record()) calls.add("glTexImage2D(" + target + ", " + level +
+                ", " + internalFormat + ", " + width + ", " + height + ")");
+    }
+
+    public void glTexStorage2D(int target, int levels, int internalFormat,
+                               int width, int height) {
+        if (record()) calls.add("glTexStorage2D(" + target + ", " + levels +
+                ", " + internalFormat + ", " + width + ", " + height + ")");
+    }
+
+    public void glTexSubImage2D(int target, int level, int xoffset,
+                                int yoffset, int width, int height,
+                                int format, int type, FloatBuffer pixels) {
+        if (record()) calls.add("glTexSubImage2D(" + target + ", " + level +
+                ", " + xoffset + ", " + yoffset + ", " + width + ", " +
+                height + ")");
+    }
+
+    public int glGenFramebuffers() {
+        int id = ++lastFramebuffer;
+        if (record()) calls.add("glGenFramebuffers() = " + id);
+        return id;
+    }
+
+    public void glGenFramebuffers(IntBuffer framebuffers) {
+        int n = framebuffers.remaining();
+        int first = lastFramebuffer + 1;
+        while (framebuffers.hasRemaining()) framebuffers.put(++lastFramebuffer);
+        framebuffers.position(framebuffers.position() - n);
+        if (record()) calls.add("glGenFramebuffers(" + n + ") = " + first +
+                ".." + lastFramebuffer);
+    }
+
+    public void glDeleteFramebuffers(int framebuffer) {
+        if (record()) calls.add("glDeleteFramebuffers(" + framebuffer + ")");
+    }
+
+    public void glDeleteFramebuffers(IntBuffer framebuffers) {
+        if (record()) calls.add("glDeleteFramebuffers(" +
+                names(framebuffers) + ")");
+    }
+
+    public void glBindFramebuffer(int target, int framebuffer) {
+        if (record()) calls.add("glBindFramebuffer(" + target + ", " +
+                framebuffer + ")");
+    }
+
+    public void glClearBufferfv(int buffer, int drawbuffer,
+                                FloatBuffer value) {
+        if (record()) calls.add("glClearBufferfv(" + buffer + ", " +
+                drawbuffer + ")");
+    }
+
+    public void glClearColor(float r, float g, float b, float a) {
+        if (record()) calls.add("glClearColor(" + r + ", " + g + ", " + b +
+                ", " + a + ")");
+    }
+
+    public void glClearDepth(double depth) {
+        if (record()) calls.add("glClearDepth(" + depth + ")");
+    }
+
+    public void glClearStencil(int stencil) {
+        if (record()) calls.add("glClearStencil(" + stencil + ")");
+    }
+
+    public void glClear(int mask) {
+        if (record()) calls.add("glClear(" + mask + ")");
+    }
+
+    public void glPointSize(float size) {
+        if (record()) calls.add("glPointSize(" + size + ")");
+    }
+
+    public void glDrawArrays(int mode, int first, int count) {
+        if (record()) calls.add("glDrawArrays(" + mode + ", " + first + ", " +
+                count + ")");
+    }
+
+    public void glDrawElements(int mode, int count, int type, long offset) {
+        if (record()) calls.add("glDrawElements(" + mode + ", " + count +
+                ", " + type + ", " + offset + ")");
+    }
+
+    public void glMultiDrawArrays(int mode, IntBuffer first,
+                                  IntBuffer count) {
+        if (record()) calls.add("glMultiDrawArrays(" + mode + ", [" +
+                names(first) + "], [" + names(count) + "])");
+    }
+
+    public void glMultiDrawElements(int mode, IntBuffer count, int type,
+                                    long[] offsets) {
+        if (!record()) return;
+        String o = "";
+        for (int i = 0; i < count.remaining(); i++) {
+            o = o.concat((i > 0 ? " " : "") + offsets[i]);
+        }
+        calls.add("glMultiDrawElements(" + mode + ", [" + names(count) +
+                "], " + type + ", [" + o + "])");
+    }
+
+    public void glDrawArraysInstanced(int mode, int first, int count,
+                                      int instances) {
+        if (record()) calls.add("glDrawArraysInstanced(" + mode + ", " +
+                first + ", " + count + ", " + instances + ")");
+    }
+
+    public void glMultiDrawArraysIndirect(int mode, long offset,
+                                          int drawCount, int stride) {
+        if (record()) calls.add("glMultiDrawArraysIndirect(" + mode + ", " +
+                offset + ", " + drawCount + ", " + stride + ")");
+    }
+
+    public void glMultiDrawElementsIndirect(int mode, int type, long offset,
+                                            int drawCount, int stride) {
+        if (record()) calls.add("glMultiDrawElementsIndirect(" + mode +
+                ", " + type + ", " + offset + ", " + drawCount + ", " +
+                stride + ")");
+    }
+
+    public void glDrawElementsInstanced(int mode, int count, int type,
+                                        long offset, int instances) {
+        if (record()) calls.add("glDrawElementsInstanced(" + mode + ", " +
+                count + ", " + type + ", " + offset + ", " + instances + ")");
+    }
+
+    public void glDrawElementsBaseVertex(int mode, int count, int type,
+                                         long offset, int baseVertex) {
+        if (record()) calls.add("glDrawElementsBaseVertex(" + mode + ", " +
+                count + ", " + type + ", " + offset + ", " + baseVertex +
+                ")");
+    }
+
+    public void glDrawRangeElements(int mode, int start, int end, int count,
+                                    int type, long offset) {
+        if (record()) calls.add("glDrawRangeElements(" + mode + ", " +
+                start + ", " + end + ", " + count + ", " + type + ", " +
+                offset + ")");
+    }
+
+    public void glDrawRangeElementsBaseVertex(int mode, int start, int end,
+                                              int count, int type,
+                                              long offset, int baseVertex) {
+        if (record()) calls.add("glDrawRangeElementsBaseVertex(" + mode +
+                ", " + start + ", " + end + ", " + count + ", " + type +
+                ", " + offset + ", " + baseVertex + ")");
+    }
+}
@@ -0,0 +1,247 @@
+// Collects the draws of a frame and issues them in an order that needs
+// fewer state changes than the order they were submitted in.
+//
+// Each draw is submitted with the state it needs and is given a 64 bit
+// sort key, packed from the most significant bits down as:
+//
+//   pass            4 bits   render passes, in order
+//   program        12 bits
+//   texture        16 bits
+//   vertex array   12 bits
+//   depth          20 bits   nearest first
+//
+// so that sorting by key groups draws by program, then by texture, then
+// by vertex array within each pass.  Objects are packed by name, and
+// names too large for their field share a key value with smaller ones,
+// which only costs some grouping.  Draws with the same state are ordered
+// front to back, which lets early depth testing reject hidden fragments.
+//
+// flush() sorts the keys with a radix sort, which with the queue's
+// scratch arrays in place allocates nothing, and issues the draws through
+// the context, changing the program, texture and vertex array only where
+// they differ from the draw before.
+public class RenderQueue {
+
+    public static final int MAX_PASS = 15;
+
+    private static final int PASS_SHIFT = 60;
+    private static final int PROGRAM_SHIFT = 48;
+    private static final int TEXTURE_SHIFT = 32;
+    private static final int VERTEX_ARRAY_SHIFT = 20;
+
+    private GLContext context;
+    private int count;
+    // the sort key and the index of the payload of each draw, and the
+    // same again as scratch space for sorting
+    private long[] keys;
+    private int[] indices;
+    private long[] sortedKeys;
+    private int[] sortedIndices;
+    // the counts of each digit value in a radix sort pass
+    private int[] digits;
+
+    // the payload of each draw, indexed in submission order
+    private Program[] programs;
+    private Texture[] textures;
+    private VertexArray[] vertexArrays;
+    private DrawMode[] modes;
+    private int[] counts;
+    private GLType[] types;
+    private int[] offsets;
+
+    // state changes counted by the last flush: had the draws been issued
+    // in the order submitted, and as they were issued
+    private int unsortedStateChanges;
+    private int stateChanges;
+
+    public RenderQueue(GLContext c) {
+        context = c;
+        digits = new int[256];
+        grow(64);
+    }
+
+    // Add an indexed draw of count elements of the given type, at offset
+    // into the element array buffer of the vertex array.  The texture is
+    // bound to its target, or to GL_TEXTURE_2D if it has never been bound,
+    // and may be null for draws that don't use one.  depth is the view
+    // space distance to the object, or anything ordered the same way.
+    public void submit(int pass, Program program, Texture texture,
+                       VertexArray vertexArray, float depth, DrawMode mode,
+                       int count, GLType type, int offset) {
+        if (pass < 0 || pass > MAX_PASS) {
+            throw new IllegalArgumentException("pass " + pass);
+        }
+        if (this.count == keys.length) {
+            grow(this.count * 2);
+        }
+        int i = this.count++;
+        keys[i] = key(pass, program, texture, vertexArray, depth);
+        indices[i] = i;
+        programs[i] = program;
+        textures[i] = texture;
+        vertexArrays[i] = vertexArray;
+        modes[i] = mode;
+        counts[i] = count;
+        types[i] = type;
+        offsets[i] = offset;
+    }
+
+    // Sort the draws submitted since the last flush and issue them.
+    // Returns the number of draws issued.
+    public int flush() {
+        int n = count;
+        unsortedStateChanges = 0;
+        for (int i = 0; i < n; i++) {
+            unsortedStateChanges += changes(i > 0 ? i - 1 : -1, i);
+        }
+        sort(n);
+        stateChanges = 0;
+        int previous = -1;
+        TextureTarget textureTarget = TextureTarget.GL_TEXTURE_2D;
+        for (int k = 0; k < n; k++) {
+            int i = indices[k];
+            stateChanges += changes(previous, i);
+            Program p = programs[i];
+            if (p != context.getProgram()) {
+                context.glUseProgram(p);
+            }
+            Texture t = textures[i];
+            if (t != null && t.getTarget() != null) {
+                textureTarget = t.getTarget();
+            }
+            context.replaceTexture(textureTarget, t);
+            context.replaceVertexArray(vertexArrays[i]);
+            context.glDrawElements(modes[i], counts[i], types[i],
+                    offsets[i]);
+            previous = i;
+        }
+        clear();
+        return n;
+    }
+
+    // forget the draws submitted since the last flush, without issuing
+    // them
+    public void clear() {
+        for (int i = 0; i < count; i++) {
+            programs[i] = null;
+            textures[i] = null;
+            vertexArrays[i] = null;
+        }
+        count = 0;
+    }
+
+    // the number of draws waiting to be flushed
+    public int size() {
+        return count;
+    }
+
+    // the program, texture and vertex array changes the last flush would
+    // have made in the order the draws were submitted
+    public int getUnsortedStateChanges() {
+        return unsortedStateChanges;
+    }
+
+    // the program, texture and vertex array changes the last flush made
+    public int getStateChanges() {
+        return stateChanges;
+    }
+
+    public String toString() {
+        return "(draws=" + count + ", stateChanges=" + stateChanges +
+                ", unsortedStateChanges=" + unsortedStateChanges + ")";
+    }
+
+    static long key(int pass, Program program, Texture texture,
+                    VertexArray vertexArray, float depth) {
+        long key = (long) pass << PASS_SHIFT;
+        key |= (long) (program.getId() & 0xfff) << PROGRAM_SHIFT;
+        if (texture != null) {
+            key |= (long) (texture.getId() & 0xffff) << TEXTURE_SHIFT;
+        }
+        key |= (long) (vertexArray.getId() & 0xfff) << VERTEX_ARRAY_SHIFT;
+        // the bits of a non-negative float order the same as the float,
+        // so the top 20 of its 31 bits order depths closely enough
+        if (depth > 0) {
+            key |= Float.floatToIntBits(depth) >>> 11;
+        }
+        return key;
+    }
+
+    // the number of the program, texture and vertex array that differ
+    // between draws a and b, where a is -1 before the first draw
+    private int changes(int a, int b) {
+        if (a < 0) return 3;
+        int n = 0;
+        if (programs[a] != programs[b]) n++;
+        if (textures[a] != textures[b]) n++;
+        if (vertexArrays[a] != vertexArrays[b]) n++;
+        return n;
+    }
+
+    // A least significant digit first radix sort of the first n keys,
+    // carrying the indices along, a byte at a time.  Bytes that are the
+    // same in every key are skipped.  It is stable, so draws with equal
+    // keys keep the order they were submitted in.
+    private void sort(int n) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            for (int d = 0; d < 256; d++) {
+                digits[d] = 0;
+            }
+            for (int i = 0; i < n; i++) {
+                digits[(int) (keys[i] >>> shift) & 0xff]++;
+            }
+            if (n == 0 || digits[(int) (keys[0] >>> shift) & 0xff] == n) {
+                continue;
+            }
+            int total = 0;
+            for (int d = 0; d < 256; d++) {
+                int c = digits[d];
+                digits[d] = total;
+                total += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int at = digits[(int) (keys[i] >>> shift) & 0xff]++;
+                sortedKeys[at] = keys[i];
+                sortedIndices[at] = indices[i];
+            }
+            long[] k = keys;
+            keys = sortedKeys;
+            sortedKeys = k;
+            int[] ix = indices;
+            indices = sortedIndices;
+            sortedIndices = ix;
+        }
+    }
+
+    private void grow(int capacity) {
+        keys = grow(keys, capacity);
+        indices = grow(indices, capacity);
+        sortedKeys = new long[capacity];
+        sortedIndices = new int[capacity];
+        programs = (Program[]) grow(programs, new Program[capacity]);
+        textures = (Texture[]) grow(textures, new Texture[capacity]);
+        vertexArrays = (VertexArray[]) grow(vertexArrays,
+                new VertexArray[capacity]);
+        modes = (DrawMode[]) grow(modes, new DrawMode[capacity]);
+        counts = grow(counts, capacity);
+        types = (GLType[]) grow(types, new GLType[capacity]);
+        offsets = grow(offsets, capacity);
+    }
+
+    private static long[] grow(long[] a, int capacity) {
+        long[] grown = new long[capacity];
+        if (a != null) System.arraycopy(a, 0, grown, 0, a.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] a, int capacity) {
+        int[] grown = new int[capacity];
+        if (a != null) System.arraycopy(a, 0, grown, 0, a.length);
+        return grown;
+    }
+
+    private static Object[] grow(Object[] a, Object[] grown) {
+        if (a != null) System.arraycopy(a, 0, grown, 0, a.length);
+        return grown;
+    }
+}
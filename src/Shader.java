@@ -1,4 +1,5 @@
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 public class Shader extends GLObject {
 
@@ -15,6 +16,10 @@ public class Shader extends GLObject {
 
     private boolean compiled;
 
+    // completed once an asynchronous compile has been checked, or null
+    // if no compile is pending
+    CompletableFuture<Shader> compiling;
+
     Shader(ShaderType s, int id) {
         super(id);
         source = null;
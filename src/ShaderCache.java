@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+// Hands out compiled shaders by source, so that programs built from the
+// same shader source share one shader object, compiled once, instead of
+// each creating and compiling their own.
+//
+// Variants of a source are made by giving a set of defines, each a name
+// or a name and value, which are inserted as #define lines after the
+// #version line.  #include "name" lines are replaced by the source
+// registered under that name with addInclude, and each include is only
+// expanded once per shader.  Shaders are looked up by their final,
+// expanded source, so two define sets that produce the same source share
+// a shader.
+//
+// A shader handed out may be attached to any number of programs.  The
+// cache owns its shaders; delete them with clear() once the programs
+// using them are linked.
+public class ShaderCache {
+
+    private GLContext context;
+    // the compiled shaders, keyed by type and expanded source
+    private HashMap<String, Shader> shaders;
+    private HashMap<String, String> includes;
+
+    private int hits;
+    private int misses;
+    private long compileNanos;
+
+    public ShaderCache(GLContext c) {
+        context = c;
+        shaders = new HashMap<String, Shader>();
+        includes = new HashMap<String, String>();
+    }
+
+    // make source available to #include "name"
+    public void addInclude(String name, String source) {
+        includes.put(name, source);
+    }
+
+    // Get a compiled shader of the given type and source, compiling it
+    // only if the cache doesn't have one already.
+    public Shader get(ShaderType type, String source) {
+        return get(type, source, null);
+    }
+
+    // as get(type, source), for the variant of the source with the given
+    // defines, such as "SKINNED" or "MAX_LIGHTS 4"; defines may be null
+    public Shader get(ShaderType type, String source, String[] defines) {
+        String expanded = expand(source, defines);
+        String key = type.name() + '\n' + expanded;
+        Shader s = shaders.get(key);
+        if (s != null) {
+            hits++;
+            return s;
+        }
+        misses++;
+        long start = System.nanoTime();
+        s = context.glCreateShader(type);
+        context.glShaderSource(s, expanded);
+        context.glCompileShader(s);
+        compileNanos += System.nanoTime() - start;
+        shaders.put(key, s);
+        return s;
+    }
+
+    // Delete every cached shader.  Each must have been linked into a
+    // program.
+    public void clear() {
+        for (Shader s : shaders.values()) {
+            context.glDeleteShader(s);
+        }
+        shaders.clear();
+    }
+
+    // the number of shaders in the cache
+    public int size() {
+        return shaders.size();
+    }
+
+    // requests served by a shader already compiled
+    public int getHits() {
+        return hits;
+    }
+
+    // requests that had to compile a shader
+    public int getMisses() {
+        return misses;
+    }
+
+    // the total time spent compiling shaders
+    public long getCompileNanos() {
+        return compileNanos;
+    }
+
+    // an estimate of the compile time saved by hits, at the average time
+    // each miss took
+    public long getSavedNanos() {
+        return misses == 0 ? 0 : compileNanos / misses * hits;
+    }
+
+    public String toString() {
+        return "(shaders=" + shaders.size() + ", hits=" + hits +
+                ", misses=" + misses + ", compileMs=" +
+                compileNanos / 1000000 + ", savedMs=" +
+                getSavedNanos() / 1000000 + ")";
+    }
+
+    // the source with its includes expanded and the defines inserted
+    String expand(String source, String[] defines) {
+        StringBuilder out = new StringBuilder(source.length());
+        List<String> lines = lines(source);
+        // the defines go after #version, which must come before anything
+        // but comments and blank lines
+        int first = versionLine(lines) + 1;
+        for (int i = 0; i < first; i++) {
+            out.append(lines.get(i)).append('\n');
+        }
+        if (defines != null) {
+            for (String d : defines) {
+                out.append("#define ").append(d).append('\n');
+            }
+        }
+        HashSet<String> included = new HashSet<String>();
+        for (int i = first; i < lines.size(); i++) {
+            include(lines.get(i), out, included);
+        }
+        return out.toString();
+    }
+
+    // append the line, or the source it includes
+    private void include(String line, StringBuilder out,
+                         HashSet<String> included) {
+        String trimmed = line.trim();
+        if (!trimmed.startsWith("#include")) {
+            out.append(line).append('\n');
+            return;
+        }
+        int open = trimmed.indexOf('"');
+        int close = trimmed.lastIndexOf('"');
+        if (open < 0 || close <= open) {
+            throw new IllegalArgumentException("Bad include: " + line);
+        }
+        String name = trimmed.substring(open + 1, close);
+        String source = includes.get(name);
+        if (source == null) {
+            throw new IllegalArgumentException("Unknown include \"" + name +
+                    "\"");
+        }
+        if (!included.add(name)) return;
+        for (String l : lines(source)) {
+            include(l, out, included);
+        }
+    }
+
+    // the index of the #version line, or -1 if anything other than
+    // comments and blank lines comes first
+    private static int versionLine(List<String> lines) {
+        boolean inComment = false;
+        for (int i = 0; i < lines.size(); i++) {
+            String t = lines.get(i).trim();
+            while (true) {
+                if (inComment) {
+                    int end = t.indexOf("*/");
+                    if (end < 0) break;
+                    t = t.substring(end + 2).trim();
+                    inComment = false;
+                } else if (t.startsWith("/*")) {
+                    t = t.substring(2);
+                    inComment = true;
+                } else {
+                    break;
+                }
+            }
+            if (inComment || t.isEmpty() || t.startsWith("//")) continue;
+            return t.startsWith("#version") ? i : -1;
+        }
+        return -1;
+    }
+
+    private static List<String> lines(String source) {
+        List<String> lines = new ArrayList<String>();
+        int start = 0;
+        while (start < source.length()) {
+            int end = source.indexOf('\n', start);
+            if (end < 0) end = source.length();
+            lines.add(source.substring(start, end));
+            start = end + 1;
+        }
+        return lines;
+    }
+}
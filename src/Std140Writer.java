@@ -0,0 +1,167 @@
+import java.nio.ByteBuffer;
+
+// Writes uniform block data into a buffer following the std140 layout
+// rules, so that it can be read by a block declared with
+// layout(std140).  Members are written in the order they are declared
+// in the block, and the writer inserts the padding std140 requires:
+//
+//   float, int, bool       4 bytes, aligned to 4
+//   vec2                   8 bytes, aligned to 8
+//   vec3, vec4             12 or 16 bytes, aligned to 16
+//   mat3, mat4             3 or 4 columns, each padded to a vec4
+//   arrays                 each element padded to a multiple of 16
+//   structs                aligned to 16, and padded to 16 at the end
+//
+// Values are written with absolute puts, leaving the position and limit
+// of the buffer alone, and in the buffer's byte order, which should be
+// the native order.  Nothing is allocated, so one writer can be kept
+// and restarted with start() for each block written.
+public class Std140Writer {
+
+    private ByteBuffer buffer;
+    // where the block starts in the buffer
+    private int base;
+    // the offset of the next member, from the start of the block
+    private int offset;
+
+    // Start writing a block at the given position of the buffer.  The
+    // position should be a multiple of 16 from wherever the block will be
+    // bound, which holds for the offsets glBindBufferRange accepts.
+    public Std140Writer start(ByteBuffer buffer, int base) {
+        this.buffer = buffer;
+        this.base = base;
+        offset = 0;
+        return this;
+    }
+
+    public Std140Writer putFloat(float x) {
+        align(4);
+        buffer.putFloat(base + offset, x);
+        offset += 4;
+        return this;
+    }
+
+    // for int, uint and bool members; a bool is 0 or 1
+    public Std140Writer putInt(int x) {
+        align(4);
+        buffer.putInt(base + offset, x);
+        offset += 4;
+        return this;
+    }
+
+    public Std140Writer putVec2(float x, float y) {
+        align(8);
+        put(x, y);
+        return this;
+    }
+
+    // A vec3 takes 12 bytes; a float or int declared after it fills the
+    // remaining 4 bytes of the 16 it is aligned to.
+    public Std140Writer putVec3(float x, float y, float z) {
+        align(16);
+        put(x, y);
+        put(z);
+        return this;
+    }
+
+    public Std140Writer putVec4(float x, float y, float z, float w) {
+        align(16);
+        put(x, y);
+        put(z, w);
+        return this;
+    }
+
+    // a column-major 3x3 matrix, from 9 floats
+    public Std140Writer putMat3(float[] m) {
+        return putColumns(m, 3, 3);
+    }
+
+    // a column-major 4x4 matrix, from 16 floats
+    public Std140Writer putMat4(float[] m) {
+        return putColumns(m, 4, 4);
+    }
+
+    // a float[] member, one float per 16 bytes
+    public Std140Writer putFloatArray(float[] values) {
+        align(16);
+        for (float x : values) {
+            buffer.putFloat(base + offset, x);
+            offset += 16;
+        }
+        return this;
+    }
+
+    // an int[] member, one int per 16 bytes
+    public Std140Writer putIntArray(int[] values) {
+        align(16);
+        for (int x : values) {
+            buffer.putInt(base + offset, x);
+            offset += 16;
+        }
+        return this;
+    }
+
+    // a vec4[] member, from 4 floats per element
+    public Std140Writer putVec4Array(float[] values) {
+        return putColumns(values, values.length / 4, 4);
+    }
+
+    // a mat4[] member, from 16 floats per element
+    public Std140Writer putMat4Array(float[] values) {
+        return putColumns(values, values.length / 4, 4);
+    }
+
+    // Start a struct member, or an element of a struct array.  Write its
+    // members and then call endStruct().
+    public Std140Writer beginStruct() {
+        align(16);
+        return this;
+    }
+
+    public Std140Writer endStruct() {
+        align(16);
+        return this;
+    }
+
+    // skip ahead to the next multiple of alignment from the block start
+    public Std140Writer align(int alignment) {
+        offset = (offset + alignment - 1) / alignment * alignment;
+        return this;
+    }
+
+    // the offset of the next member from the start of the block
+    public int getOffset() {
+        return offset;
+    }
+
+    // the bytes written so far, rounded up to a multiple of 16, which is
+    // the most a block's data size is padded to
+    public int getSize() {
+        return (offset + 15) & -16;
+    }
+
+    // write count columns of rows floats from m, each padded to a vec4
+    private Std140Writer putColumns(float[] m, int count, int rows) {
+        align(16);
+        int i = 0;
+        for (int column = 0; column < count; column++) {
+            int at = base + offset;
+            for (int row = 0; row < rows; row++) {
+                buffer.putFloat(at + row * 4, m[i++]);
+            }
+            offset += 16;
+        }
+        return this;
+    }
+
+    private void put(float x) {
+        buffer.putFloat(base + offset, x);
+        offset += 4;
+    }
+
+    private void put(float x, float y) {
+        buffer.putFloat(base + offset, x);
+        buffer.putFloat(base + offset + 4, y);
+        offset += 8;
+    }
+}
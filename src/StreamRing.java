@@ -0,0 +1,152 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// A buffer for streaming data to the GPU every frame, such as dynamic
+// vertices, written directly into GPU-visible memory.
+//
+// The buffer has immutable storage divided into sections, by default
+// three, and is mapped once, persistently and coherently, for the life of
+// the ring.  Each frame the application calls begin() to get the next
+// section, writes into it, draws from it at getOffset(), and then calls
+// end(), which places a fence after the frame's commands.  A section is
+// only handed out again once the fence placed after its last use has been
+// signaled, so the CPU never writes data the GPU is still reading, and
+// with three sections the CPU can run up to two frames ahead before it
+// has to wait.
+//
+// Needs OpenGL 4.4 or ARB_buffer_storage.
+public class StreamRing {
+
+    // Sections start on multiples of this, which satisfies the offset
+    // alignment required to bind a section as a uniform buffer.
+    public static final int ALIGNMENT = 256;
+
+    // how long each wait on a fence lasts before trying again
+    private static final long WAIT_NANOS = 1000000000L;
+
+    private static final MapBit[] STORAGE = {
+            MapBit.GL_MAP_WRITE_BIT,
+            MapBit.GL_MAP_PERSISTENT_BIT,
+            MapBit.GL_MAP_COHERENT_BIT
+    };
+
+    private GLContext context;
+    private Buffer buffer;
+    private int sectionSize;
+    // a view of each section of the mapping
+    private ByteBuffer[] sections;
+    // the fence placed after the last use of each section, or 0
+    private long[] fences;
+    // the section handed out by begin(), or that will be next
+    private int current;
+    private boolean writing;
+    // the number of times begin() had to wait for the GPU
+    private long stalls;
+
+    public StreamRing(GLContext c, int sectionSize) {
+        this(c, sectionSize, 3);
+    }
+
+    // sectionSize - the bytes that can be written each frame, rounded up
+    //               to a multiple of ALIGNMENT
+    // sections - the number of sections, at least 2
+    public StreamRing(GLContext c, int sectionSize, int sections) {
+        if (sectionSize <= 0 || sections < 2) {
+            throw new IllegalArgumentException("sectionSize " + sectionSize +
+                    ", sections " + sections);
+        }
+        context = c;
+        this.sectionSize = (sectionSize + ALIGNMENT - 1) & -ALIGNMENT;
+        int size = this.sectionSize * sections;
+        BufferTarget t = BufferTarget.GL_COPY_WRITE_BUFFER;
+        Buffer bound = c.getBuffer(t);
+        buffer = c.glGenBuffers();
+        c.replaceBuffer(t, buffer);
+        c.glBufferStorage(t, size, STORAGE, false);
+        ByteBuffer mapping = c.glMapBufferRange(t, 0, size, STORAGE);
+        c.replaceBuffer(t, bound);
+        this.sections = new ByteBuffer[sections];
+        for (int i = 0; i < sections; i++) {
+            mapping.limit((i + 1) * this.sectionSize);
+            mapping.position(i * this.sectionSize);
+            this.sections[i] = mapping.slice().order(ByteOrder.nativeOrder());
+        }
+        fences = new long[sections];
+        current = 0;
+    }
+
+    // Start writing the next section, waiting for the GPU to finish with
+    // it if need be.  Returns a view of the section, positioned at 0 with
+    // the section size as its limit.
+    public ByteBuffer begin() {
+        if (writing) {
+            throw new IllegalStateException("StreamRing.begin() called " +
+                    "twice without end()");
+        }
+        long fence = fences[current];
+        if (fence != 0) {
+            if (!context.glClientWaitSync(fence, 0)) {
+                stalls++;
+                while (!context.glClientWaitSync(fence, WAIT_NANOS)) {
+                    // keep waiting; the GPU is behind by a whole ring
+                }
+            }
+            context.glDeleteSync(fence);
+            fences[current] = 0;
+        }
+        writing = true;
+        ByteBuffer section = sections[current];
+        section.clear();
+        return section;
+    }
+
+    // Finish with the current section, once the commands that read from
+    // it have been issued.
+    public void end() {
+        if (!writing) {
+            throw new IllegalStateException("StreamRing.end() called " +
+                    "without begin()");
+        }
+        fences[current] = context.glFenceSync();
+        current = (current + 1) % sections.length;
+        writing = false;
+    }
+
+    // the buffer holding the ring, for binding and drawing from
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    // the byte offset into the buffer of the current section
+    public int getOffset() {
+        return current * sectionSize;
+    }
+
+    public int getSectionSize() {
+        return sectionSize;
+    }
+
+    // the number of times begin() had to wait for the GPU to finish with
+    // a section.  If this keeps rising, use more sections.
+    public long getStalls() {
+        return stalls;
+    }
+
+    // Unmap and delete the buffer, and any outstanding fences.  The ring
+    // must not be used afterwards.
+    public void delete() {
+        for (int i = 0; i < fences.length; i++) {
+            if (fences[i] != 0) {
+                context.glDeleteSync(fences[i]);
+                fences[i] = 0;
+            }
+        }
+        BufferTarget t = BufferTarget.GL_COPY_WRITE_BUFFER;
+        Buffer bound = context.getBuffer(t);
+        context.replaceBuffer(t, buffer);
+        context.glUnmapBuffer(t);
+        context.replaceBuffer(t, bound == buffer ? null : bound);
+        context.glDeleteBuffers(buffer);
+        sections = null;
+    }
+}
@@ -8,7 +8,6 @@ public class Texture extends GLObject {
     }
 
     void bind(TextureTarget t) {
-        assert target == null;
         target = t;
     }
 
@@ -26,8 +25,8 @@ public class Texture extends GLObject {
 
     public void setTarget(TextureTarget target) {
         // a texture target should only be set once. It determines the
-        // type of the texture thereafter.
-        assert this.target == null;
+        // type of the texture thereafter, which GLContext checks when the
+        // texture is bound.
         this.target = target;
     }
 }
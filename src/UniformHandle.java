@@ -0,0 +1,99 @@
+// An active uniform variable of a linked program, found when the program
+// was linked.  Holding on to the handle avoids looking the uniform up by
+// name each time it is set: its location is a field read.
+public class UniformHandle {
+
+    private final Program program;
+    private final String name;
+    private final int location;
+    private final UniformType type;
+    // the number of elements, 1 unless the uniform is an array
+    private final int size;
+    // where the uniform's values start in the program's shadow of its
+    // uniform values, set when the handle is added to the program
+    int shadowOffset;
+
+    UniformHandle(Program program, String name, int location,
+                  UniformType type, int size) {
+        this.program = program;
+        this.name = name;
+        this.location = location;
+        this.type = type;
+        this.size = size;
+    }
+
+    public Program getProgram() {
+        return program;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLocation() {
+        return location;
+    }
+
+    public UniformType getType() {
+        return type;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // the number of values in one element of the uniform
+    int getComponents() {
+        return components(type);
+    }
+
+    static int components(UniformType t) {
+        switch (t) {
+            case GL_FLOAT_VEC2:
+            case GL_INT_VEC2:
+                return 2;
+            case GL_FLOAT_VEC3:
+            case GL_INT_VEC3:
+                return 3;
+            case GL_FLOAT_VEC4:
+            case GL_INT_VEC4:
+            case GL_FLOAT_MAT2:
+                return 4;
+            case GL_FLOAT_MAT3:
+                return 9;
+            case GL_FLOAT_MAT4:
+                return 16;
+            case OTHER:
+                return 0;
+            default:
+                return 1;
+        }
+    }
+
+    // whether the uniform holds floating point values
+    boolean isFloat() {
+        switch (type) {
+            case GL_FLOAT:
+            case GL_FLOAT_VEC2:
+            case GL_FLOAT_VEC3:
+            case GL_FLOAT_VEC4:
+            case GL_FLOAT_MAT2:
+            case GL_FLOAT_MAT3:
+            case GL_FLOAT_MAT4:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // whether the uniform holds unsigned ints, which are set with the ui
+    // forms
+    boolean isUnsigned() {
+        return type == UniformType.GL_UNSIGNED_INT;
+    }
+
+    public String toString() {
+        return "(name=" + name + ", location=" + location + ", type=" +
+                type + ", size=" + size + ")";
+    }
+}
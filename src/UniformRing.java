@@ -0,0 +1,112 @@
+import java.nio.ByteBuffer;
+
+// Per-frame storage for uniform block data that changes every frame,
+// such as per-object transforms, written with a Std140Writer straight
+// into a StreamRing section and bound with glBindBufferRange.
+//
+// Each frame, call beginFrame(), then for each block to upload call
+// allocate() with its size, write the block through getWriter(), and
+// bind it with bind(), before the draws that use it.  Call endFrame()
+// once the frame's draws have been issued.  Allocations start on the
+// offset alignment the driver requires of glBindBufferRange, so many
+// blocks share one buffer and one mapping, and no uniform data is
+// copied or allocated on the CPU.
+public class UniformRing {
+
+    private GLContext context;
+    private StreamRing ring;
+    private Std140Writer writer;
+    private int alignment;
+    // the frame's section, and the bytes of it used so far
+    private ByteBuffer section;
+    private int used;
+    // the offset and size of the last allocation, in the buffer
+    private int offset;
+    private int size;
+
+    public UniformRing(GLContext c, int frameSize) {
+        this(c, frameSize, 3);
+    }
+
+    // frameSize - the bytes of uniform data that can be allocated each
+    //             frame, including alignment padding
+    // frames - the number of frames of data kept, at least 2
+    public UniformRing(GLContext c, int frameSize, int frames) {
+        context = c;
+        ring = new StreamRing(c, frameSize, frames);
+        writer = new Std140Writer();
+        alignment = c.getUniformBufferOffsetAlignment();
+    }
+
+    public void beginFrame() {
+        section = ring.begin();
+        used = 0;
+    }
+
+    // Allocate size bytes of the frame's section, and start the writer
+    // at them.  Returns the offset of the allocation in the buffer.
+    public int allocate(int size) {
+        if (section == null) {
+            throw new IllegalStateException("UniformRing.allocate() " +
+                    "called outside a frame");
+        }
+        int sectionOffset = ring.getOffset();
+        int start = align(sectionOffset + used) - sectionOffset;
+        if (size <= 0 || start + size > ring.getSectionSize()) {
+            throw new IllegalStateException("Cannot allocate " + size +
+                    " bytes; " + (ring.getSectionSize() - used) +
+                    " of the frame's " + ring.getSectionSize() + " left");
+        }
+        used = start + size;
+        writer.start(section, start);
+        offset = sectionOffset + start;
+        this.size = size;
+        return offset;
+    }
+
+    // the writer started at the last allocation
+    public Std140Writer getWriter() {
+        return writer;
+    }
+
+    // bind the last allocation to an indexed uniform buffer binding point
+    public void bind(int index) {
+        context.glBindBufferRange(BufferTarget.GL_UNIFORM_BUFFER, index,
+                ring.getBuffer(), offset, size);
+    }
+
+    public void endFrame() {
+        ring.end();
+        section = null;
+    }
+
+    // the buffer the allocations are made from
+    public Buffer getBuffer() {
+        return ring.getBuffer();
+    }
+
+    // the bytes allocated so far this frame, including padding
+    public int getUsed() {
+        return used;
+    }
+
+    // the number of times beginFrame() had to wait for the GPU
+    public long getStalls() {
+        return ring.getStalls();
+    }
+
+    // Delete the buffer.  Whatever binding points it is bound to are
+    // cleared, as is the generic uniform buffer binding if it is bound
+    // there.
+    public void delete() {
+        BufferTarget t = BufferTarget.GL_UNIFORM_BUFFER;
+        if (context.getBuffer(t) == ring.getBuffer()) {
+            context.replaceBuffer(t, null);
+        }
+        ring.delete();
+    }
+
+    private int align(int offset) {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+}
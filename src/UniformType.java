@@ -0,0 +1,24 @@
+// The types of uniform variable a program may declare.
+enum UniformType {
+    GL_FLOAT,
+    GL_FLOAT_VEC2,
+    GL_FLOAT_VEC3,
+    GL_FLOAT_VEC4,
+    GL_INT,
+    GL_INT_VEC2,
+    GL_INT_VEC3,
+    GL_INT_VEC4,
+    GL_UNSIGNED_INT,
+    GL_BOOL,
+    GL_FLOAT_MAT2,
+    GL_FLOAT_MAT3,
+    GL_FLOAT_MAT4,
+    GL_SAMPLER_1D,
+    GL_SAMPLER_2D,
+    GL_SAMPLER_3D,
+    GL_SAMPLER_CUBE,
+    GL_SAMPLER_2D_SHADOW,
+    // any other type, such as a double or an image, which has no setter
+    // in this API
+    OTHER
+}
@@ -0,0 +1,16 @@
+// How much checking a GLContext does of the calls made through it.  Each
+// call to glGetError is a synchronization point with the driver, so in
+// production it is usually preferable to check less often.
+enum ValidationLevel {
+    // no errors are looked for and the tracked state is not verified
+    OFF,
+
+    // errors are looked for once, at the end of each frame.  The most
+    // recent calls are logged so that an error can be traced back to the
+    // calls that may have raised it.
+    PER_FRAME,
+
+    // errors are looked for after every call, and the tracked state is
+    // verified (when assertions are enabled)
+    FULL
+}
@@ -1,6 +1,3 @@
-import java.util.HashSet;
-import java.util.Set;
-
 // A vertex array object contains a configuration for the loading of data
 // from a buffer object into the attributes of a vertex shader. By binding a
 // vertex array object to the current context, its configuration will be used
@@ -10,16 +7,30 @@ import java.util.Set;
 // buffer object(s).
 public class VertexArray extends GLObject {
 
+    // OpenGL guarantees at least this many vertex attributes
+    private static final int MIN_MAX_VERTEX_ATTRIBS = 16;
+
     private VertexArrayTarget target;
-    private Set<Pointer> pointers;
+    // the pointer for each attribute, indexed by attribute index.  Setting
+    // the pointer of an attribute replaces any previous pointer.
+    private Pointer[] pointers;
+    private int pointerCount;
+    // the buffer, offset and stride bound to each vertex buffer binding
+    // point by glBindVertexBuffer, indexed by binding
+    private Buffer[] bindingBuffers;
+    private long[] bindingOffsets;
+    private int[] bindingStrides;
 
     VertexArray(int id) {
         super(id);
-        this.pointers = new HashSet<Pointer>();
+        this.pointers = new Pointer[MIN_MAX_VERTEX_ATTRIBS];
+        this.pointerCount = 0;
+        this.bindingBuffers = new Buffer[MIN_MAX_VERTEX_ATTRIBS];
+        this.bindingOffsets = new long[MIN_MAX_VERTEX_ATTRIBS];
+        this.bindingStrides = new int[MIN_MAX_VERTEX_ATTRIBS];
     }
 
     void bind(VertexArrayTarget t) {
-        assert target == null;
         target = t;
     }
 
@@ -31,14 +42,142 @@ public class VertexArray extends GLObject {
         return target != null;
     }
 
+    // buffer - the buffer bound to GL_ARRAY_BUFFER, which the attribute
+    //          reads from
     void addPointer(int index, int size, GLType type,
-                    boolean normalized, int stride, int offset) {
-        pointers.add(new Pointer(index, size, type, normalized, stride,
-                offset));
+                    boolean normalized, int stride, int offset,
+                    Buffer buffer) {
+        Pointer p = pointer(index);
+        p.set(index, size, type, normalized, stride, offset);
+        attach(p.buffer, buffer);
+        p.buffer = buffer;
+        p.binding = -1;
+    }
+
+    // Set the format of an attribute, which reads from whatever buffer is
+    // bound to its vertex buffer binding point, initially the one with
+    // the same index.  relativeOffset is from the binding's offset.
+    void addFormat(int index, int size, GLType type, boolean normalized,
+                   int relativeOffset) {
+        Pointer p = pointer(index);
+        p.set(index, size, type, normalized, 0, relativeOffset);
+        attach(p.buffer, null);
+        p.buffer = null;
+        if (p.binding < 0) {
+            p.binding = index;
+        }
+    }
+
+    // Have an attribute read from a binding.  The binding may be set
+    // before the attribute's format, and is kept when it is.
+    void setBinding(int index, int binding) {
+        pointer(index).binding = binding;
+    }
+
+    // Bind a buffer to a vertex buffer binding point.  Returns false if
+    // it was bound there already with the same offset and stride.
+    boolean bindVertexBuffer(int binding, Buffer buffer, long offset,
+                             int stride) {
+        if (binding >= bindingBuffers.length) {
+            int n = binding + 1;
+            Buffer[] buffers = new Buffer[n];
+            long[] offsets = new long[n];
+            int[] strides = new int[n];
+            System.arraycopy(bindingBuffers, 0, buffers, 0,
+                    bindingBuffers.length);
+            System.arraycopy(bindingOffsets, 0, offsets, 0,
+                    bindingOffsets.length);
+            System.arraycopy(bindingStrides, 0, strides, 0,
+                    bindingStrides.length);
+            bindingBuffers = buffers;
+            bindingOffsets = offsets;
+            bindingStrides = strides;
+        }
+        if (bindingBuffers[binding] == buffer &&
+                bindingOffsets[binding] == offset &&
+                bindingStrides[binding] == stride) {
+            return false;
+        }
+        attach(bindingBuffers[binding], buffer);
+        bindingBuffers[binding] = buffer;
+        bindingOffsets[binding] = offset;
+        bindingStrides[binding] = stride;
+        return true;
+    }
+
+    // the buffer bound to a vertex buffer binding point, or null
+    Buffer getVertexBuffer(int binding) {
+        return binding < bindingBuffers.length ? bindingBuffers[binding] :
+                null;
     }
 
     boolean hasPointers() {
-        return pointers.size() > 0;
+        return pointerCount > 0;
+    }
+
+    // Have the attribute advance once every divisor instances rather than
+    // once every vertex, or every vertex if divisor is 0.  The divisor may
+    // be set before the attribute's pointer, and is kept when it is.
+    void setDivisor(int index, int divisor) {
+        pointer(index).divisor = divisor;
+    }
+
+    int getDivisor(int index) {
+        Pointer p = index < pointers.length ? pointers[index] : null;
+        return p == null ? 0 : p.divisor;
+    }
+
+    // whether every per-instance attribute reads from a buffer that still
+    // exists, without which an instanced draw reads garbage
+    boolean hasInstanceBuffers() {
+        for (Pointer p : pointers) {
+            if (p == null || p.type == null || p.divisor == 0) {
+                continue;
+            }
+            Buffer b = p.binding < 0 ? p.buffer : getVertexBuffer(p.binding);
+            if (b == null || b.isDeleted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // deleting a vertex array releases the buffers it reads from
+    void delete() {
+        for (Pointer p : pointers) {
+            if (p != null) {
+                attach(p.buffer, null);
+                p.buffer = null;
+            }
+        }
+        for (int b = 0; b < bindingBuffers.length; b++) {
+            attach(bindingBuffers[b], null);
+            bindingBuffers[b] = null;
+        }
+        super.delete();
+    }
+
+    // count a reference moving from one buffer to another; either may be
+    // null
+    private static void attach(Buffer from, Buffer to) {
+        if (from == to) return;
+        if (from != null) from.detach();
+        if (to != null) to.attach();
+    }
+
+    // the pointer of an attribute, added if it has none
+    private Pointer pointer(int index) {
+        if (index >= pointers.length) {
+            Pointer[] grown = new Pointer[index + 1];
+            System.arraycopy(pointers, 0, grown, 0, pointers.length);
+            pointers = grown;
+        }
+        Pointer p = pointers[index];
+        if (p == null) {
+            p = new Pointer();
+            pointers[index] = p;
+        }
+        return p;
     }
 
     private class Pointer {
@@ -48,9 +187,22 @@ public class VertexArray extends GLObject {
         boolean normalized;
         int stride;
         int offset;
+        // the buffer the attribute reads from, or null
+        Buffer buffer;
+        // the vertex buffer binding the attribute reads from if its
+        // format was set separately, or -1 if it reads from buffer
+        int binding = -1;
+        // the number of instances each value is used for, or 0 if the
+        // attribute advances every vertex.  Kept when the pointer is set.
+        int divisor;
 
-        private Pointer(int index, int size, GLType type, boolean
+        // type is null until the pointer or format is first set, as it
+        // isn't for an attribute that only has a divisor
+        private void set(int index, int size, GLType type, boolean
                 normalized, int stride, int offset) {
+            if (this.type == null) {
+                pointerCount++;
+            }
             this.index = index;
             this.size = size;
             this.type = type;
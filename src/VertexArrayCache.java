@@ -0,0 +1,176 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Hands out vertex arrays by layout, so that meshes whose attributes are
+// laid out the same share a vertex array instead of each creating and
+// setting up one of their own.
+//
+// By default a vertex array is made for each distinct layout, buffers
+// included, with glVertexAttribPointer, and meshes share one only if
+// they also share their buffers, as meshes packed into one big buffer
+// do.  In separate format mode (OpenGL 4.3 or ARB_vertex_attrib_binding)
+// one vertex array is made for each distinct set of attribute formats,
+// with glVertexAttribFormat, and bind() switches meshes by binding their
+// buffers to it with glBindVertexBuffer, which is cheaper for the driver
+// than switching vertex arrays.  Either way calls that wouldn't change
+// anything are skipped.
+//
+// The cache owns its vertex arrays.  Buffers must be removed from the
+// cache with remove() before they are deleted.
+public class VertexArrayCache {
+
+    private GLContext context;
+    private boolean separateFormat;
+    // the vertex array for each layout looked up
+    private HashMap<VertexLayout, VertexArray> arrays;
+    // in separate format mode, the vertex array for each set of formats
+    private HashMap<VertexLayout, VertexArray> formats;
+
+    private int hits;
+    private int misses;
+
+    // separateFormat - whether to share vertex arrays between layouts
+    //                  that differ only in their buffers
+    public VertexArrayCache(GLContext c, boolean separateFormat) {
+        context = c;
+        this.separateFormat = separateFormat;
+        arrays = new HashMap<VertexLayout, VertexArray>();
+        formats = new HashMap<VertexLayout, VertexArray>();
+    }
+
+    // Bind a vertex array with the given layout, making one only if the
+    // cache has none that matches.  Returns the vertex array.  The layout
+    // may be changed afterwards without affecting the cache.
+    public VertexArray bind(VertexLayout layout) {
+        VertexArray v = arrays.get(layout);
+        if (v != null) {
+            hits++;
+        } else {
+            misses++;
+            v = separateFormat ? createFormat(layout) : create(layout);
+            arrays.put(layout.copy(), v);
+        }
+        context.replaceVertexArray(v);
+        if (separateFormat) {
+            for (int b = 0; b < layout.getBindingCount(); b++) {
+                Buffer buffer = layout.getBuffer(b);
+                if (buffer != null) {
+                    context.replaceVertexBuffer(b, buffer,
+                            layout.getBufferOffset(b), layout.getStride(b));
+                }
+            }
+            if (layout.getElements() != null) {
+                context.replaceBuffer(BufferTarget.GL_ELEMENT_ARRAY_BUFFER,
+                        layout.getElements());
+            }
+        }
+        return v;
+    }
+
+    // Forget the layouts that read from the buffer, deleting the vertex
+    // arrays made for them that aren't shared.
+    public void remove(Buffer buffer) {
+        Iterator<Map.Entry<VertexLayout, VertexArray>> i =
+                arrays.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<VertexLayout, VertexArray> e = i.next();
+            if (e.getKey().uses(buffer)) {
+                i.remove();
+                if (!separateFormat) {
+                    delete(e.getValue());
+                }
+            }
+        }
+    }
+
+    // the number of vertex arrays made
+    public int size() {
+        return separateFormat ? formats.size() : arrays.size();
+    }
+
+    // lookups that found a vertex array, and lookups that had to make or
+    // set up one
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    // delete every vertex array in the cache
+    public void clear() {
+        List<VertexArray> all = new ArrayList<VertexArray>(
+                separateFormat ? formats.values() : arrays.values());
+        for (VertexArray v : all) {
+            delete(v);
+        }
+        arrays.clear();
+        formats.clear();
+    }
+
+    // a vertex array with attribute pointers into the layout's buffers
+    private VertexArray create(VertexLayout layout) {
+        for (int i = 0; i < layout.getAttributeCount(); i++) {
+            if (layout.getBuffer(layout.getBinding(i)) == null) {
+                throw new IllegalArgumentException("attribute " +
+                        layout.getIndex(i) + " reads binding " +
+                        layout.getBinding(i) + ", which has no buffer");
+            }
+        }
+        VertexArray v = context.glGenVertexArrays();
+        context.replaceVertexArray(v);
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        Buffer bound = context.getBuffer(t);
+        for (int i = 0; i < layout.getAttributeCount(); i++) {
+            int b = layout.getBinding(i);
+            int index = layout.getIndex(i);
+            context.replaceBuffer(t, layout.getBuffer(b));
+            context.glVertexAttribPointer(index, layout.getSize(i),
+                    layout.getType(i), layout.isNormalized(i),
+                    layout.getStride(b),
+                    layout.getBufferOffset(b) + layout.getOffset(i));
+            context.glEnableVertexAttribArray(index);
+        }
+        context.replaceBuffer(t, bound);
+        if (layout.getElements() != null) {
+            context.replaceBuffer(BufferTarget.GL_ELEMENT_ARRAY_BUFFER,
+                    layout.getElements());
+        }
+        return v;
+    }
+
+    // the vertex array with the layout's attribute formats, made if need
+    // be
+    private VertexArray createFormat(VertexLayout layout) {
+        VertexLayout format = layout.copyFormat();
+        VertexArray v = formats.get(format);
+        if (v != null) {
+            return v;
+        }
+        v = context.glGenVertexArrays();
+        context.replaceVertexArray(v);
+        for (int i = 0; i < layout.getAttributeCount(); i++) {
+            int index = layout.getIndex(i);
+            context.glVertexAttribFormat(index, layout.getSize(i),
+                    layout.getType(i), layout.isNormalized(i),
+                    layout.getOffset(i));
+            if (layout.getBinding(i) != index) {
+                context.glVertexAttribBinding(index, layout.getBinding(i));
+            }
+            context.glEnableVertexAttribArray(index);
+        }
+        formats.put(format, v);
+        return v;
+    }
+
+    private void delete(VertexArray v) {
+        if (context.getVertexArray() == v) {
+            context.replaceVertexArray(null);
+        }
+        context.glDeleteVertexArrays(v);
+    }
+}
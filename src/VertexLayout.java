@@ -0,0 +1,242 @@
+// Where each attribute of a vertex array reads its values from: the
+// format of each attribute, the vertex buffer binding point it reads,
+// the buffer, offset and stride of each binding point, and the element
+// array buffer.  This is the split made by glVertexAttribFormat and
+// glBindVertexBuffer; an attribute set up by glVertexAttribPointer is an
+// attribute reading a binding point of its own.
+//
+// Layouts are compared by value, with the attributes in order of index
+// whatever order they were added in, so equal layouts describe vertex
+// arrays that can be used in place of each other.  This makes a layout
+// the key of a VertexArrayCache.  A layout can be cleared and refilled
+// for each mesh, so that looking up a vertex array allocates nothing.
+public class VertexLayout {
+
+    // the fields of each attribute
+    private static final int INDEX = 0;
+    private static final int SIZE = 1;
+    private static final int TYPE = 2;
+    private static final int NORMALIZED = 3;
+    private static final int OFFSET = 4;
+    private static final int BINDING = 5;
+    private static final int FIELDS = 6;
+
+    private static final GLType[] TYPES = GLType.values();
+
+    // the fields of each attribute, in order of attribute index
+    private int[] attributes;
+    private int attributeCount;
+    // the buffer, offset and stride of each binding point, indexed by
+    // binding, up to the highest binding point given a buffer
+    private Buffer[] buffers;
+    private int[] bufferOffsets;
+    private int[] strides;
+    private int bindingCount;
+    private Buffer elements;
+
+    public VertexLayout() {
+        attributes = new int[4 * FIELDS];
+        buffers = new Buffer[4];
+        bufferOffsets = new int[4];
+        strides = new int[4];
+    }
+
+    // Add an attribute that reads size values of the given type from
+    // offset bytes into each vertex of the buffer at a binding point,
+    // replacing any attribute with the same index.
+    public VertexLayout attribute(int index, int size, GLType type,
+                                  boolean normalized, int offset,
+                                  int binding) {
+        if (index < 0 || binding < 0 || offset < 0) {
+            throw new IllegalArgumentException("attribute " + index +
+                    ", offset " + offset + ", binding " + binding);
+        }
+        int i = 0;
+        while (i < attributeCount && attributes[i * FIELDS + INDEX] < index) {
+            i++;
+        }
+        if (i == attributeCount || attributes[i * FIELDS + INDEX] != index) {
+            if ((attributeCount + 1) * FIELDS > attributes.length) {
+                int[] grown = new int[attributes.length * 2];
+                System.arraycopy(attributes, 0, grown, 0, attributes.length);
+                attributes = grown;
+            }
+            System.arraycopy(attributes, i * FIELDS, attributes,
+                    (i + 1) * FIELDS, (attributeCount - i) * FIELDS);
+            attributeCount++;
+        }
+        int at = i * FIELDS;
+        attributes[at + INDEX] = index;
+        attributes[at + SIZE] = size;
+        attributes[at + TYPE] = type.ordinal();
+        attributes[at + NORMALIZED] = normalized ? 1 : 0;
+        attributes[at + OFFSET] = offset;
+        attributes[at + BINDING] = binding;
+        return this;
+    }
+
+    // Have a binding point read from a buffer, with vertices stride bytes
+    // apart starting at offset.
+    public VertexLayout buffer(int binding, Buffer buffer, int offset,
+                               int stride) {
+        if (binding < 0 || offset < 0 || stride < 0) {
+            throw new IllegalArgumentException("binding " + binding +
+                    ", offset " + offset + ", stride " + stride);
+        }
+        if (binding >= buffers.length) {
+            int n = Math.max(binding + 1, buffers.length * 2);
+            Buffer[] b = new Buffer[n];
+            int[] o = new int[n];
+            int[] s = new int[n];
+            System.arraycopy(buffers, 0, b, 0, bindingCount);
+            System.arraycopy(bufferOffsets, 0, o, 0, bindingCount);
+            System.arraycopy(strides, 0, s, 0, bindingCount);
+            buffers = b;
+            bufferOffsets = o;
+            strides = s;
+        }
+        buffers[binding] = buffer;
+        bufferOffsets[binding] = offset;
+        strides[binding] = stride;
+        bindingCount = Math.max(bindingCount, binding + 1);
+        return this;
+    }
+
+    // the buffer indices are read from, or null for none
+    public VertexLayout elements(Buffer buffer) {
+        elements = buffer;
+        return this;
+    }
+
+    // remove every attribute and buffer, to describe another layout
+    public VertexLayout clear() {
+        attributeCount = 0;
+        for (int b = 0; b < bindingCount; b++) {
+            buffers[b] = null;
+            bufferOffsets[b] = 0;
+            strides[b] = 0;
+        }
+        bindingCount = 0;
+        elements = null;
+        return this;
+    }
+
+    int getAttributeCount() {
+        return attributeCount;
+    }
+
+    // the fields of the i'th attribute in order of index
+    int getIndex(int i) {
+        return attributes[i * FIELDS + INDEX];
+    }
+
+    int getSize(int i) {
+        return attributes[i * FIELDS + SIZE];
+    }
+
+    GLType getType(int i) {
+        return TYPES[attributes[i * FIELDS + TYPE]];
+    }
+
+    boolean isNormalized(int i) {
+        return attributes[i * FIELDS + NORMALIZED] != 0;
+    }
+
+    int getOffset(int i) {
+        return attributes[i * FIELDS + OFFSET];
+    }
+
+    int getBinding(int i) {
+        return attributes[i * FIELDS + BINDING];
+    }
+
+    // one more than the highest binding point given a buffer
+    int getBindingCount() {
+        return bindingCount;
+    }
+
+    Buffer getBuffer(int binding) {
+        return binding < bindingCount ? buffers[binding] : null;
+    }
+
+    int getBufferOffset(int binding) {
+        return binding < bindingCount ? bufferOffsets[binding] : 0;
+    }
+
+    int getStride(int binding) {
+        return binding < bindingCount ? strides[binding] : 0;
+    }
+
+    Buffer getElements() {
+        return elements;
+    }
+
+    // whether the layout reads from the buffer
+    boolean uses(Buffer buffer) {
+        if (elements == buffer) {
+            return true;
+        }
+        for (int b = 0; b < bindingCount; b++) {
+            if (buffers[b] == buffer) return true;
+        }
+        return false;
+    }
+
+    // a copy of the layout, which later changes to this one don't affect
+    VertexLayout copy() {
+        VertexLayout c = copyFormat();
+        for (int b = 0; b < bindingCount; b++) {
+            if (buffers[b] != null) {
+                c.buffer(b, buffers[b], bufferOffsets[b], strides[b]);
+            }
+        }
+        c.elements = elements;
+        return c;
+    }
+
+    // a copy of the attributes of the layout, without the buffers, for
+    // comparing formats alone
+    VertexLayout copyFormat() {
+        VertexLayout c = new VertexLayout();
+        c.attributes = new int[Math.max(FIELDS, attributeCount * FIELDS)];
+        System.arraycopy(attributes, 0, c.attributes, 0,
+                attributeCount * FIELDS);
+        c.attributeCount = attributeCount;
+        return c;
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof VertexLayout)) {
+            return false;
+        }
+        VertexLayout l = (VertexLayout) o;
+        if (attributeCount != l.attributeCount ||
+                bindingCount != l.bindingCount || elements != l.elements) {
+            return false;
+        }
+        for (int i = 0; i < attributeCount * FIELDS; i++) {
+            if (attributes[i] != l.attributes[i]) return false;
+        }
+        for (int b = 0; b < bindingCount; b++) {
+            if (buffers[b] != l.buffers[b] ||
+                    bufferOffsets[b] != l.bufferOffsets[b] ||
+                    strides[b] != l.strides[b]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < attributeCount * FIELDS; i++) {
+            h = 31 * h + attributes[i];
+        }
+        for (int b = 0; b < bindingCount; b++) {
+            h = 31 * h + (buffers[b] == null ? 0 : buffers[b].getId());
+            h = 31 * h + bufferOffsets[b];
+            h = 31 * h + strides[b];
+        }
+        return 31 * h + (elements == null ? 0 : elements.getId());
+    }
+}
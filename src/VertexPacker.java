@@ -0,0 +1,193 @@
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+// Packs vertices of float positions, normals and texture coordinates into
+// half the space, for upload with glBufferData.  A vertex of
+//
+//   position   3 floats   12 bytes
+//   normal     3 floats   12 bytes
+//   uv         2 floats    8 bytes
+//
+// 32 bytes in all, becomes 16 bytes:
+//
+//   position   3 half floats, 2 bytes padding          offset 0
+//   normal     GL_INT_2_10_10_10_REV, normalized       offset 8
+//   uv         2 normalized unsigned shorts            offset 12
+//
+// which halves the memory and bandwidth the vertices take.  Half floats
+// keep 11 significant bits, about 3 decimal digits, so positions should
+// be in model space near the origin.  Normals keep 10 bits per
+// component, and texture coordinates are clamped to [0, 1] and kept to
+// 16 bits.  describe() gives the attributes to read the packed vertices
+// with.
+//
+// Vertices are read a block at a time into arrays and converted by plain
+// loops over the arrays, which the JIT compiles to tight code with no
+// buffer bounds checks.  Packing allocates nothing but the buffer it
+// returns, or nothing at all when given a buffer large enough.
+public class VertexPacker {
+
+    // the size of a vertex before and after packing
+    public static final int FLOAT_STRIDE = 32;
+    public static final int PACKED_STRIDE = 16;
+
+    // the vertices read at a time
+    private static final int BLOCK = 256;
+
+    // a block of positions, normals and texture coordinates
+    private float[] positions;
+    private float[] normals;
+    private float[] uvs;
+
+    private long packedVertices;
+
+    public VertexPacker() {
+        positions = new float[BLOCK * 3];
+        normals = new float[BLOCK * 3];
+        uvs = new float[BLOCK * 2];
+    }
+
+    // Pack the vertices remaining in the buffers, three floats of position,
+    // three of normal and two of texture coordinate each, into a new
+    // buffer.  Returns the buffer, positioned at 0 with the packed
+    // vertices as its limit.
+    public ByteBuffer pack(FloatBuffer positions, FloatBuffer normals,
+                           FloatBuffer uvs) {
+        ByteBuffer packed = BufferUtils.createByteBuffer(
+                positions.remaining() / 3 * PACKED_STRIDE);
+        pack(positions, normals, uvs, packed);
+        packed.flip();
+        return packed;
+    }
+
+    // as pack(positions, normals, uvs), writing to the packed buffer at
+    // its position, which is advanced past the vertices written.  The
+    // packed buffer must be in native byte order, as the driver reads it.
+    // The float buffers are advanced past the vertices read.  Returns the
+    // number of vertices packed.
+    public int pack(FloatBuffer positions, FloatBuffer normals,
+                    FloatBuffer uvs, ByteBuffer packed) {
+        int n = positions.remaining() / 3;
+        if (positions.remaining() != n * 3 ||
+                normals.remaining() != n * 3 || uvs.remaining() != n * 2) {
+            throw new IllegalArgumentException(positions.remaining() +
+                    " position, " + normals.remaining() + " normal and " +
+                    uvs.remaining() + " uv floats are not whole vertices");
+        }
+        if (packed.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("not in native byte order");
+        }
+        if (packed.remaining() < n * PACKED_STRIDE) {
+            throw new IllegalArgumentException("room for " +
+                    packed.remaining() / PACKED_STRIDE + " of " + n +
+                    " vertices");
+        }
+        int at = packed.position();
+        for (int first = 0; first < n; first += BLOCK) {
+            int count = Math.min(BLOCK, n - first);
+            positions.get(this.positions, 0, count * 3);
+            normals.get(this.normals, 0, count * 3);
+            uvs.get(this.uvs, 0, count * 2);
+            for (int v = 0; v < count; v++) {
+                int p = v * 3;
+                int t = v * 2;
+                packed.putShort(at, toHalf(this.positions[p]));
+                packed.putShort(at + 2, toHalf(this.positions[p + 1]));
+                packed.putShort(at + 4, toHalf(this.positions[p + 2]));
+                packed.putShort(at + 6, (short) 0);
+                packed.putInt(at + 8, packNormal(this.normals[p],
+                        this.normals[p + 1], this.normals[p + 2]));
+                packed.putShort(at + 12, toUnsignedShort(this.uvs[t]));
+                packed.putShort(at + 14, toUnsignedShort(this.uvs[t + 1]));
+                at += PACKED_STRIDE;
+            }
+        }
+        packed.position(at);
+        packedVertices += n;
+        return n;
+    }
+
+    // Add the attributes of packed vertices to a layout, reading the
+    // buffer at the binding point.  Returns the layout.
+    public static VertexLayout describe(VertexLayout layout, int position,
+                                        int normal, int uv, int binding,
+                                        Buffer buffer) {
+        return layout
+                .attribute(position, 3, GLType.GL_HALF_FLOAT, false, 0,
+                        binding)
+                .attribute(normal, 4, GLType.GL_INT_2_10_10_10_REV, true, 8,
+                        binding)
+                .attribute(uv, 2, GLType.GL_UNSIGNED_SHORT, true, 12,
+                        binding)
+                .buffer(binding, buffer, 0, PACKED_STRIDE);
+    }
+
+    // the bytes each vertex takes less once packed
+    public static int getBytesSavedPerVertex() {
+        return FLOAT_STRIDE - PACKED_STRIDE;
+    }
+
+    // the bytes saved by all the vertices packed so far
+    public long getBytesSaved() {
+        return packedVertices * getBytesSavedPerVertex();
+    }
+
+    // the IEEE 754 half float nearest to f, rounding ties to even.  Values
+    // too large become infinity, and values too small zero.
+    static short toHalf(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+        if (exponent == 0xff) {
+            // infinity stays infinity and NaN stays NaN
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int e = exponent - 127 + 15;
+        if (e >= 0x1f) {
+            return (short) (sign | 0x7c00);
+        }
+        if (e <= 0) {
+            // a subnormal half, or zero
+            if (e < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - e;
+            int half = mantissa >> shift;
+            int rest = mantissa & ((1 << shift) - 1);
+            int tie = 1 << (shift - 1);
+            if (rest > tie || (rest == tie && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (e << 10) | (mantissa >> 13);
+        int rest = mantissa & 0x1fff;
+        // rounding up may carry into the exponent, which is still right
+        if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    // a normal as signed normalized 10 bit x, y and z, x in the lowest
+    // bits, and a w of 0
+    static int packNormal(float x, float y, float z) {
+        return toSigned10(x) | toSigned10(y) << 10 | toSigned10(z) << 20;
+    }
+
+    private static int toSigned10(float f) {
+        f = Math.max(-1, Math.min(1, f));
+        return Math.round(f * 511) & 0x3ff;
+    }
+
+    // f in [0, 1] as a normalized unsigned short
+    static short toUnsignedShort(float f) {
+        f = Math.max(0, Math.min(1, f));
+        return (short) Math.round(f * 65535);
+    }
+}
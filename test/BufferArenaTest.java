@@ -0,0 +1,108 @@
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class BufferArenaTest extends TestCase {
+
+    RecordingBackend gl;
+    GLContext c;
+
+    public void testAllocate() throws Exception {
+        BufferArena arena = new BufferArena(c, 1024,
+                BufferUsage.GL_STATIC_DRAW);
+        BufferArena.Range a = arena.allocate(10, 1);
+        BufferArena.Range b = arena.allocate(24, 12);
+        assertEquals(0, a.getOffset());
+        assertEquals(12, b.getOffset());
+        assertEquals(1, b.getFirst(12));
+        assertEquals(34, arena.getUsedBytes());
+        // the padding before b is used once the rest is full
+        arena.allocate(1024 - 36, 1);
+        BufferArena.Range d = arena.allocate(2, 1);
+        assertEquals(10, d.getOffset());
+        assertNull(arena.allocate(1, 1));
+    }
+
+    // freed ranges merge with their free neighbours
+    public void testFree() throws Exception {
+        BufferArena arena = new BufferArena(c, 300,
+                BufferUsage.GL_STATIC_DRAW);
+        BufferArena.Range a = arena.allocate(100, 1);
+        BufferArena.Range b = arena.allocate(100, 1);
+        BufferArena.Range d = arena.allocate(100, 1);
+        assertEquals(0, arena.getLargestFree());
+        arena.free(a);
+        arena.free(d);
+        assertEquals(100, arena.getLargestFree());
+        arena.free(b);
+        assertEquals(300, arena.getLargestFree());
+        assertEquals(0, arena.getRangeCount());
+        try {
+            arena.free(b);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    // defragmenting packs the ranges together with GPU copies, staging
+    // those that would overlap their new position
+    public void testDefragment() throws Exception {
+        BufferArena arena = new BufferArena(c, 400,
+                BufferUsage.GL_STATIC_DRAW);
+        BufferArena.Range a = arena.allocate(100, 1);
+        BufferArena.Range b = arena.allocate(50, 1);
+        BufferArena.Range d = arena.allocate(200, 1);
+        arena.free(a);
+        arena.free(b);
+        assertNull(arena.allocate(200, 1));
+        gl.setRecording(false);
+        arena.defragment();
+        assertEquals(0, d.getOffset());
+        assertEquals(200, arena.getLargestFree());
+        assertEquals(200, arena.allocate(200, 1).getOffset());
+
+        gl.setRecording(true);
+        arena = new BufferArena(c, 400, BufferUsage.GL_STATIC_DRAW);
+        a = arena.allocate(100, 1);
+        b = arena.allocate(100, 1);
+        arena.free(a);
+        gl.clear();
+        assertEquals(100, arena.defragment());
+        assertEquals(0, b.getOffset());
+        List<String> expected = Arrays.asList(
+                "glBindBuffer(36662, 3)",
+                "glBindBuffer(36663, 3)",
+                "glCopyBufferSubData(36662, 36663, 100, 0, 100)",
+                "glBindBuffer(36662, 0)",
+                "glBindBuffer(36663, 0)");
+        assertEquals(expected, gl.getCalls());
+    }
+
+    public void testDrawBaseVertex() throws Exception {
+        BufferArena arena = new BufferArena(c, 1024,
+                BufferUsage.GL_STATIC_DRAW);
+        BufferArena.Range vertices = arena.allocate(120, 12);
+        BufferArena.Range indices = arena.allocate(12, 4);
+        VertexArray v = c.glGenVertexArrays();
+        c.glBindVertexArray(v);
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, arena.getBuffer());
+        c.glVertexAttribPointer(0, 3, GLType.GL_FLOAT, false, 12, 0);
+        gl.clear();
+        c.glDrawElementsBaseVertex(DrawMode.GL_TRIANGLES, 3,
+                GLType.GL_UNSIGNED_INT, indices.getOffset(),
+                vertices.getFirst(12));
+        c.glDrawRangeElements(DrawMode.GL_TRIANGLES, 0, 9, 3,
+                GLType.GL_UNSIGNED_INT, indices.getOffset());
+        List<String> expected = Arrays.asList(
+                "glDrawElementsBaseVertex(4, 3, 5125, 120, 0)",
+                "glDrawRangeElements(4, 0, 9, 3, 5125, 120)");
+        assertEquals(expected, gl.getCalls());
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        gl = new RecordingBackend();
+        c = new GLContext(gl);
+    }
+}
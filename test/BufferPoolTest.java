@@ -0,0 +1,90 @@
+import junit.framework.TestCase;
+
+public class BufferPoolTest extends TestCase {
+
+    RecordingBackend gl;
+    GLContext c;
+
+    public void testReuse() throws Exception {
+        BufferPool pool = new BufferPool(c, 1 << 20);
+        Buffer a = pool.acquire(1000, BufferUsage.GL_STREAM_DRAW);
+        assertEquals(1024, a.getDataSize());
+        pool.release(a);
+        assertEquals(1024, pool.getResidentBytes());
+        gl.clear();
+        // same size class and usage: no driver calls
+        Buffer b = pool.acquire(600, BufferUsage.GL_STREAM_DRAW);
+        assertSame(a, b);
+        assertEquals(0, gl.getCallCount());
+        assertEquals(0, pool.getResidentBytes());
+        // a different usage misses
+        pool.release(b);
+        Buffer d = pool.acquire(600, BufferUsage.GL_DYNAMIC_DRAW);
+        assertNotSame(a, d);
+        assertEquals(1, pool.getHits());
+        assertEquals(2, pool.getMisses());
+    }
+
+    // allocating leaves the copy write target as it was
+    public void testAllocateRestoresBinding() throws Exception {
+        Buffer bound = c.glGenBuffers();
+        c.glBindBuffer(BufferTarget.GL_COPY_WRITE_BUFFER, bound);
+        BufferPool pool = new BufferPool(c, 1 << 20);
+        Buffer b = pool.acquire(10, BufferUsage.GL_STATIC_DRAW);
+        assertEquals(BufferPool.MIN_SIZE, b.getDataSize());
+        assertFalse(b.isBound());
+        assertTrue(c.isBoundTo(BufferTarget.GL_COPY_WRITE_BUFFER, bound));
+    }
+
+    // the buffers released longest ago are evicted to stay under the cap
+    public void testEviction() throws Exception {
+        BufferPool pool = new BufferPool(c, 2048);
+        Buffer a = pool.acquire(1024, BufferUsage.GL_STREAM_DRAW);
+        Buffer b = pool.acquire(1024, BufferUsage.GL_STREAM_DRAW);
+        Buffer d = pool.acquire(1024, BufferUsage.GL_STREAM_DRAW);
+        pool.release(a);
+        pool.release(b);
+        pool.release(d);
+        assertEquals(2048, pool.getResidentBytes());
+        assertEquals(1, pool.getEvictions());
+        assertTrue(a.isDeleted());
+        assertNull(c.getBuffer(a.getId()));
+        assertSame(d, pool.acquire(1024, BufferUsage.GL_STREAM_DRAW));
+        pool.trim();
+        assertEquals(0, pool.getResidentBytes());
+        assertTrue(b.isDeleted());
+    }
+
+    // a buffer whose size isn't a size class is deleted, not kept
+    public void testReleaseForeignBuffer() throws Exception {
+        BufferPool pool = new BufferPool(c, 1 << 20);
+        Buffer b = c.glGenBuffers();
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+        c.glBufferData(BufferTarget.GL_ARRAY_BUFFER, 1000,
+                BufferUsage.GL_STATIC_DRAW);
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, null);
+        pool.release(b);
+        assertTrue(b.isDeleted());
+        assertEquals(0, pool.getResidentBytes());
+    }
+
+    // releasing a buffer twice would hand it to two owners
+    public void testDoubleRelease() throws Exception {
+        BufferPool pool = new BufferPool(c, 1 << 20);
+        Buffer b = pool.acquire(256, BufferUsage.GL_STREAM_DRAW);
+        pool.release(b);
+        try {
+            pool.release(b);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        assertSame(b, pool.acquire(256, BufferUsage.GL_STREAM_DRAW));
+        assertNotSame(b, pool.acquire(256, BufferUsage.GL_STREAM_DRAW));
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        gl = new RecordingBackend();
+        c = new GLContext(gl);
+    }
+}
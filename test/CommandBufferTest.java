@@ -0,0 +1,211 @@
+import junit.framework.TestCase;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Commands recorded into a command buffer and replayed should reach the
+// backend exactly as if they had been made on the context directly.
+public class CommandBufferTest extends TestCase {
+
+    public void testReplayMatchesDirectCalls() throws Exception {
+        RecordingBackend direct = new RecordingBackend();
+        Scene a = new Scene(new GLContext(direct));
+        direct.clear();
+        a.draw(a.c);
+
+        RecordingBackend replayed = new RecordingBackend();
+        Scene b = new Scene(new GLContext(replayed));
+        replayed.clear();
+        CommandBuffer cb = new CommandBuffer();
+        b.draw(cb);
+        assertEquals(0, replayed.getCallCount());
+        cb.replay(b.c);
+
+        assertEquals(direct.getCalls(), replayed.getCalls());
+    }
+
+    // a recorded stream can be replayed every frame.  Binds that are
+    // already in place are skipped.
+    public void testReplayAgain() throws Exception {
+        RecordingBackend gl = new RecordingBackend();
+        Scene s = new Scene(new GLContext(gl));
+        CommandBuffer cb = new CommandBuffer();
+        s.draw(cb);
+        cb.replay(s.c);
+        gl.clear();
+        cb.replay(s.c);
+        for (String call : gl.getCalls()) {
+            assertFalse(call, call.startsWith("glBind"));
+        }
+    }
+
+    // lists recorded concurrently are replayed in the order of their keys,
+    // and each list starts from the bindings the previous one left
+    public void testQueueOrdersParallelLists() throws Exception {
+        RecordingBackend gl = new RecordingBackend();
+        final Scene s = new Scene(new GLContext(gl));
+        final VertexArray other = s.c.glGenVertexArrays();
+        s.c.glBindVertexArray(other);
+        s.c.glVertexAttribPointer(0, 4, GLType.GL_FLOAT, false, 16, 0);
+        s.c.glBindVertexArray(null);
+        final CommandQueue q = new CommandQueue(s.c);
+        final int lists = 32;
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        for (int i = lists - 1; i >= 0; i--) {
+            final int key = i;
+            workers.submit(new Runnable() {
+                public void run() {
+                    CommandBuffer cb = new CommandBuffer();
+                    cb.glBindVertexArray(key % 3 == 0 ? other : s.vao);
+                    cb.glDrawArrays(DrawMode.GL_POINTS, key, 1);
+                    q.submit(key, cb);
+                }
+            });
+        }
+        // the vertex array of list 0 needs pointers before it can draw
+        s.c.glBindVertexArray(s.vao);
+        s.c.glVertexAttribPointer(0, 4, GLType.GL_FLOAT, false, 16, 0);
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(10, TimeUnit.SECONDS));
+        gl.clear();
+        assertEquals(lists, q.flush());
+
+        int next = 0;
+        for (String call : gl.getCalls()) {
+            if (call.startsWith("glDrawArrays")) {
+                assertEquals("glDrawArrays(0, " + next + ", 1)", call);
+                next++;
+            }
+        }
+        assertEquals(lists, next);
+    }
+
+    public void testQueueOwnerThread() throws Exception {
+        final CommandQueue q = new CommandQueue(new GLContext(
+                new RecordingBackend()));
+        final boolean[] threw = new boolean[1];
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    q.flush();
+                } catch (IllegalStateException e) {
+                    threw[0] = true;
+                }
+            }
+        });
+        t.start();
+        t.join();
+        assertTrue(threw[0]);
+    }
+
+    // a duplicate key is reported without losing the rest of the frame
+    public void testQueueDuplicateKey() throws Exception {
+        RecordingBackend gl = new RecordingBackend();
+        Scene s = new Scene(new GLContext(gl));
+        s.c.glBindVertexArray(s.vao);
+        s.c.glVertexAttribPointer(0, 4, GLType.GL_FLOAT, false, 16, 0);
+        CommandQueue q = new CommandQueue(s.c);
+        for (int i = 0; i < 3; i++) {
+            CommandBuffer cb = new CommandBuffer();
+            cb.glDrawArrays(DrawMode.GL_POINTS, i, 1);
+            q.submit(i == 2 ? 1 : i, cb);
+        }
+        gl.clear();
+        try {
+            q.flush();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        assertEquals(2, gl.getCalls().size());
+        assertEquals(0, q.pendingCount());
+        CommandBuffer cb = new CommandBuffer();
+        cb.glDrawArrays(DrawMode.GL_POINTS, 0, 1);
+        q.submit(0, cb);
+        assertEquals(1, q.flush());
+    }
+
+    public void testGrow() throws Exception {
+        CommandBuffer cb = new CommandBuffer(16);
+        for (int i = 0; i < 10000; i++) {
+            cb.glDrawArrays(DrawMode.GL_POINTS, i, 1);
+        }
+        assertEquals(10000, cb.getCount());
+        assertEquals(10000 * 16, cb.getSize());
+        cb.reset();
+        assertEquals(0, cb.getSize());
+    }
+
+    // a stream too small for one command grows to fit it, and one that
+    // could never grow is rejected
+    public void testGrowFromOne() throws Exception {
+        CommandBuffer cb = new CommandBuffer(1);
+        cb.glDrawArrays(DrawMode.GL_POINTS, 0, 1);
+        assertEquals(16, cb.getSize());
+        try {
+            new CommandBuffer(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    // the objects needed to draw, created identically in each context
+    static class Scene {
+        GLContext c;
+        VertexArray vao;
+        Buffer vbo;
+        Buffer ebo;
+        Texture texture;
+        Program program;
+        ByteBuffer data;
+
+        Scene(GLContext c) {
+            this.c = c;
+            vao = c.glGenVertexArrays();
+            vbo = c.glGenBuffers();
+            ebo = c.glGenBuffers();
+            texture = c.glGenTextures();
+            Shader s = c.glCreateShader(ShaderType.GL_VERTEX_SHADER);
+            c.glShaderSource(s, "void main() {}");
+            c.glCompileShader(s);
+            program = c.glCreateProgram();
+            c.glAttachShader(program, s);
+            c.glLinkProgram(program);
+            data = BufferUtils.createByteBuffer(16);
+        }
+
+        void draw(GLContext c) {
+            c.glBindVertexArray(vao);
+            c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, vbo);
+            c.glVertexAttribPointer(0, 4, GLType.GL_FLOAT, false, 16, 0);
+            c.glEnableVertexAttribArray(0);
+            c.glUseProgram(program);
+            c.glBindTexture(TextureTarget.GL_TEXTURE_2D, texture);
+            c.glBufferSubData(BufferTarget.GL_ARRAY_BUFFER, 0, data);
+            c.glClearColor(0f, 0f, 0f, 1f);
+            c.glClear(BufferBit.GL_COLOR_BUFFER_BIT);
+            c.glDrawArrays(DrawMode.GL_TRIANGLES, 0, 3);
+            c.glBindBuffer(BufferTarget.GL_ELEMENT_ARRAY_BUFFER, ebo);
+            c.glDrawElements(DrawMode.GL_TRIANGLES, 6,
+                    GLType.GL_UNSIGNED_INT, 0);
+        }
+
+        void draw(CommandBuffer c) {
+            c.glBindVertexArray(vao);
+            c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, vbo);
+            c.glVertexAttribPointer(0, 4, GLType.GL_FLOAT, false, 16, 0);
+            c.glEnableVertexAttribArray(0);
+            c.glUseProgram(program);
+            c.glBindTexture(TextureTarget.GL_TEXTURE_2D, texture);
+            c.glBufferSubData(BufferTarget.GL_ARRAY_BUFFER, 0, data);
+            c.glClearColor(0f, 0f, 0f, 1f);
+            c.glClear(BufferBit.GL_COLOR_BUFFER_BIT);
+            c.glDrawArrays(DrawMode.GL_TRIANGLES, 0, 3);
+            c.glBindBuffer(BufferTarget.GL_ELEMENT_ARRAY_BUFFER, ebo);
+            c.glDrawElements(DrawMode.GL_TRIANGLES, 6,
+                    GLType.GL_UNSIGNED_INT, 0);
+        }
+    }
+}
@@ -0,0 +1,705 @@
+import junit.framework.TestCase;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL20;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Tests of the context's state tracking that run against a
+// RecordingBackend, and so do not need a window or a driver.
+public class GLContextRecordingTest extends TestCase {
+
+    RecordingBackend gl;
+    GLContext c;
+
+    public void testBindBuffer() throws Exception {
+        Buffer b = c.glGenBuffers();
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, null);
+        List<String> expected = Arrays.asList(
+                "glGenBuffers() = 1",
+                "glBindBuffer(34962, 1)",
+                "glBindBuffer(34962, 0)");
+        assertEquals(expected, gl.getCalls());
+        assertFalse(c.isBound(b));
+    }
+
+    public void testEnumerants() throws Exception {
+        Texture t = c.glGenTextures();
+        c.glBindTexture(TextureTarget.GL_TEXTURE_3D, t);
+        c.glDrawElements(DrawMode.GL_TRIANGLES, 6, GLType.GL_INT, 0);
+        c.glDrawElements(DrawMode.GL_TRIANGLES, 6, GLType.GL_UNSIGNED_INT, 0);
+        List<String> expected = Arrays.asList(
+                "glGenTextures() = 1",
+                "glBindTexture(" + GL12.GL_TEXTURE_3D + ", 1)",
+                "glDrawElements(4, 6, " + GL11.GL_INT + ", 0)",
+                "glDrawElements(4, 6, " + GL11.GL_UNSIGNED_INT + ", 0)");
+        assertEquals(expected, gl.getCalls());
+    }
+
+    public void testStateFiltering() throws Exception {
+        c.setStateFiltering(true);
+        Buffer b = c.glGenBuffers();
+        gl.clear();
+        for (int i = 0; i < 10; i++) {
+            c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+        }
+        assertEquals(1, gl.getCalls().size());
+        c.endFrame();
+        assertEquals(9, c.getFrameStats().getElidedCalls());
+    }
+
+    // tracking checks are made by the context at its validation level,
+    // not by the objects it tracks
+    public void testValidationCoversObjects() throws Exception {
+        TextureTarget t = TextureTarget.GL_TEXTURE_2D;
+        Texture texture = c.glGenTextures();
+        c.glBindTexture(t, texture);
+        c.glBindTexture(t, null);
+        c.glBindTexture(t, texture);
+        assertSame(t, texture.getTarget());
+
+        c.setValidationLevel(ValidationLevel.OFF);
+        VertexArray v = c.glGenVertexArrays();
+        c.glBindVertexArray(v);
+        c.glVertexAttribBinding(3, 1);
+        c.glVertexAttribFormat(3, 4, GLType.GL_FLOAT, false, 0);
+        Buffer b = c.createBuffer(64, BufferUsage.GL_STATIC_DRAW);
+        c.glBindVertexBuffer(1, b, 0, 16);
+        assertTrue(b.isAttached());
+    }
+
+    public void testLinkProgram() throws Exception {
+        Shader v = c.glCreateShader(ShaderType.GL_VERTEX_SHADER);
+        c.glShaderSource(v, "void main() {}");
+        c.glCompileShader(v);
+        Shader f = c.glCreateShader(ShaderType.GL_FRAGMENT_SHADER);
+        c.glShaderSource(f, "void main() {}");
+        c.glCompileShader(f);
+        Program p = c.glCreateProgram();
+        c.glAttachShader(p, v);
+        c.glAttachShader(p, f);
+        c.glLinkProgram(p);
+        assertTrue(p.isLinked());
+        c.glUseProgram(p);
+        assertEquals(p, c.getProgram());
+    }
+
+    // active variables are found once at link time, after which looking
+    // them up doesn't reach the driver
+    public void testActiveVariables() throws Exception {
+        gl.addActiveUniform("color", GL20.GL_FLOAT_VEC4, 1);
+        gl.addActiveUniform("lights[0]", GL20.GL_FLOAT_VEC3, 4);
+        gl.addActiveAttrib("position", GL20.GL_FLOAT_VEC3);
+        Program p = linkedProgram();
+        UniformHandle color = p.getUniform("color");
+        assertEquals(UniformType.GL_FLOAT_VEC4, color.getType());
+        UniformHandle lights = p.getUniform("lights");
+        assertSame(lights, p.getUniform("lights[0]"));
+        assertEquals(4, lights.getSize());
+        assertEquals(2, p.getUniforms().length);
+        long calls = gl.getCallCount();
+        assertEquals(color.getLocation(), c.glGetUniformLocation(p, "color"));
+        assertEquals(-1, c.glGetUniformLocation(p, "missing"));
+        assertTrue(c.glGetAttribLocation(p, "position") >= 0);
+        assertEquals(calls, gl.getCallCount());
+    }
+
+    // values a uniform already has are not uploaded again
+    public void testUniformShadow() throws Exception {
+        gl.addActiveUniform("color", GL20.GL_FLOAT_VEC4, 1);
+        gl.addActiveUniform("texture", GL20.GL_SAMPLER_2D, 1);
+        gl.addActiveUniform("weights", GL11.GL_FLOAT, 4);
+        Program p = linkedProgram();
+        c.glUseProgram(p);
+        UniformHandle color = p.getUniform("color");
+        UniformHandle texture = p.getUniform("texture");
+        UniformHandle weights = p.getUniform("weights");
+        gl.clear();
+        // the value of a uniform after a link isn't known, so even setting
+        // it to zero goes through, and without state filtering every set
+        // is uploaded
+        c.glUniform1i(texture, 0);
+        c.glUniform1i(texture, 0);
+        assertEquals(2, gl.getCalls().size());
+        c.setStateFiltering(true);
+        gl.clear();
+        for (int i = 0; i < 3; i++) {
+            c.glUniform4f(color, 1, 0, 0, 1);
+            c.glUniform1i(texture, 0);
+            c.glUniform1fv(weights, new float[] {0.5f, 0.5f});
+        }
+        c.glUniform4f(color, 1, 0, 0, 0.5f);
+        c.glUniform1fv(weights, new float[] {0.5f, 0.5f, 0.25f});
+        List<String> expected = Arrays.asList(
+                "glUniform4f(" + color.getLocation() + ", 1.0, 0.0, 0.0, 1.0)",
+                "glUniform1fv(" + weights.getLocation() + ", 2)",
+                "glUniform4f(" + color.getLocation() + ", 1.0, 0.0, 0.0, 0.5)",
+                "glUniform1fv(" + weights.getLocation() + ", 3)");
+        assertEquals(expected, gl.getCalls());
+        c.endFrame();
+        assertEquals(7, c.getFrameStats().getSkippedUniforms());
+    }
+
+    // values past the end of an array uniform, which only full validation
+    // rejects, don't spill into the shadow of the next uniform
+    public void testUniformShadowOversizedArray() throws Exception {
+        gl.addActiveUniform("weights", GL11.GL_FLOAT, 2);
+        gl.addActiveUniform("scale", GL11.GL_FLOAT, 1);
+        Program p = linkedProgram();
+        c.glUseProgram(p);
+        UniformHandle weights = p.getUniform("weights");
+        UniformHandle scale = p.getUniform("scale");
+        c.setValidationLevel(ValidationLevel.OFF);
+        c.setStateFiltering(true);
+        gl.clear();
+        c.glUniform1fv(weights, new float[] {1, 2, 3});
+        c.glUniform1f(scale, 3);
+        List<String> expected = Arrays.asList(
+                "glUniform1fv(" + weights.getLocation() + ", 3)",
+                "glUniform1f(" + scale.getLocation() + ", 3.0)");
+        assertEquals(expected, gl.getCalls());
+    }
+
+    // ivecN uniforms are set with glUniformNi, and unsigned ints only with
+    // glUniform1ui
+    public void testUniformIntSetters() throws Exception {
+        gl.addActiveUniform("cell", GL20.GL_INT_VEC3, 1);
+        gl.addActiveUniform("mask", GL11.GL_UNSIGNED_INT, 2);
+        Program p = linkedProgram();
+        c.glUseProgram(p);
+        UniformHandle cell = p.getUniform("cell");
+        UniformHandle mask = p.getUniform("mask");
+        c.setStateFiltering(true);
+        gl.clear();
+        c.glUniform3i(cell, 1, 2, 3);
+        c.glUniform3iv(cell, new int[] {1, 2, 3});
+        c.glUniform1ui(mask, 0xff);
+        c.glUniform1uiv(mask, new int[] {0xff, -1});
+        List<String> expected = Arrays.asList(
+                "glUniform3i(" + cell.getLocation() + ", 1, 2, 3)",
+                "glUniform1ui(" + mask.getLocation() + ", 255)",
+                "glUniform1uiv(" + mask.getLocation() + ", 2)");
+        assertEquals(expected, gl.getCalls());
+
+        boolean rejected = false;
+        try {
+            c.glUniform1i(mask, 1);
+        } catch (AssertionError e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+    // block indices come from the link, and redundant block and indexed
+    // buffer bindings are filtered out
+    public void testUniformBlocks() throws Exception {
+        gl.addActiveUniformBlock("Camera", 128);
+        gl.addActiveUniformBlock("Lights", 64);
+        Program p = linkedProgram();
+        assertEquals(1, c.glGetUniformBlockIndex(p, "Lights"));
+        assertEquals(-1, c.glGetUniformBlockIndex(p, "missing"));
+        assertEquals(128, p.getUniformBlockSize(0));
+        Buffer b = c.createBuffer(512, BufferUsage.GL_DYNAMIC_DRAW);
+        c.setStateFiltering(true);
+        gl.clear();
+        c.glUniformBlockBinding(p, 1, 2);
+        c.glUniformBlockBinding(p, 1, 2);
+        c.glUniformBlockBinding(p, 0, 0);
+        c.glBindBufferRange(BufferTarget.GL_UNIFORM_BUFFER, 2, b, 256, 64);
+        c.glBindBufferRange(BufferTarget.GL_UNIFORM_BUFFER, 2, b, 256, 64);
+        c.glBindBufferBase(BufferTarget.GL_UNIFORM_BUFFER, 0, b);
+        List<String> expected = Arrays.asList(
+                "glUniformBlockBinding(" + p.getId() + ", 1, 2)",
+                "glBindBufferRange(35345, 2, 1, 256, 64)",
+                "glBindBufferBase(35345, 0, 1)");
+        assertEquals(expected, gl.getCalls());
+        // the generic binding follows the indexed one
+        assertSame(b, c.getBuffer(BufferTarget.GL_UNIFORM_BUFFER));
+        c.glBindBuffer(BufferTarget.GL_UNIFORM_BUFFER, null);
+        c.glDeleteBuffers(b);
+        assertNull(c.getUniformBinding(2));
+    }
+
+    // blocks start out at the binding points the link gave them, so a
+    // block declared with layout(binding = N) isn't assumed to read from
+    // binding point 0
+    public void testUniformBlockInitialBindings() throws Exception {
+        gl.addActiveUniformBlock("Camera", 128, 3);
+        gl.addActiveUniformBlock("Lights", 64);
+        Program p = linkedProgram();
+        assertEquals(3, p.getUniformBlockBinding(0));
+        assertEquals(0, p.getUniformBlockBinding(1));
+        c.setStateFiltering(true);
+        gl.clear();
+        c.glUniformBlockBinding(p, 0, 3);
+        c.glUniformBlockBinding(p, 0, 0);
+        c.glUniformBlockBinding(p, 1, 0);
+        List<String> expected = Arrays.asList(
+                "glUniformBlockBinding(" + p.getId() + ", 0, 0)");
+        assertEquals(expected, gl.getCalls());
+    }
+
+    // each allocation is aligned for glBindBufferRange, and the ring's
+    // sections move on each frame
+    public void testUniformRing() throws Exception {
+        UniformRing ring = new UniformRing(c, 1024);
+        gl.clear();
+        ring.beginFrame();
+        assertEquals(0, ring.allocate(64));
+        ring.getWriter().putVec4(1, 2, 3, 4);
+        ring.bind(0);
+        assertEquals(256, ring.allocate(100));
+        ring.bind(1);
+        ring.endFrame();
+        ring.beginFrame();
+        assertEquals(1024, ring.allocate(16));
+        try {
+            ring.allocate(1024);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        ring.endFrame();
+        List<String> expected = Arrays.asList(
+                "glBindBufferRange(35345, 0, 1, 0, 64)",
+                "glBindBufferRange(35345, 1, 1, 256, 100)",
+                "glFenceSync() = 1",
+                "glFenceSync() = 2");
+        assertEquals(expected, gl.getCalls());
+        ring.delete();
+        assertTrue(ring.getBuffer().isDeleted());
+    }
+
+    // results are only checked once the driver reports them finished, or
+    // when the program is first used
+    public void testCompileAsync() throws Exception {
+        Shader v = c.glCreateShader(ShaderType.GL_VERTEX_SHADER);
+        c.glShaderSource(v, "void main() {}");
+        CompletableFuture<Shader> compiled = c.compileAsync(v);
+        Program p = c.glCreateProgram();
+        c.glAttachShader(p, v);
+        CompletableFuture<Program> linked = c.linkAsync(p);
+        gl.setIncomplete(v.getId(), true);
+        gl.setIncomplete(p.getId(), true);
+        assertEquals(2, c.pollCompilation());
+        gl.setIncomplete(v.getId(), false);
+        assertEquals(1, c.pollCompilation());
+        assertSame(v, compiled.get());
+        assertFalse(linked.isDone());
+        c.glUseProgram(p);
+        assertSame(p, linked.get());
+        assertEquals(0, c.pollCompilation());
+
+        // a failed compile fails the link that depends on it
+        Shader f = c.glCreateShader(ShaderType.GL_FRAGMENT_SHADER);
+        c.glShaderSource(f, "void main() { error }");
+        gl.failCompile(f.getId());
+        compiled = c.compileAsync(f);
+        Program q = c.glCreateProgram();
+        c.glAttachShader(q, f);
+        linked = c.linkAsync(q);
+        c.finishCompilation();
+        assertTrue(compiled.isCompletedExceptionally());
+        assertTrue(linked.isCompletedExceptionally());
+    }
+
+    // a divisor may be set before the attribute's pointer, which keeps it
+    public void testDivisorBeforePointer() throws Exception {
+        c.setValidationLevel(ValidationLevel.OFF);
+        VertexArray v = c.glGenVertexArrays();
+        c.glBindVertexArray(v);
+        c.glVertexAttribDivisor(20, 1);
+        assertFalse(v.hasPointers());
+        c.glVertexAttribPointer(20, 4, GLType.GL_FLOAT, false, 16, 0);
+        assertTrue(v.hasPointers());
+        assertEquals(1, v.getDivisor(20));
+    }
+
+    // per-instance data is uploaded with one call and drawn with one call
+    public void testInstancedDraw() throws Exception {
+        VertexArray v = c.glGenVertexArrays();
+        c.glBindVertexArray(v);
+        Buffer mesh = c.createBuffer(36, BufferUsage.GL_STATIC_DRAW);
+        c.replaceBuffer(BufferTarget.GL_ARRAY_BUFFER, mesh);
+        c.glVertexAttribPointer(0, 3, GLType.GL_FLOAT, false, 12, 0);
+        InstanceBuffer instances = new InstanceBuffer(c, 20);
+        assertEquals(5, instances.attach(1));
+        assertEquals(1, v.getDivisor(4));
+        assertEquals(0, v.getDivisor(0));
+        ByteBuffer data = ByteBuffer.allocateDirect(100 * 80);
+        gl.clear();
+        assertEquals(100, instances.upload(data));
+        c.glDrawArraysInstanced(DrawMode.GL_TRIANGLES, 0, 3,
+                instances.getInstanceCount());
+        List<String> expected = Arrays.asList(
+                "glBindBuffer(34962, 2)",
+                "glBufferData(34962, 8000, 35040)",
+                "glBufferSubData(34962, 0, 8000)",
+                "glBindBuffer(34962, 1)",
+                "glDrawArraysInstanced(4, 0, 3, 100)");
+        assertEquals(expected, gl.getCalls());
+
+        // an instanced attribute whose buffer is gone is caught
+        c.replaceBuffer(BufferTarget.GL_ARRAY_BUFFER, null);
+        instances.delete();
+        boolean rejected = false;
+        try {
+            c.glDrawArraysInstanced(DrawMode.GL_TRIANGLES, 0, 3, 100);
+        } catch (AssertionError e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+    // commands built on the CPU are uploaded and drawn with one call
+    public void testMultiDrawIndirect() throws Exception {
+        IndirectCommandBuilder commands = new IndirectCommandBuilder(1);
+        for (int i = 0; i < 100; i++) {
+            commands.addElements(36, 1, i * 36, i * 24, i);
+        }
+        ByteBuffer data = commands.getCommands();
+        assertEquals(2000, data.remaining());
+        assertEquals(99 * 24, data.getInt(99 * 20 + 12));
+        VertexArray v = c.glGenVertexArrays();
+        c.glBindVertexArray(v);
+        c.glVertexAttribPointer(0, 3, GLType.GL_FLOAT, false, 12, 0);
+        Buffer b = c.glGenBuffers();
+        c.glBindBuffer(BufferTarget.GL_DRAW_INDIRECT_BUFFER, b);
+        c.streamBufferData(BufferTarget.GL_DRAW_INDIRECT_BUFFER, data,
+                BufferUsage.GL_DYNAMIC_DRAW);
+        gl.clear();
+        c.glMultiDrawElementsIndirect(DrawMode.GL_TRIANGLES,
+                GLType.GL_UNSIGNED_INT, 0, commands.getCount(), 0);
+        assertEquals(Arrays.asList(
+                "glMultiDrawElementsIndirect(4, 5125, 0, 100, 0)"),
+                gl.getCalls());
+        commands.clear();
+        try {
+            commands.addArrays(3, 1, 0, 0).addElements(3, 1, 0, 0, 0);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    // consecutive draws are merged until something else is called
+    public void testDrawBatching() throws Exception {
+        c.setValidationLevel(ValidationLevel.PER_FRAME);
+        c.setDrawBatching(true);
+        VertexArray[] v = c.glGenVertexArrays(2);
+        for (int i = 1; i >= 0; i--) {
+            c.glBindVertexArray(v[i]);
+            c.glVertexAttribPointer(0, 3, GLType.GL_FLOAT, false, 12, 0);
+        }
+        gl.clear();
+        for (int i = 0; i < 3; i++) {
+            c.glDrawArrays(DrawMode.GL_TRIANGLES, i * 3, 3);
+        }
+        assertEquals(0, gl.getCalls().size());
+        c.glDrawElements(DrawMode.GL_TRIANGLES, 6, GLType.GL_UNSIGNED_INT, 0);
+        c.glDrawElements(DrawMode.GL_TRIANGLES, 6, GLType.GL_UNSIGNED_INT, 24);
+        c.glBindVertexArray(v[1]);
+        for (int i = 0; i < 4; i++) {
+            c.glDrawArrays(DrawMode.GL_TRIANGLES, 0, 3);
+        }
+        c.endFrame();
+        assertEquals(Arrays.asList(
+                "glMultiDrawArrays(4, [0 3 6], [3 3 3])",
+                "glMultiDrawElements(4, [6 6], 5125, [0 24])",
+                "glBindVertexArray(" + v[1].getId() + ")",
+                "glMultiDrawArrays(4, [0 0 0 0], [3 3 3 3])"),
+                gl.getCalls());
+        FrameStats stats = c.getFrameStats();
+        assertEquals(9, stats.getBatchedDraws());
+        assertEquals(3, stats.getDrawBatches());
+        assertEquals(3f, stats.getMergeRatio());
+
+        c.setDrawBatching(false);
+        gl.clear();
+        c.glDrawArrays(DrawMode.GL_TRIANGLES, 0, 3);
+        assertEquals(Arrays.asList("glDrawArrays(4, 0, 3)"), gl.getCalls());
+    }
+
+    // draws held back are issued by flushDraws(), as they must be before
+    // state is changed by calling GL directly
+    public void testFlushDraws() throws Exception {
+        c.setValidationLevel(ValidationLevel.PER_FRAME);
+        c.setDrawBatching(true);
+        VertexArray v = c.glGenVertexArrays();
+        c.glBindVertexArray(v);
+        c.glVertexAttribPointer(0, 3, GLType.GL_FLOAT, false, 12, 0);
+        gl.clear();
+        c.glDrawArrays(DrawMode.GL_TRIANGLES, 0, 3);
+        c.glDrawArrays(DrawMode.GL_TRIANGLES, 3, 3);
+        assertEquals(0, gl.getCalls().size());
+        c.flushDraws();
+        assertEquals(Arrays.asList("glMultiDrawArrays(4, [0 3], [3 3])"),
+                gl.getCalls());
+        // nothing is left to be merged with the draws that follow
+        c.glDrawArrays(DrawMode.GL_TRIANGLES, 6, 3);
+        c.flushDraws();
+        assertEquals("glDrawArrays(4, 6, 3)", gl.getCalls().get(1));
+    }
+
+    private Program linkedProgram() {
+        Shader v = c.glCreateShader(ShaderType.GL_VERTEX_SHADER);
+        c.glShaderSource(v, "void main() {}");
+        c.glCompileShader(v);
+        Program p = c.glCreateProgram();
+        c.glAttachShader(p, v);
+        c.glLinkProgram(p);
+        return p;
+    }
+
+    public void testValidationFull() throws Exception {
+        gl.setError(GL11.GL_INVALID_OPERATION);
+        try {
+            c.glGenBuffers();
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("glGenBuffers"));
+        }
+    }
+
+    // errors are only looked for at the end of the frame, and are reported
+    // along with the calls made during the frame
+    public void testValidationPerFrame() throws Exception {
+        c.setValidationLevel(ValidationLevel.PER_FRAME);
+        Buffer b = c.glGenBuffers();
+        gl.setError(GL11.GL_INVALID_OPERATION);
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+        try {
+            c.endFrame();
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("glBindBuffer"));
+        }
+        c.endFrame();
+    }
+
+    public void testValidationOff() throws Exception {
+        c.setValidationLevel(ValidationLevel.OFF);
+        gl.setError(GL11.GL_INVALID_OPERATION);
+        c.glGenBuffers();
+        c.endFrame();
+    }
+
+    // with debug output, errors are delivered by callback and glGetError
+    // is never polled
+    public void testDebugOutput() throws Exception {
+        assertTrue(c.enableDebugOutput());
+        gl.clear();
+        Buffer b = c.glGenBuffers();
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+        assertEquals(gl.getCalls().size(), gl.getCallCount());
+        gl.setError(GL11.GL_INVALID_OPERATION);
+        try {
+            c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, null);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("glBindBuffer"));
+        }
+    }
+
+    public void testBatchGenAndDelete() throws Exception {
+        Buffer[] bs = c.glGenBuffers(3);
+        Texture[] ts = c.glGenTextures(2);
+        c.glDeleteBuffers(bs);
+        c.glDeleteTextures(ts);
+        List<String> expected = Arrays.asList(
+                "glGenBuffers(3) = 1..3",
+                "glGenTextures(2) = 1..2",
+                "glDeleteBuffers(1 2 3)",
+                "glDeleteTextures(1 2)");
+        assertEquals(expected, gl.getCalls());
+        assertNull(c.getBuffer(2));
+        assertTrue(bs[2].isDeleted());
+    }
+
+    // with pooling, names come from one driver call per block; buffer
+    // names are recycled, other names are deleted a block at a time
+    public void testNamePool() throws Exception {
+        c.setNamePoolBlockSize(4);
+        Buffer[] bs = c.glGenBuffers(3);
+        c.glGenBuffers();
+        c.glDeleteBuffers(bs[1]);
+        Buffer recycled = c.glGenBuffers();
+        assertEquals(bs[1].getId(), recycled.getId());
+        assertNotSame(bs[1], recycled);
+        VertexArray[] as = c.glGenVertexArrays(4);
+        c.glDeleteVertexArrays(as);
+        c.glGenBuffers();
+        List<String> expected = Arrays.asList(
+                "glGenBuffers(4) = 1..4",
+                "glGenVertexArrays(4) = 1..4",
+                "glDeleteVertexArrays(1 2 3 4)",
+                "glGenBuffers(4) = 5..8");
+        assertEquals(expected, gl.getCalls());
+        gl.clear();
+        c.trimNamePools();
+        expected = Arrays.asList("glDeleteBuffers(8 7 6)");
+        assertEquals(expected, gl.getCalls());
+    }
+
+    // a buffer with immutable storage, or one a vertex array reads, is
+    // deleted in the driver rather than recycled, so the next buffer
+    // from the pool can be specified afresh
+    public void testNamePoolDeletesImmutable() throws Exception {
+        c.setNamePoolBlockSize(4);
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        Buffer b = c.glGenBuffers();
+        c.glBindBuffer(t, b);
+        c.glBufferStorage(t, 64, new MapBit[] {MapBit.GL_MAP_WRITE_BIT},
+                false);
+        c.glBindBuffer(t, null);
+        gl.clear();
+        c.glDeleteBuffers(b);
+        assertEquals(Arrays.asList("glDeleteBuffers(" + b.getId() + ")"),
+                gl.getCalls());
+        Buffer next = c.glGenBuffers();
+        assertTrue(next.getId() != b.getId());
+        c.glBindBuffer(t, next);
+        c.glBufferData(t, 64, BufferUsage.GL_STATIC_DRAW);
+        VertexArray v = c.glGenVertexArrays();
+        c.glBindVertexArray(v);
+        c.glVertexAttribPointer(0, 4, GLType.GL_FLOAT, false, 16, 0);
+        c.glBindVertexArray(null);
+        c.glBindBuffer(t, null);
+        gl.clear();
+        c.glDeleteBuffers(new Buffer[] {next});
+        assertEquals(Arrays.asList("glDeleteBuffers(" + next.getId() + ")"),
+                gl.getCalls());
+        Buffer mutable = c.glGenBuffers();
+        assertTrue(mutable.getId() != next.getId());
+        c.glDeleteBuffers(mutable);
+        assertEquals(mutable.getId(), c.glGenBuffers().getId());
+    }
+
+    // storage flags that aren't allowed leave the buffer without storage
+    public void testBufferStorageBadFlags() throws Exception {
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        Buffer b = c.glGenBuffers();
+        c.glBindBuffer(t, b);
+        try {
+            c.glBufferStorage(t, 64,
+                    new MapBit[] {MapBit.GL_MAP_UNSYNCHRONIZED_BIT}, false);
+            fail();
+        } catch (AssertionError e) {
+        }
+        assertFalse(b.hasData());
+    }
+
+    // a buffer left at an indexed binding point is deleted in the driver,
+    // which clears the binding, rather than having its name handed on
+    public void testNamePoolDeletesIndexBound() throws Exception {
+        c.setNamePoolBlockSize(4);
+        BufferTarget t = BufferTarget.GL_UNIFORM_BUFFER;
+        Buffer b = c.createBuffer(256, BufferUsage.GL_DYNAMIC_DRAW);
+        c.glBindBufferBase(t, 1, b);
+        c.glBindBuffer(t, null);
+        gl.clear();
+        c.glDeleteBuffers(b);
+        assertEquals(Arrays.asList("glDeleteBuffers(" + b.getId() + ")"),
+                gl.getCalls());
+        Buffer next = c.glGenBuffers();
+        assertTrue(next.getId() != b.getId());
+        assertNull(c.getUniformBinding(1));
+    }
+
+    // a buffer can't be updated through the driver while it is mapped,
+    // unless the mapping is persistent
+    public void testMapBuffer() throws Exception {
+        Buffer b = c.glGenBuffers();
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        c.glBindBuffer(t, b);
+        c.glBufferData(t, 64, BufferUsage.GL_DYNAMIC_DRAW);
+        MapBit[] write = {MapBit.GL_MAP_WRITE_BIT};
+        assertEquals(64, c.glMapBuffer(t, write).remaining());
+        boolean rejected = false;
+        try {
+            c.glBufferSubData(t, 0, ByteBuffer.allocateDirect(4));
+        } catch (AssertionError e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+        assertTrue(c.glUnmapBuffer(t));
+        c.glBufferSubData(t, 0, ByteBuffer.allocateDirect(4));
+    }
+
+    // copies bind over the copy targets and put back what was there
+    public void testCopyBufferSubData() throws Exception {
+        Buffer[] bs = c.glGenBuffers(3);
+        BufferTarget t = BufferTarget.GL_COPY_READ_BUFFER;
+        for (Buffer b : bs) {
+            c.replaceBuffer(t, b);
+            c.glBufferData(t, 64, BufferUsage.GL_STATIC_DRAW);
+        }
+        gl.clear();
+        c.glCopyBufferSubData(bs[0], bs[1], 0, 32, 32);
+        c.glClearBufferSubData(bs[1], 0, 16, 0);
+        List<String> expected = Arrays.asList(
+                "glBindBuffer(36662, 1)",
+                "glBindBuffer(36663, 2)",
+                "glCopyBufferSubData(36662, 36663, 0, 32, 32)",
+                "glBindBuffer(36662, 3)",
+                "glBindBuffer(36663, 0)",
+                "glBindBuffer(36663, 2)",
+                "glClearBufferSubData(36663, 0, 16, 0)",
+                "glBindBuffer(36663, 0)");
+        assertEquals(expected, gl.getCalls());
+        assertTrue(c.isBoundTo(t, bs[2]));
+        assertFalse(c.isBound(BufferTarget.GL_COPY_WRITE_BUFFER));
+        boolean rejected = false;
+        try {
+            c.glCopyBufferSubData(bs[0], bs[1], 0, 48, 32);
+        } catch (AssertionError e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+    // streaming orphans the old store and fills a new one of the largest
+    // size seen so far
+    public void testStreamBufferData() throws Exception {
+        Buffer b = c.glGenBuffers();
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        c.glBindBuffer(t, b);
+        gl.clear();
+        c.streamBufferData(t, ByteBuffer.allocateDirect(64),
+                BufferUsage.GL_STREAM_DRAW);
+        c.streamBufferData(t, ByteBuffer.allocateDirect(16),
+                BufferUsage.GL_STREAM_DRAW);
+        List<String> expected = Arrays.asList(
+                "glBufferData(34962, 64, 35040)",
+                "glBufferSubData(34962, 0, 64)",
+                "glBufferData(34962, 64, 35040)",
+                "glBufferSubData(34962, 0, 16)");
+        assertEquals(expected, gl.getCalls());
+        assertEquals(1, b.getOrphanCount());
+        c.endFrame();
+        assertEquals(1, c.getFrameStats().getOrphanedBuffers());
+    }
+
+    // static buffers are only specified once
+    public void testRespecifyStatic() throws Exception {
+        Buffer b = c.glGenBuffers();
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        c.glBindBuffer(t, b);
+        c.glBufferData(t, 64, BufferUsage.GL_STATIC_DRAW);
+        boolean rejected = false;
+        try {
+            c.glBufferData(t, 64, BufferUsage.GL_STATIC_DRAW);
+        } catch (AssertionError e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        gl = new RecordingBackend();
+        c = new GLContext(gl);
+    }
+}
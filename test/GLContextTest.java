@@ -3,6 +3,7 @@ import org.lwjgl.BufferUtils;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.opengl.GL;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
@@ -296,6 +297,28 @@ public class GLContextTest extends TestCase {
         assertNull(texture.getTarget());
     }
 
+    // rebinding the object already bound to a target should not reach the
+    // driver when state filtering is enabled
+    public void testStateFiltering() throws Exception {
+        GLContext c = new GLContext();
+        c.setStateFiltering(true);
+        Buffer b = c.glGenBuffers();
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+        Texture texture = c.glGenTextures();
+        c.glBindTexture(TextureTarget.GL_TEXTURE_2D, texture);
+        c.glBindTexture(TextureTarget.GL_TEXTURE_2D, texture);
+        VertexArray vao = c.glGenVertexArrays();
+        c.glBindVertexArray(vao);
+        c.glBindVertexArray(vao);
+        c.glUseProgram(null);
+        assertTrue(c.isBoundTo(BufferTarget.GL_ARRAY_BUFFER, b));
+        c.endFrame();
+        assertEquals(4, c.getFrameStats().getElidedCalls());
+        c.endFrame();
+        assertEquals(0, c.getFrameStats().getElidedCalls());
+    }
+
     public void testTexStorage2D() throws Exception {
         GLContext c = new GLContext();
         Texture texture = c.glGenTextures();
@@ -323,15 +346,58 @@ public class GLContextTest extends TestCase {
     }
 
     public void testMapBuffer() throws Exception {
+        GLContext c = new GLContext();
+        Buffer b = c.glGenBuffers();
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        c.glBindBuffer(t, b);
+        c.glBufferData(t, 64, BufferUsage.GL_DYNAMIC_DRAW);
+        MapBit[] write = {MapBit.GL_MAP_WRITE_BIT};
+        ByteBuffer mapping = c.glMapBuffer(t, write);
+        assertEquals(64, mapping.remaining());
+        mapping.putFloat(0, 1.0f);
+        assertTrue(c.glUnmapBuffer(t));
+    }
 
+    // runs on any driver with ARB_buffer_storage, including Mesa llvmpipe
+    public void testStreamRing() throws Exception {
+        if (!GL.getCapabilities().GL_ARB_buffer_storage) return;
+        GLContext c = new GLContext();
+        StreamRing ring = new StreamRing(c, 1000);
+        for (int frame = 0; frame < 10; frame++) {
+            ByteBuffer section = ring.begin();
+            assertEquals(1024, section.remaining());
+            section.putFloat(frame);
+            ring.end();
+        }
+        ring.delete();
+        assertTrue(ring.getBuffer().isDeleted());
     }
 
     public void testClearBufferSubData() throws Exception {
-
+        if (!GL.getCapabilities().OpenGL43) return;
+        GLContext c = new GLContext();
+        Buffer b = c.glGenBuffers();
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+        c.glBufferData(BufferTarget.GL_ARRAY_BUFFER, 64,
+                BufferUsage.GL_STATIC_DRAW);
+        c.glClearBufferSubData(b, 0, 64, 0);
+        assert c.isBoundTo(BufferTarget.GL_ARRAY_BUFFER, b);
     }
 
     public void testCopyBufferSubData() throws Exception {
-
+        GLContext c = new GLContext();
+        Buffer src = c.glGenBuffers();
+        Buffer dst = c.glGenBuffers();
+        BufferTarget t = BufferTarget.GL_ARRAY_BUFFER;
+        c.glBindBuffer(t, src);
+        c.glBufferData(t, BufferUtils.createFloatBuffer(16),
+                BufferUsage.GL_STATIC_DRAW);
+        c.glBindBuffer(t, null);
+        c.glBindBuffer(t, dst);
+        c.glBufferData(t, 64, BufferUsage.GL_STATIC_DRAW);
+        c.glCopyBufferSubData(src, dst, 0, 0, 64);
+        assert c.isBoundTo(t, dst);
+        assert !c.isBound(BufferTarget.GL_COPY_READ_BUFFER);
     }
 
     public void testVertexAttribPointer() throws Exception {
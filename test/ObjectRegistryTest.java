@@ -0,0 +1,50 @@
+import junit.framework.TestCase;
+
+public class ObjectRegistryTest extends TestCase {
+
+    public void testPutGetRemove() throws Exception {
+        ObjectRegistry<Buffer> r = new ObjectRegistry<Buffer>();
+        Buffer b = new Buffer(3);
+        r.put(b);
+        assertSame(b, r.get(3));
+        assertNull(r.get(2));
+        assertEquals(1, r.size());
+        r.remove(3);
+        assertNull(r.get(3));
+        assertTrue(r.isEmpty());
+    }
+
+    // names beyond the initial capacity grow the table
+    public void testGrow() throws Exception {
+        ObjectRegistry<Buffer> r = new ObjectRegistry<Buffer>();
+        for (int i = 1; i <= 10000; i++) {
+            r.put(new Buffer(i));
+        }
+        assertEquals(10000, r.size());
+        assertEquals(9999, r.get(9999).getId());
+        assertNull(r.get(10001));
+        assertNull(r.get(-1));
+    }
+
+    // capacities near the limit grow without overflowing
+    public void testNewCapacity() throws Exception {
+        assertEquals(128, ObjectRegistry.newCapacity(64, 65));
+        assertEquals(1000, ObjectRegistry.newCapacity(64, 1000));
+        assertEquals(Integer.MAX_VALUE - 8,
+                ObjectRegistry.newCapacity(1 << 30, (1 << 30) + 1));
+        try {
+            ObjectRegistry.newCapacity(64, Integer.MAX_VALUE);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testReplace() throws Exception {
+        ObjectRegistry<Buffer> r = new ObjectRegistry<Buffer>();
+        r.put(new Buffer(1));
+        Buffer b = new Buffer(1);
+        r.put(b);
+        assertSame(b, r.get(1));
+        assertEquals(1, r.size());
+    }
+}
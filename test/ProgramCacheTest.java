@@ -0,0 +1,90 @@
+import junit.framework.TestCase;
+import org.lwjgl.opengl.GL11;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+public class ProgramCacheTest extends TestCase {
+
+    static final ShaderType[] TYPES = {
+            ShaderType.GL_VERTEX_SHADER,
+            ShaderType.GL_FRAGMENT_SHADER
+    };
+    static final String[] SOURCES = {
+            "void main() { gl_Position = vec4(0); }",
+            "void main() {}"
+    };
+
+    RecordingBackend gl;
+    GLContext c;
+    File directory;
+
+    // the first run compiles and stores the binary, and later runs load it
+    public void testWarmStart() throws Exception {
+        ProgramCache cache = new ProgramCache(c, directory);
+        Program cold = cache.load(TYPES, SOURCES);
+        assertEquals(1, cache.getMisses());
+        assertTrue(gl.getCalls().contains("glLinkProgram(" +
+                cold.getId() + ")"));
+
+        cache = new ProgramCache(c, directory);
+        gl.clear();
+        Program warm = cache.load(TYPES, SOURCES);
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertEquals("glProgramBinary(" + warm.getId() + ", 1, 10)",
+                gl.getCalls().get(1));
+        assertFalse(gl.getCalls().contains("glCompileShader(" +
+                (warm.getId() + 1) + ")"));
+        c.glUseProgram(warm);
+    }
+
+    // a new driver clears the directory, and a binary the driver rejects
+    // falls back to compiling
+    public void testDriverChange() throws Exception {
+        new ProgramCache(c, directory).load(TYPES, SOURCES);
+        assertEquals(2, directory.list().length);
+
+        gl.setString(GL11.GL_VERSION, "4.6");
+        ProgramCache cache = new ProgramCache(new GLContext(gl), directory);
+        assertEquals(1, directory.list().length);
+        cache.load(TYPES, SOURCES);
+        assertEquals(1, cache.getMisses());
+
+        // a binary the driver refuses, though the driver strings match
+        for (File f : directory.listFiles()) {
+            if (!f.getName().endsWith(".bin")) continue;
+            DataOutputStream out = new DataOutputStream(
+                    new FileOutputStream(f));
+            out.writeInt(1);
+            out.writeBytes("corrupt");
+            out.close();
+        }
+        GLContext other = new GLContext(gl);
+        cache = new ProgramCache(other, directory);
+        Program p = cache.load(TYPES, SOURCES);
+        assertEquals(1, cache.getRejections());
+        assertEquals(1, cache.getMisses());
+        other.glUseProgram(p);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        gl = new RecordingBackend();
+        c = new GLContext(gl);
+        directory = File.createTempFile("programs", "");
+        directory.delete();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+}
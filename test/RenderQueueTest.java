@@ -0,0 +1,108 @@
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class RenderQueueTest extends TestCase {
+
+    RecordingBackend gl;
+    GLContext c;
+    RenderQueue queue;
+
+    // draws are grouped by state, so each program, texture and vertex
+    // array is bound once
+    public void testGrouping() throws Exception {
+        Program[] p = {linkedProgram(), linkedProgram()};
+        Texture[] t = c.glGenTextures(2);
+        VertexArray v = c.glGenVertexArrays();
+        gl.clear();
+        for (int i = 0; i < 8; i++) {
+            queue.submit(0, p[i % 2], t[i / 2 % 2], v, 1,
+                    DrawMode.GL_TRIANGLES, 3, GLType.GL_UNSIGNED_INT, i * 12);
+        }
+        assertEquals(8, queue.flush());
+        assertEquals(0, queue.size());
+        assertEquals(3 + 7 + 3, queue.getUnsortedStateChanges());
+        assertEquals(3 + 1 + 2 + 1, queue.getStateChanges());
+        int uses = 0;
+        int binds = 0;
+        for (String call : gl.getCalls()) {
+            if (call.startsWith("glUseProgram")) uses++;
+            if (call.startsWith("glBindTexture")) binds++;
+        }
+        assertEquals(2, uses);
+        assertEquals(4, binds);
+    }
+
+    // passes come first, and then the nearest draws of the same state
+    public void testOrder() throws Exception {
+        Program p = linkedProgram();
+        VertexArray v = c.glGenVertexArrays();
+        float[] depths = {5, 0.5f, 100, 2, 0};
+        for (int i = 0; i < depths.length; i++) {
+            queue.submit(i == 0 ? 1 : 0, p, null, v, depths[i],
+                    DrawMode.GL_TRIANGLES, 3, GLType.GL_UNSIGNED_INT, i);
+        }
+        gl.clear();
+        queue.flush();
+        assertEquals(Arrays.asList(4, 1, 3, 2, 0), drawOffsets());
+    }
+
+    // the draws are issued in ascending order of key
+    public void testSort() throws Exception {
+        Program[] p = {linkedProgram(), linkedProgram(), linkedProgram()};
+        Texture[] t = c.glGenTextures(3);
+        VertexArray[] v = c.glGenVertexArrays(3);
+        Random random = new Random(1);
+        long[] keys = new long[500];
+        for (int i = 0; i < keys.length; i++) {
+            int pass = random.nextInt(3);
+            Program program = p[random.nextInt(3)];
+            Texture texture = t[random.nextInt(3)];
+            VertexArray vertexArray = v[random.nextInt(3)];
+            float depth = random.nextFloat() * 100;
+            keys[i] = RenderQueue.key(pass, program, texture, vertexArray,
+                    depth);
+            queue.submit(pass, program, texture, vertexArray, depth,
+                    DrawMode.GL_TRIANGLES, 3, GLType.GL_UNSIGNED_INT, i);
+        }
+        gl.clear();
+        queue.flush();
+        List<Integer> order = drawOffsets();
+        for (int i = 1; i < order.size(); i++) {
+            assertTrue(keys[order.get(i - 1)] <= keys[order.get(i)]);
+        }
+        assertEquals(keys.length, order.size());
+    }
+
+    // the offsets of the draws recorded, in the order they were issued
+    private List<Integer> drawOffsets() {
+        List<Integer> offsets = new ArrayList<Integer>();
+        for (String call : gl.getCalls()) {
+            if (!call.startsWith("glDrawElements")) continue;
+            String last = call.substring(call.lastIndexOf(' ') + 1,
+                    call.length() - 1);
+            offsets.add(Integer.parseInt(last));
+        }
+        return offsets;
+    }
+
+    private Program linkedProgram() {
+        Shader v = c.glCreateShader(ShaderType.GL_VERTEX_SHADER);
+        c.glShaderSource(v, "void main() {}");
+        c.glCompileShader(v);
+        Program p = c.glCreateProgram();
+        c.glAttachShader(p, v);
+        c.glLinkProgram(p);
+        return p;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        gl = new RecordingBackend();
+        c = new GLContext(gl);
+        queue = new RenderQueue(c);
+    }
+}
@@ -0,0 +1,83 @@
+import junit.framework.TestCase;
+
+public class ShaderCacheTest extends TestCase {
+
+    static final String LIGHTING =
+            "#version 330\n" +
+            "#include \"common\"\n" +
+            "#include \"common\"\n" +
+            "void main() {}\n";
+
+    RecordingBackend gl;
+    GLContext c;
+    ShaderCache cache;
+
+    // the same source gives the same shader, compiled once
+    public void testDeduplicate() throws Exception {
+        Shader a = cache.get(ShaderType.GL_VERTEX_SHADER, "void main() {}");
+        Shader b = cache.get(ShaderType.GL_VERTEX_SHADER, "void main() {}");
+        Shader f = cache.get(ShaderType.GL_FRAGMENT_SHADER, "void main() {}");
+        assertSame(a, b);
+        assertNotSame(a, f);
+        assertTrue(a.isCompiled());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        int compiles = 0;
+        for (String call : gl.getCalls()) {
+            if (call.startsWith("glCompileShader")) compiles++;
+        }
+        assertEquals(2, compiles);
+    }
+
+    // defines go after #version, and each include is expanded once
+    public void testVariants() throws Exception {
+        cache.addInclude("common", "uniform vec4 color;");
+        String expected = "#version 330\n" +
+                "#define SKINNED\n" +
+                "#define LIGHTS 4\n" +
+                "uniform vec4 color;\n" +
+                "void main() {}\n";
+        assertEquals(expected, cache.expand(LIGHTING,
+                new String[] {"SKINNED", "LIGHTS 4"}));
+        Shader plain = cache.get(ShaderType.GL_FRAGMENT_SHADER, LIGHTING);
+        Shader skinned = cache.get(ShaderType.GL_FRAGMENT_SHADER, LIGHTING,
+                new String[] {"SKINNED"});
+        assertNotSame(plain, skinned);
+        assertSame(skinned, cache.get(ShaderType.GL_FRAGMENT_SHADER,
+                LIGHTING, new String[] {"SKINNED"}));
+        assertEquals(2, cache.size());
+        try {
+            cache.get(ShaderType.GL_FRAGMENT_SHADER, "#include \"none\"");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    // #version is found after a leading licence comment and blank lines
+    public void testVersionAfterComment() throws Exception {
+        String source = "// Copyright\n" +
+                "/* licence\n" +
+                "   text */\n" +
+                "\n" +
+                "#version 330\n" +
+                "void main() {}\n";
+        String expected = "// Copyright\n" +
+                "/* licence\n" +
+                "   text */\n" +
+                "\n" +
+                "#version 330\n" +
+                "#define SKINNED\n" +
+                "void main() {}\n";
+        assertEquals(expected, cache.expand(source,
+                new String[] {"SKINNED"}));
+        assertEquals("#define SKINNED\nvoid main() {}\n",
+                cache.expand("void main() {}", new String[] {"SKINNED"}));
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        gl = new RecordingBackend();
+        c = new GLContext(gl);
+        cache = new ShaderCache(c);
+    }
+}
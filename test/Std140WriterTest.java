@@ -0,0 +1,68 @@
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class Std140WriterTest extends TestCase {
+
+    ByteBuffer buffer;
+    Std140Writer w;
+
+    // layout(std140) uniform Block {
+    //     float a;     // 0
+    //     vec2 b;      // 8
+    //     vec3 c;      // 16
+    //     int d;       // 28, in the vec3's padding
+    //     vec4 e;      // 32
+    //     mat3 f;      // 48, three 16 byte columns
+    //     float g[2];  // 96, 16 bytes per element
+    //     float h;     // 128
+    // };
+    public void testLayout() throws Exception {
+        w.putFloat(1);
+        w.putVec2(2, 3);
+        w.putVec3(4, 5, 6);
+        w.putInt(7);
+        w.putVec4(8, 9, 10, 11);
+        w.putMat3(new float[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        w.putFloatArray(new float[] {12, 13});
+        w.putFloat(14);
+        assertEquals(132, w.getOffset());
+        assertEquals(144, w.getSize());
+        assertEquals(1f, buffer.getFloat(0));
+        assertEquals(2f, buffer.getFloat(8));
+        assertEquals(6f, buffer.getFloat(24));
+        assertEquals(7, buffer.getInt(28));
+        assertEquals(11f, buffer.getFloat(44));
+        assertEquals(3f, buffer.getFloat(56));
+        assertEquals(4f, buffer.getFloat(64));
+        assertEquals(9f, buffer.getFloat(88));
+        assertEquals(12f, buffer.getFloat(96));
+        assertEquals(13f, buffer.getFloat(112));
+        assertEquals(14f, buffer.getFloat(128));
+        // absolute puts leave the buffer's position alone
+        assertEquals(0, buffer.position());
+    }
+
+    // struct Light { vec3 position; float range; };
+    // layout(std140) uniform Block { float count; Light lights[2]; };
+    public void testStructs() throws Exception {
+        w.start(buffer, 256);
+        w.putFloat(2);
+        for (int i = 0; i < 2; i++) {
+            w.beginStruct();
+            w.putVec3(i, i, i);
+            w.putFloat(10 + i);
+            w.endStruct();
+        }
+        assertEquals(48, w.getOffset());
+        assertEquals(10f, buffer.getFloat(256 + 28));
+        assertEquals(11f, buffer.getFloat(256 + 44));
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        buffer = ByteBuffer.allocate(512).order(ByteOrder.nativeOrder());
+        w = new Std140Writer().start(buffer, 0);
+    }
+}
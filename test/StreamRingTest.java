@@ -0,0 +1,78 @@
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+public class StreamRingTest extends TestCase {
+
+    RecordingBackend gl;
+    GLContext c;
+
+    // the buffer is created and mapped once, and each section is only
+    // waited on when it comes round again
+    public void testFrames() throws Exception {
+        StreamRing ring = new StreamRing(c, 100);
+        assertEquals(StreamRing.ALIGNMENT, ring.getSectionSize());
+        List<String> setup = Arrays.asList(
+                "glGenBuffers() = 1",
+                "glBindBuffer(36663, 1)",
+                "glBufferStorage(36663, 768, 194)",
+                "glMapBufferRange(36663, 0, 768, 194)",
+                "glBindBuffer(36663, 0)");
+        assertEquals(setup, gl.getCalls());
+        gl.clear();
+        for (int frame = 0; frame < 3; frame++) {
+            assertEquals(frame * 256, ring.getOffset());
+            ByteBuffer section = ring.begin();
+            assertEquals(256, section.remaining());
+            section.putInt(frame);
+            ring.end();
+        }
+        assertEquals(Arrays.asList("glFenceSync() = 1", "glFenceSync() = 2",
+                "glFenceSync() = 3"), gl.getCalls());
+        gl.clear();
+        assertEquals(0, ring.getOffset());
+        ring.begin();
+        List<String> expected = Arrays.asList(
+                "glClientWaitSync(1, 0)",
+                "glDeleteSync(1)");
+        assertEquals(expected, gl.getCalls());
+        assertEquals(0, ring.getStalls());
+    }
+
+    // a section still in use by the GPU is waited for, and counted
+    public void testStall() throws Exception {
+        StreamRing ring = new StreamRing(c, 256, 2);
+        ring.begin();
+        ring.end();
+        ring.begin();
+        ring.end();
+        gl.setSyncTimeouts(1);
+        ring.begin();
+        ring.end();
+        assertEquals(1, ring.getStalls());
+    }
+
+    public void testDelete() throws Exception {
+        StreamRing ring = new StreamRing(c, 256);
+        ring.begin();
+        ring.end();
+        gl.clear();
+        ring.delete();
+        List<String> expected = Arrays.asList(
+                "glDeleteSync(1)",
+                "glBindBuffer(36663, 1)",
+                "glUnmapBuffer(36663)",
+                "glBindBuffer(36663, 0)",
+                "glDeleteBuffers(1)");
+        assertEquals(expected, gl.getCalls());
+        assertTrue(ring.getBuffer().isDeleted());
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        gl = new RecordingBackend();
+        c = new GLContext(gl);
+    }
+}
@@ -0,0 +1,82 @@
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class VertexArrayCacheTest extends TestCase {
+
+    RecordingBackend gl;
+    GLContext c;
+    Buffer[] b;
+
+    // layouts that are the same, whatever order their attributes were
+    // given in, share a vertex array
+    public void testShare() throws Exception {
+        VertexArrayCache cache = new VertexArrayCache(c, false);
+        VertexLayout layout = new VertexLayout()
+                .attribute(0, 3, GLType.GL_FLOAT, false, 0, 0)
+                .attribute(1, 2, GLType.GL_FLOAT, false, 12, 0)
+                .buffer(0, b[0], 0, 20)
+                .elements(b[2]);
+        VertexArray v = cache.bind(layout);
+        assertSame(v, c.getVertexArray());
+        layout.clear()
+                .attribute(1, 2, GLType.GL_FLOAT, false, 12, 0)
+                .attribute(0, 3, GLType.GL_FLOAT, false, 0, 0)
+                .buffer(0, b[0], 0, 20)
+                .elements(b[2]);
+        gl.clear();
+        assertSame(v, cache.bind(layout));
+        assertEquals(0, gl.getCalls().size());
+        layout.buffer(0, b[1], 0, 20);
+        VertexArray w = cache.bind(layout);
+        assertNotSame(v, w);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        // the pointers read the buffer at the binding's offset
+        layout.buffer(0, b[1], 400, 20);
+        gl.clear();
+        cache.bind(layout);
+        assertTrue(gl.getCalls().contains(
+                "glVertexAttribPointer(1, 2, 5126, false, 20, 412)"));
+
+        cache.remove(b[1]);
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(c.getVertexArray());
+    }
+
+    // in separate format mode, switching between meshes of the same
+    // format only rebinds their buffers
+    public void testSeparateFormat() throws Exception {
+        VertexArrayCache cache = new VertexArrayCache(c, true);
+        VertexLayout layout = new VertexLayout()
+                .attribute(0, 3, GLType.GL_FLOAT, false, 0, 0)
+                .attribute(1, 4, GLType.GL_UNSIGNED_BYTE, true, 0, 1)
+                .buffer(0, b[0], 0, 12)
+                .buffer(1, b[1], 0, 4);
+        VertexArray v = cache.bind(layout);
+        layout.buffer(0, b[2], 0, 12);
+        gl.clear();
+        assertSame(v, cache.bind(layout));
+        assertEquals(Arrays.asList("glBindVertexBuffer(0, 3, 0, 12)"),
+                gl.getCalls());
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getMisses());
+        layout.buffer(0, b[0], 0, 12);
+        gl.clear();
+        cache.bind(layout);
+        cache.bind(layout);
+        assertEquals(Arrays.asList("glBindVertexBuffer(0, 1, 0, 12)"),
+                gl.getCalls());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        gl = new RecordingBackend();
+        c = new GLContext(gl);
+        b = c.glGenBuffers(3);
+    }
+}
@@ -0,0 +1,82 @@
+import junit.framework.TestCase;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+public class VertexPackerTest extends TestCase {
+
+    public void testHalf() throws Exception {
+        assertEquals(0x3c00, VertexPacker.toHalf(1) & 0xffff);
+        assertEquals(0xc000, VertexPacker.toHalf(-2) & 0xffff);
+        assertEquals(0x3800, VertexPacker.toHalf(0.5f) & 0xffff);
+        assertEquals(0x7bff, VertexPacker.toHalf(65504) & 0xffff);
+        assertEquals(0x7c00, VertexPacker.toHalf(100000) & 0xffff);
+        assertEquals(0x8000, VertexPacker.toHalf(-0f) & 0xffff);
+        // the smallest normal and subnormal halves, and one too small
+        assertEquals(0x0400, VertexPacker.toHalf(6.1035156e-5f) & 0xffff);
+        assertEquals(0x0001, VertexPacker.toHalf(5.9604645e-8f) & 0xffff);
+        assertEquals(0, VertexPacker.toHalf(1e-9f));
+        // 2049 is halfway between 2048 and 2050, and rounds to even
+        assertEquals(0x6800, VertexPacker.toHalf(2049) & 0xffff);
+        assertEquals(0x6802, VertexPacker.toHalf(2051) & 0xffff);
+        assertTrue((VertexPacker.toHalf(Float.NaN) & 0x3ff) != 0);
+    }
+
+    public void testNormal() throws Exception {
+        assertEquals(511, VertexPacker.packNormal(1, 0, 0));
+        assertEquals(0x201 << 10, VertexPacker.packNormal(0, -1, 0));
+        assertEquals(511 << 20, VertexPacker.packNormal(0, 0, 2));
+    }
+
+    public void testPack() throws Exception {
+        FloatBuffer positions = floats(1, 2, 3, -1, 0.5f, 0);
+        FloatBuffer normals = floats(0, 0, 1, 1, 0, 0);
+        FloatBuffer uvs = floats(0, 1, 0.5f, 2);
+        VertexPacker packer = new VertexPacker();
+        ByteBuffer packed = packer.pack(positions, normals, uvs);
+        assertEquals(2 * VertexPacker.PACKED_STRIDE, packed.remaining());
+        assertEquals(0x4000, packed.getShort(2) & 0xffff);
+        assertEquals(511 << 20, packed.getInt(8));
+        assertEquals(-1, packed.getShort(14));
+        assertEquals(0xbc00, packed.getShort(16) & 0xffff);
+        assertEquals(511, packed.getInt(24));
+        assertEquals(32768, packed.getShort(28) & 0xffff);
+        assertEquals(-1, packed.getShort(30));
+        assertEquals(16, VertexPacker.getBytesSavedPerVertex());
+        assertEquals(32, packer.getBytesSaved());
+        try {
+            packer.pack(floats(1, 2, 3), floats(0, 0), floats(0, 0));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    // packed vertices upload as bytes and draw through half float and
+    // packed attributes
+    public void testUpload() throws Exception {
+        RecordingBackend gl = new RecordingBackend();
+        GLContext c = new GLContext(gl);
+        Buffer b = c.glGenBuffers();
+        c.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, b);
+        ByteBuffer packed = new VertexPacker().pack(floats(1, 2, 3),
+                floats(0, 0, 1), floats(0, 0));
+        c.glBufferData(BufferTarget.GL_ARRAY_BUFFER, packed,
+                BufferUsage.GL_STATIC_DRAW);
+        VertexArrayCache cache = new VertexArrayCache(c, false);
+        cache.bind(VertexPacker.describe(new VertexLayout(), 0, 1, 2, 0, b));
+        assertTrue(gl.getCalls().contains("glBufferData(34962, 16, 35044)"));
+        assertTrue(gl.getCalls().contains(
+                "glVertexAttribPointer(0, 3, 5131, false, 16, 0)"));
+        assertTrue(gl.getCalls().contains(
+                "glVertexAttribPointer(1, 4, 36255, true, 16, 8)"));
+        assertTrue(gl.getCalls().contains(
+                "glVertexAttribPointer(2, 2, 5123, true, 16, 12)"));
+    }
+
+    private static FloatBuffer floats(float... values) {
+        FloatBuffer b = BufferUtils.createFloatBuffer(values.length);
+        b.put(values).flip();
+        return b;
+    }
+}